@@ -32,6 +32,7 @@ import javax.script.ScriptException;
 import java.io.File;
 import java.io.FileFilter;
 import java.io.IOException;
+import java.util.HashMap;
 import java.util.Map;
 import java.util.Stack;
 import java.util.concurrent.Callable;
@@ -60,10 +61,10 @@ public class ExecutorManager extends AbstractExecutorManager implements BukkitSc
             }
         };
 
-        jsExecutors.clear();
+        Map<String, Executor> executors = new HashMap<>();
         for (File file : executorFolder.listFiles(filter)) {
             try {
-                reloadExecutors(file, filter);
+                reloadExecutors(executors, file, filter);
             } catch (ScriptException | IOException e) {
                 e.printStackTrace();
                 plugin.getLogger().warning("Could not load executor " + file.getName());
@@ -72,7 +73,7 @@ public class ExecutorManager extends AbstractExecutorManager implements BukkitSc
         }
 
         //manually add CMDOP after reload is done
-        this.jsExecutors.put("CMDOP", new Executor() {
+        executors.put("CMDOP", new Executor() {
 
             @Override
             protected Integer execute(Timings.Timing timing, boolean sync, Map<String, Object> variables, Object e,
@@ -86,7 +87,7 @@ public class ExecutorManager extends AbstractExecutorManager implements BukkitSc
                     call.call();
                 } else {
                     try {
-                        plugin.callSyncMethod(call).get();
+                        plugin.submitSync(call).get();
                     } catch (Exception ex) {
                         //to double check
                         call.deOpIfWasNotOp();
@@ -97,6 +98,8 @@ public class ExecutorManager extends AbstractExecutorManager implements BukkitSc
             }
 
         });
+
+        jsExecutors.replaceWith(executors);
     }
 
 
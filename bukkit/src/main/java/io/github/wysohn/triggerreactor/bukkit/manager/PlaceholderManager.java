@@ -18,6 +18,7 @@ package io.github.wysohn.triggerreactor.bukkit.manager;
 
 import io.github.wysohn.triggerreactor.core.main.TriggerReactorCore;
 import io.github.wysohn.triggerreactor.core.manager.AbstractPlaceholderManager;
+import io.github.wysohn.triggerreactor.core.script.interpreter.Placeholder;
 import io.github.wysohn.triggerreactor.tools.JarUtil;
 import io.github.wysohn.triggerreactor.tools.JarUtil.CopyOption;
 
@@ -26,6 +27,8 @@ import javax.script.ScriptException;
 import java.io.File;
 import java.io.FileFilter;
 import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
 
 public class PlaceholderManager extends AbstractPlaceholderManager implements BukkitScriptEngineInitializer {
     private static final String JAR_FOLDER_LOCATION = "Placeholder";
@@ -50,16 +53,18 @@ public class PlaceholderManager extends AbstractPlaceholderManager implements Bu
             }
         };
 
-        jsPlaceholders.clear();
+        Map<String, Placeholder> placeholders = new HashMap<>();
         for (File file : placeholderFolder.listFiles(filter)) {
             try {
-                reloadPlaceholders(file, filter);
+                reloadPlaceholders(placeholders, file, filter);
             } catch (ScriptException | IOException e) {
                 e.printStackTrace();
                 plugin.getLogger().warning("Could not load placeholder " + file.getName());
                 continue;
             }
         }
+
+        jsPlaceholders.replaceWith(placeholders);
     }
 
     @Override
@@ -87,7 +87,7 @@ public class AreaTriggerManager extends AbstractAreaTriggerManager implements Bu
                             if (!plugin.isEnabled())
                                 break;
 
-                            Future<Boolean> future = plugin.callSyncMethod(new Callable<Boolean>() {
+                            Future<Boolean> future = plugin.submitSync(new Callable<Boolean>() {
 
                                 @Override
                                 public Boolean call() throws Exception {
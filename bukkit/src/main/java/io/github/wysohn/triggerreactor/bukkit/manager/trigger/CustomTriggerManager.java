@@ -35,7 +35,6 @@ import org.bukkit.plugin.IllegalPluginAccessException;
 import java.io.File;
 import java.io.IOException;
 import java.util.*;
-import java.util.Map.Entry;
 
 public class CustomTriggerManager extends AbstractCustomTriggerManager implements BukkitTriggerManager {
     static final Map<String, Class<? extends Event>> EVENTS = new TreeMap<String, Class<? extends Event>>(String.CASE_INSENSITIVE_ORDER);
@@ -72,15 +71,6 @@ public class CustomTriggerManager extends AbstractCustomTriggerManager implement
         }
     }
 
-    @Override
-    public void reload() {
-        for (Entry<EventHook, Listener> entry : registeredListerners.entrySet()) {
-            HandlerList.unregisterAll(entry.getValue());
-        }
-        registeredListerners.clear();
-        super.reload();
-    }
-
     private static final String basePackageName = "org.bukkit.event";
 
     public Collection<String> getAbbreviations() {
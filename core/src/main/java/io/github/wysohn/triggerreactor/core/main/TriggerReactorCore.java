@@ -28,6 +28,7 @@ import io.github.wysohn.triggerreactor.core.manager.location.Area;
 import io.github.wysohn.triggerreactor.core.manager.location.SimpleChunkLocation;
 import io.github.wysohn.triggerreactor.core.manager.location.SimpleLocation;
 import io.github.wysohn.triggerreactor.core.manager.trigger.AbstractTriggerManager;
+import io.github.wysohn.triggerreactor.core.manager.trigger.ScriptCache;
 import io.github.wysohn.triggerreactor.core.manager.trigger.Trigger;
 import io.github.wysohn.triggerreactor.core.manager.trigger.area.AbstractAreaTriggerManager;
 import io.github.wysohn.triggerreactor.core.manager.trigger.area.AreaTrigger;
@@ -42,11 +43,17 @@ import io.github.wysohn.triggerreactor.core.manager.trigger.named.AbstractNamedT
 import io.github.wysohn.triggerreactor.core.manager.trigger.repeating.AbstractRepeatingTriggerManager;
 import io.github.wysohn.triggerreactor.core.manager.trigger.repeating.RepeatingTrigger;
 import io.github.wysohn.triggerreactor.core.manager.trigger.share.api.AbstractAPISupport;
+import io.github.wysohn.triggerreactor.core.script.interpreter.ExecutionBudget;
 import io.github.wysohn.triggerreactor.core.script.interpreter.Interpreter;
 import io.github.wysohn.triggerreactor.core.script.interpreter.Interpreter.ProcessInterrupter;
+import io.github.wysohn.triggerreactor.core.script.interpreter.InterpreterException;
+import io.github.wysohn.triggerreactor.core.script.interpreter.LineProfiler;
+import io.github.wysohn.triggerreactor.core.script.interpreter.ScriptFrame;
 import io.github.wysohn.triggerreactor.core.script.interpreter.TaskSupervisor;
 import io.github.wysohn.triggerreactor.core.script.wrapper.SelfReference;
+import io.github.wysohn.triggerreactor.tools.BoundedExecutor;
 import io.github.wysohn.triggerreactor.tools.ScriptEditor.SaveHandler;
+import io.github.wysohn.triggerreactor.tools.TickQueue;
 import io.github.wysohn.triggerreactor.tools.TimeUtil;
 import io.github.wysohn.triggerreactor.tools.stream.SenderOutputStream;
 import io.github.wysohn.triggerreactor.tools.timings.Timings;
@@ -144,9 +151,82 @@ public abstract class TriggerReactorCore implements TaskSupervisor {
     private static final Pattern DECIMAL_PATTERN = Pattern.compile("^[0-9]+.[0-9]{0,}$");
     private static final Pattern NAME_PATTERN = Pattern.compile("^[0-9a-zA-Z_]+$");
     private boolean debugging = false;
+    /**
+     * the tasks from other threads to be done in the server thread.
+     */
+    private final TickQueue syncQueue = new TickQueue(this::runTask, 10L, TimeUnit.MILLISECONDS);
+    /**
+     * runs the ASYNC blocks of the scripts.
+     */
+    private final BoundedExecutor asyncBlockPool = new BoundedExecutor("TRG Async",
+            Runtime.getRuntime().availableProcessors(), 10000);
+    private ScriptCache scriptCache;
+    private boolean scriptCacheChecked = false;
 
     public void onCoreEnable() {
         configManager = new ConfigManager(this, new File(getDataFolder(), "config.json"));
+        loadInterpreterConfig();
+    }
+
+    /**
+     * Read the default {@link ExecutionBudget}s and the time the server thread can spend on the tasks from other
+     * threads in a tick. For example,
+     * <pre>
+     * ExecutionBudget:
+     *   Sync:
+     *     Steps: 1000000
+     *     Policy: ABORT
+     *   Async:
+     *     Steps: 0 # unlimited
+     * SyncQueue:
+     *   TickBudgetMillis: 10
+     * AsyncBlock:
+     *   Threads: 0 # number of processors
+     *   QueueCapacity: 10000
+     *   Capture: SHARED
+     * </pre>
+     */
+    private void loadInterpreterConfig() {
+        ExecutionBudget.setDefault(true, readBudget("ExecutionBudget.Sync", ExecutionBudget.DEFAULT_STEPS));
+        ExecutionBudget.setDefault(false, readBudget("ExecutionBudget.Async", 0L));
+
+        Object tickBudget = getConfig("SyncQueue.TickBudgetMillis");
+        syncQueue.setBudget(tickBudget instanceof Number ? ((Number) tickBudget).longValue() : 10L,
+                TimeUnit.MILLISECONDS);
+
+        Object threads = getConfig("AsyncBlock.Threads");
+        Object capacity = getConfig("AsyncBlock.QueueCapacity");
+        asyncBlockPool.setLimits(threads instanceof Number && ((Number) threads).intValue() > 0
+                        ? ((Number) threads).intValue() : Runtime.getRuntime().availableProcessors(),
+                capacity instanceof Number ? Math.max(0, ((Number) capacity).intValue()) : 10000);
+
+        Object capture = getConfig("AsyncBlock.Capture");
+        try {
+            Interpreter.setDefaultCapture(capture == null
+                    ? Interpreter.Capture.SHARED
+                    : Interpreter.Capture.valueOf(capture.toString().toUpperCase()));
+        } catch (IllegalArgumentException ex) {
+            getLogger().warning("AsyncBlock.Capture should be one of " + Arrays.toString(Interpreter.Capture.values()));
+            Interpreter.setDefaultCapture(Interpreter.Capture.SHARED);
+        }
+    }
+
+    private ExecutionBudget readBudget(String path, long defaultSteps) {
+        Object steps = getConfig(path + ".Steps");
+        Object policy = getConfig(path + ".Policy");
+
+        long limit = steps instanceof Number ? ((Number) steps).longValue() : defaultSteps;
+        if (limit <= 0)
+            return null;
+
+        try {
+            return new ExecutionBudget(limit, policy == null
+                    ? ExecutionBudget.Policy.ABORT
+                    : ExecutionBudget.Policy.valueOf(policy.toString().toUpperCase()));
+        } catch (IllegalArgumentException ex) {
+            getLogger().warning(path + ".Policy should be one of " + Arrays.toString(ExecutionBudget.Policy.values()));
+            return new ExecutionBudget(limit, ExecutionBudget.Policy.ABORT);
+        }
     }
 
     public void onCoreDisable() {
@@ -1237,6 +1317,7 @@ public abstract class TriggerReactorCore implements TaskSupervisor {
                         } catch (IOException ex) {
                             ex.printStackTrace();
                         }
+                        sender.sendMessage("&7ASYNC blocks - " + asyncBlockPool);
                     } else {
                         sendCommandDesc(sender, "/triggerreactor[trg] timings toggle", "turn on/off timings analysis. Also analysis will be reset.");
                         sendCommandDesc(sender, "/triggerreactor[trg] timings reset", "turn on/off timings analysis. Also analysis will be reset.");
@@ -1244,6 +1325,41 @@ public abstract class TriggerReactorCore implements TaskSupervisor {
                         sendCommandDesc(sender, "/triggerreactor[trg] timings print xx", "Save analysis to file named xx.timings");
                     }
                     return true;
+                } else if (args.length > 1 && args[0].equalsIgnoreCase("profile")) {
+                    Trigger trigger = findTrigger(args[1]);
+                    if (trigger == null) {
+                        sender.sendMessage("&7No Trigger found with that name.");
+                        return true;
+                    }
+
+                    LineProfiler profiler = trigger.getProfiler();
+                    if (args.length == 3 && args[2].equalsIgnoreCase("stop")) {
+                        trigger.stopProfiling();
+                        sender.sendMessage("&cStopped profiling &6" + trigger.getTriggerName());
+                    } else if (args.length == 3 && args[2].equalsIgnoreCase("reset")) {
+                        trigger.startProfiling();
+                        sender.sendMessage("&aReset Complete.");
+                    } else if (profiler == null) {
+                        trigger.startProfiling();
+                        sender.sendMessage("&aStarted profiling &6" + trigger.getTriggerName()
+                                + "&a. Use the same command again to see the result.");
+                    } else {
+                        showHotLines(sender, trigger, profiler);
+                    }
+                    return true;
+                } else if (args[0].equalsIgnoreCase("memory")) {
+                    int count = 10;
+                    if (args.length > 1) {
+                        if (!args[1].matches("[0-9]+")) {
+                            sender.sendMessage("&c" + args[1] + " is not a valid number.");
+                            return true;
+                        }
+
+                        count = Integer.parseInt(args[1]);
+                    }
+
+                    showLargestTriggers(sender, count);
+                    return true;
                 } else if (args[0].equalsIgnoreCase("saveall")) {
                     for (Manager manager : Manager.getManagers())
                         manager.saveAll();
@@ -1255,6 +1371,7 @@ public abstract class TriggerReactorCore implements TaskSupervisor {
 
                     getExecutorManager().reload();
                     getPlaceholderManager().reload();
+                    loadInterpreterConfig();
 
                     sender.sendMessage("Reload Complete!");
                     return true;
@@ -1309,6 +1426,66 @@ public abstract class TriggerReactorCore implements TaskSupervisor {
         return filtered;
     }
 
+    /**
+     * @param name name of the Trigger
+     * @return the first Trigger found with the name in any of the trigger managers; null if not found.
+     */
+    private Trigger findTrigger(String name) {
+        for (Manager manager : Manager.getManagers()) {
+            if (!(manager instanceof AbstractTriggerManager<?>))
+                continue;
+
+            for (Trigger trigger : ((AbstractTriggerManager<? extends Trigger>) manager).getAllTriggers()) {
+                if (name.equals(trigger.getTriggerName()))
+                    return trigger;
+            }
+        }
+        return null;
+    }
+
+    private void showHotLines(ICommandSender sender, Trigger trigger, LineProfiler profiler) {
+        String[] lines = trigger.getScript().split("\n", -1);
+        long total = profiler.getTotalNanos();
+
+        sender.sendMessage("- - - - - " + trigger.getTriggerName() + " - - - - ");
+        sender.sendMessage(String.format("&7Profiled for &6%.1fs&7, &6%.2fms &7spent in the script.",
+                profiler.getElapsed() / 1e9, total / 1e6));
+        for (LineProfiler.Line line : profiler.getHotLines(10)) {
+            String code = line.row <= lines.length ? lines[line.row - 1].trim() : "";
+            String memory = LineProfiler.isAllocationSupported() ? ", " + (line.bytes / 1024) + "KB" : "";
+            sender.sendMessage(String.format("&6%5.1f%% &7line &6%d &8(%.2fms, %d hits%s) &f%s",
+                    total == 0 ? 0.0 : line.nanos * 100.0 / total, line.row, line.nanos / 1e6, line.hits,
+                    memory, code));
+        }
+        sender.sendMessage(" ");
+    }
+
+    private void showLargestTriggers(ICommandSender sender, int count) {
+        List<Trigger> triggers = new ArrayList<>();
+        Map<Trigger, Long> sizes = new IdentityHashMap<>();
+        long total = 0;
+        for (Manager manager : Manager.getManagers()) {
+            if (!(manager instanceof AbstractTriggerManager<?>))
+                continue;
+
+            for (Trigger trigger : ((AbstractTriggerManager<? extends Trigger>) manager).getAllTriggers()) {
+                long size = trigger.estimateSize();
+                triggers.add(trigger);
+                sizes.put(trigger, size);
+                total += size;
+            }
+        }
+        triggers.sort((a, b) -> Long.compare(sizes.get(b), sizes.get(a)));
+
+        sender.sendMessage("- - - - - Memory - - - - ");
+        sender.sendMessage(String.format("&7About &6%dKB &7used by &6%d &7triggers.", total / 1024, triggers.size()));
+        for (Trigger trigger : triggers.subList(0, Math.min(count, triggers.size()))) {
+            sender.sendMessage(String.format("&6%7.1fKB &7%s &8(%s)", sizes.get(trigger) / 1024.0,
+                    trigger.getTriggerName(), trigger.getClass().getSimpleName()));
+        }
+        sender.sendMessage(" ");
+    }
+
     //get all trigger names for a manager
     private static List<String> triggerNames(AbstractTriggerManager<? extends Trigger> manager) {
         List<String> names = new ArrayList<String>();
@@ -1325,7 +1502,7 @@ public abstract class TriggerReactorCore implements TaskSupervisor {
         switch (args.length) {
             case 1:
                 return filter(Arrays.asList("area", "click", "cmd", "command", "custom", "del", "delete", "help", "inventory", "item", "list",
-                        "reload", "repeat", "run", "saveall", "search", "sudo", "synccustom", "timings", "variables", "version", "walk"), args[0]);
+                        "memory", "profile", "reload", "repeat", "run", "saveall", "search", "sudo", "synccustom", "timings", "variables", "version", "walk"), args[0]);
             case 2:
                 switch (args[0].toLowerCase()) {
                     case "area":
@@ -1357,6 +1534,13 @@ public abstract class TriggerReactorCore implements TaskSupervisor {
                         return filter(triggerNames(getInstance().getCustomManager()), args[1]);
                     case "timings":
                         return filter(Arrays.asList("print", "toggle", "reset"), args[1]);
+                    case "profile":
+                        List<String> all = new ArrayList<String>();
+                        for (Manager manager : Manager.getManagers()) {
+                            if (manager instanceof AbstractTriggerManager<?>)
+                                all.addAll(triggerNames((AbstractTriggerManager<? extends Trigger>) manager));
+                        }
+                        return filter(all, args[1]);
                 }
             case 3:
                 switch (args[0].toLowerCase()) {
@@ -1397,6 +1581,8 @@ public abstract class TriggerReactorCore implements TaskSupervisor {
                     case "repeat":
                     case "r":
                         return filter(Arrays.asList("autostart", "delete", "interval", "pause", "status", "toggle"), args[2]);
+                    case "profile":
+                        return filter(Arrays.asList("reset", "stop"), args[2]);
                 }
             case 4:
                 switch (args[0].toLowerCase()) {
@@ -1651,10 +1837,19 @@ public abstract class TriggerReactorCore implements TaskSupervisor {
             @Override
             public void run() {
                 Throwable ex = e;
-                sender.sendMessage("&cCould not execute this trigger.");
+                String trigger = e instanceof InterpreterException ? ((InterpreterException) e).getTrigger() : null;
+                sender.sendMessage(trigger == null
+                        ? "&cCould not execute this trigger."
+                        : "&cCould not execute the trigger [" + trigger + "].");
                 while (ex != null) {
                     sender.sendMessage("&c >> Caused by:");
                     sender.sendMessage("&c" + ex.getMessage());
+                    if (ex instanceof InterpreterException) {
+                        //the first one is already in the message
+                        List<ScriptFrame> stack = ((InterpreterException) ex).getScriptStack();
+                        for (int i = 1; i < stack.size(); i++)
+                            sender.sendMessage("&7    at " + stack.get(i));
+                    }
                     ex = ex.getCause();
                 }
                 sender.sendMessage("&cIf you are administrator, see console for details.");
@@ -1764,9 +1959,31 @@ public abstract class TriggerReactorCore implements TaskSupervisor {
                 }
 
             };
-        } else {
+        } else if (!isEnabled()) {
+            //the queue may never be drained
             return callSyncMethod(call);
+        } else {
+            return syncQueue.submit(call);
+        }
+    }
+
+    /**
+     * Queue the task to be done in the server thread along with the other tasks in the same tick, or do it right
+     * away if already in the server thread.
+     */
+    @Override
+    public <T> CompletableFuture<T> queueSync(Callable<T> call) {
+        if (isServerThread()) {
+            CompletableFuture<T> future = new CompletableFuture<>();
+            try {
+                future.complete(call.call());
+            } catch (Throwable throwable) {
+                future.completeExceptionally(throwable);
+            }
+            return future;
         }
+
+        return syncQueue.submit(call);
     }
 
     @Override
@@ -1774,6 +1991,29 @@ public abstract class TriggerReactorCore implements TaskSupervisor {
         new Thread(run).start();
     }
 
+    /**
+     * The parsed scripts stored in the 'cache' folder, unless disabled with
+     * <pre>
+     * ScriptCache:
+     *   Enable: false
+     * </pre>
+     *
+     * @return the cache; null if disabled.
+     */
+    public synchronized ScriptCache getScriptCache() {
+        if (!scriptCacheChecked) {
+            scriptCacheChecked = true;
+            if (!Boolean.FALSE.equals(getConfig("ScriptCache.Enable")))
+                scriptCache = new ScriptCache(new File(getDataFolder(), "cache"), getVersion());
+        }
+        return scriptCache;
+    }
+
+    @Override
+    public void submitAsyncBlock(Runnable run) {
+        asyncBlockPool.execute(run);
+    }
+
     /**
      * Call event so that it can be heard by listeners
      *
@@ -1868,6 +2108,11 @@ public abstract class TriggerReactorCore implements TaskSupervisor {
             sender.sendMessage("&b/triggerreactor[trg] timings reset &8- &7turn on/off timings analysis. Also analysis will be reset.");
             sender.sendMessage("&b/triggerreactor[trg] timings print &8- &7Show analysis result.");
             sender.sendMessage("  &b/triggerreactor[trg] timings print xx &8- &7Save analysis to file named xx.timings");
+
+            sender.sendMessage("&b/triggerreactor[trg] profile <trigger> &8- &7Start profiling the trigger, or show the slowest lines if already started.");
+            sender.sendMessage("  &b/triggerreactor[trg] profile <trigger> reset &8- &7Discard the result so far.");
+            sender.sendMessage("  &b/triggerreactor[trg] profile <trigger> stop &8- &7Stop profiling the trigger.");
+            sender.sendMessage("&b/triggerreactor[trg] memory [count] &8- &7Show the triggers taking the most memory.");
         }));
     }};
 
@@ -21,6 +21,7 @@ import io.github.wysohn.triggerreactor.core.script.interpreter.Executor;
 import io.github.wysohn.triggerreactor.core.script.validation.ValidationException;
 import io.github.wysohn.triggerreactor.core.script.validation.ValidationResult;
 import io.github.wysohn.triggerreactor.core.script.validation.Validator;
+import io.github.wysohn.triggerreactor.tools.Registry;
 import io.github.wysohn.triggerreactor.tools.timings.Timings;
 import jdk.nashorn.api.scripting.JSObject;
 
@@ -31,7 +32,11 @@ import java.util.Map.Entry;
 import java.util.concurrent.*;
 
 public abstract class AbstractExecutorManager extends AbstractJavascriptBasedManager implements KeyValueManager<Executor> {
-    protected Map<String, Executor> jsExecutors = new HashMap<>();
+    /**
+     * The Triggers use this Registry as is, so replace the contents with {@link Registry#replaceWith(Map)}
+     * when reloading instead of clearing it first.
+     */
+    protected final Registry<Executor> jsExecutors = new Registry<>();
 
     public AbstractExecutorManager(TriggerReactorCore plugin) throws ScriptException {
         super(plugin);
@@ -48,14 +53,23 @@ public abstract class AbstractExecutorManager extends AbstractJavascriptBasedMan
      * @throws IOException
      */
     protected void reloadExecutors(File file, FileFilter filter) throws ScriptException, IOException {
-        reloadExecutors(new Stack<String>(), file, filter);
+        reloadExecutors(jsExecutors, file, filter);
+    }
+
+    /**
+     * Same as {@link #reloadExecutors(File, FileFilter)}, but put the Executors to the given map instead.
+     */
+    protected void reloadExecutors(Map<String, Executor> executors, File file, FileFilter filter)
+            throws ScriptException, IOException {
+        reloadExecutors(executors, new Stack<String>(), file, filter);
     }
 
-    private void reloadExecutors(Stack<String> name, File file, FileFilter filter) throws ScriptException, IOException {
+    private void reloadExecutors(Map<String, Executor> executors, Stack<String> name, File file, FileFilter filter)
+            throws ScriptException, IOException {
         if (file.isDirectory()) {
             name.push(file.getName());
             for (File f : file.listFiles(filter)) {
-                reloadExecutors(name, f, filter);
+                reloadExecutors(executors, name, f, filter);
             }
             name.pop();
         } else {
@@ -67,11 +81,11 @@ public abstract class AbstractExecutorManager extends AbstractJavascriptBasedMan
             fileName = fileName.substring(0, fileName.indexOf("."));
             builder.append(fileName);
 
-            if (jsExecutors.containsKey(builder.toString())) {
+            if (executors.containsKey(builder.toString())) {
                 plugin.getLogger().warning(builder.toString() + " already registered! Duplicating executors?");
             } else {
                 JSExecutor exec = new JSExecutor(fileName, IScriptEngineInitializer.getNashornEngine(sem), file);
-                jsExecutors.put(builder.toString(), exec);
+                executors.put(builder.toString(), exec);
             }
         }
     }
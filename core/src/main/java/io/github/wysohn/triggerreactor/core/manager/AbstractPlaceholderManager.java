@@ -21,6 +21,7 @@ import io.github.wysohn.triggerreactor.core.script.interpreter.Placeholder;
 import io.github.wysohn.triggerreactor.core.script.validation.ValidationException;
 import io.github.wysohn.triggerreactor.core.script.validation.ValidationResult;
 import io.github.wysohn.triggerreactor.core.script.validation.Validator;
+import io.github.wysohn.triggerreactor.tools.Registry;
 import io.github.wysohn.triggerreactor.tools.timings.Timings;
 import jdk.nashorn.api.scripting.JSObject;
 
@@ -31,21 +32,33 @@ import java.util.Map.Entry;
 import java.util.concurrent.*;
 
 public abstract class AbstractPlaceholderManager extends AbstractJavascriptBasedManager implements KeyValueManager<Placeholder> {
-    protected Map<String, Placeholder> jsPlaceholders = new HashMap<>();
+    /**
+     * The Triggers use this Registry as is, so replace the contents with {@link Registry#replaceWith(Map)}
+     * when reloading instead of clearing it first.
+     */
+    protected final Registry<Placeholder> jsPlaceholders = new Registry<>();
 
     public AbstractPlaceholderManager(TriggerReactorCore plugin) throws ScriptException {
         super(plugin);
     }
 
     protected void reloadPlaceholders(File file, FileFilter filter) throws ScriptException, IOException {
+        reloadPlaceholders(jsPlaceholders, file, filter);
+    }
+
+    /**
+     * Same as {@link #reloadPlaceholders(File, FileFilter)}, but put the Placeholder to the given map instead.
+     */
+    protected void reloadPlaceholders(Map<String, Placeholder> placeholders, File file, FileFilter filter)
+            throws ScriptException, IOException {
         String fileName = file.getName();
         fileName = fileName.substring(0, fileName.indexOf("."));
 
-        if (jsPlaceholders.containsKey(fileName)) {
+        if (placeholders.containsKey(fileName)) {
             plugin.getLogger().warning(fileName + " already registered! Duplicating placerholders?");
         } else {
             JSPlaceholder placeholder = new JSPlaceholder(fileName, IScriptEngineInitializer.getNashornEngine(sem), file);
-            jsPlaceholders.put(fileName, placeholder);
+            placeholders.put(fileName, placeholder);
         }
     }
 
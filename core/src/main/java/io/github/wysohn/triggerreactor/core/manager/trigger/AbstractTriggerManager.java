@@ -18,17 +18,39 @@ package io.github.wysohn.triggerreactor.core.manager.trigger;
 
 import io.github.wysohn.triggerreactor.core.main.TriggerReactorCore;
 import io.github.wysohn.triggerreactor.core.manager.Manager;
+import io.github.wysohn.triggerreactor.core.script.interpreter.ExecutionBudget;
 import io.github.wysohn.triggerreactor.core.script.warning.Warning;
 import io.github.wysohn.triggerreactor.tools.FileUtil;
 
 import java.io.File;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.ForkJoinWorkerThread;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 public abstract class AbstractTriggerManager<T extends Trigger> extends Manager implements ConfigurationFileIO {
-    protected Map<String, T> triggers = new ConcurrentHashMap<>();
+    /**
+     * Shared by all the managers, so reloading them doesn't start more threads than there are cores.
+     */
+    private static final ForkJoinPool loadingPool = new ForkJoinPool(Runtime.getRuntime().availableProcessors(),
+            pool -> {
+                ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+                thread.setName("TRG Loader #" + thread.getPoolIndex());
+                thread.setContextClassLoader(AbstractTriggerManager.class.getClassLoader());
+                return thread;
+            }, null, false);
+
+    /**
+     * Replaced as a whole when reloading, so the old triggers keep working until the new ones are all loaded.
+     */
+    protected volatile Map<String, T> triggers = new ConcurrentHashMap<>();
+    /**
+     * key of the {@link ExecutionBudget} in the config files of the Triggers.
+     */
+    protected static final String BUDGET = "Budget";
     protected final File folder;
 
     public AbstractTriggerManager(TriggerReactorCore plugin, File tirggerFolder) {
@@ -44,6 +66,54 @@ public abstract class AbstractTriggerManager<T extends Trigger> extends Manager
         return getData(file, key, null);
     }
 
+    /**
+     * Read the {@link ExecutionBudget} of a Trigger from its config file. For example,
+     * <pre>
+     * Budget:
+     *   Steps: 5000
+     *   Policy: YIELD
+     * </pre>
+     * Steps 0 means no limit, even if there is a default budget.
+     *
+     * @param file the config file of the Trigger
+     * @return the budget; null if the file has none, so the Trigger follows the default budget.
+     */
+    protected ExecutionBudget readBudget(File file) throws Exception {
+        Object steps = getData(file, BUDGET + ".Steps");
+        Object policy = getData(file, BUDGET + ".Policy");
+        if (!(steps instanceof Number))
+            return null;
+
+        long limit = ((Number) steps).longValue();
+        if (limit <= 0)
+            return ExecutionBudget.UNLIMITED;
+
+        try {
+            return new ExecutionBudget(limit, policy == null
+                    ? ExecutionBudget.Policy.ABORT
+                    : ExecutionBudget.Policy.valueOf(policy.toString().toUpperCase()));
+        } catch (IllegalArgumentException ex) {
+            plugin.getLogger().warning(file + ": " + BUDGET + ".Policy should be one of "
+                    + Arrays.toString(ExecutionBudget.Policy.values()));
+            return new ExecutionBudget(limit, ExecutionBudget.Policy.ABORT);
+        }
+    }
+
+    /**
+     * Write the {@link ExecutionBudget} of a Trigger to its config file, in the form {@link #readBudget(File)} reads.
+     *
+     * @param file   the config file of the Trigger
+     * @param budget the budget; null to remove it from the file
+     */
+    protected void writeBudget(File file, ExecutionBudget budget) throws Exception {
+        if (budget == null) {
+            setData(file, BUDGET, null);
+        } else {
+            setData(file, BUDGET + ".Steps", budget == ExecutionBudget.UNLIMITED ? 0L : budget.getSteps());
+            setData(file, BUDGET + ".Policy", budget.getPolicy().name());
+        }
+    }
+
     /**
      * Default behavior is delete one file associated with the trigger. Override this method to change this behavior.
      */
@@ -109,6 +179,42 @@ public abstract class AbstractTriggerManager<T extends Trigger> extends Manager
         return triggerFile;
     }
 
+    /**
+     * Run the loader for each file in parallel, and wait for all of them.
+     *
+     * @param files  the files to load
+     * @param loader loads a file. It should handle its own errors and return null if the file can't be loaded.
+     * @return the loaded values, in the same order as the files. Files failed to load are left out.
+     */
+    protected static <R> List<R> loadAll(Collection<File> files, TriggerLoader<R> loader) {
+        List<ForkJoinTask<R>> tasks = new ArrayList<>(files.size());
+        for (File file : files)
+            tasks.add(loadingPool.submit(() -> loader.load(file)));
+
+        List<R> loaded = new ArrayList<>(tasks.size());
+        for (ForkJoinTask<R> task : tasks) {
+            try {
+                R result = task.join();
+                if (result != null)
+                    loaded.add(result);
+            } catch (RuntimeException ex) {
+                ex.printStackTrace();
+            }
+        }
+        return loaded;
+    }
+
+    @FunctionalInterface
+    protected interface TriggerLoader<R> {
+        /**
+         * Called by one of the loading threads.
+         *
+         * @param file the file to load
+         * @return the loaded value; null if failed.
+         */
+        R load(File file) throws Exception;
+    }
+
     protected static void reportWarnings(List<Warning> warnings, Trigger trigger) {
         if (warnings == null || warnings.isEmpty()) {
             return;
@@ -0,0 +1,287 @@
+package io.github.wysohn.triggerreactor.core.manager.trigger;
+
+import io.github.wysohn.triggerreactor.core.script.StringPool;
+import io.github.wysohn.triggerreactor.core.script.Token;
+import io.github.wysohn.triggerreactor.core.script.parser.Node;
+import io.github.wysohn.triggerreactor.core.script.warning.Warning;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps the parsed and optimized scripts on the disk, so the Triggers whose script hasn't changed don't have to be
+ * parsed again when the server starts or reloads.
+ * <p>
+ * Each script is stored in its own file named after the hash of the script, the version of the plugin, and
+ * the {@link #FORMAT}, so a different script, a different version, or a change in the grammar simply misses the cache.
+ * Files not used for {@link #EXPIRE_DAYS} days are deleted when the cache is opened.
+ * <p>
+ * Errors while reading or writing the cache are ignored; the script is just parsed as usual.
+ */
+public final class ScriptCache {
+    /**
+     * Bump this whenever the Lexer, the Parser, or the ScriptOptimizer changes what they produce from the same script.
+     */
+    public static final int FORMAT = 1;
+    public static final int EXPIRE_DAYS = 30;
+
+    private static final int MAGIC = 0x54524743; //TRGC
+
+    private static final int NULL = 0;
+    private static final int STRING = 1;
+    private static final int INTEGER = 2;
+    private static final int DECIMAL = 3;
+    private static final int BOOLEAN = 4;
+
+    private final File folder;
+    private final byte[] salt;
+
+    /**
+     * @param folder  the folder to store the files
+     * @param version the version of the plugin
+     */
+    public ScriptCache(File folder, String version) {
+        this.folder = folder;
+
+        StringBuilder salt = new StringBuilder();
+        salt.append(FORMAT).append('\n').append(version).append('\n');
+        //the Types are stored by ordinal
+        for (Token.Type type : Token.Type.values())
+            salt.append(type.name()).append(',');
+        this.salt = salt.toString().getBytes(StandardCharsets.UTF_8);
+
+        expire();
+    }
+
+    /**
+     * @param script the script
+     * @return the tree previously stored for the same script; null if there is none.
+     */
+    public Entry get(String script) {
+        String key = keyOf(script);
+        File file = new File(folder, key);
+        if (!file.isFile())
+            return null;
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != MAGIC || !key.equals(in.readUTF()))
+                throw new IOException("Not a cache file");
+
+            int warningCount = in.readInt();
+            List<Warning> warnings = new ArrayList<>(warningCount);
+            for (int i = 0; i < warningCount; i++) {
+                String[] lines = new String[in.readInt()];
+                for (int j = 0; j < lines.length; j++)
+                    lines[j] = readString(in);
+                warnings.add(new StoredWarning(lines));
+            }
+
+            Node root = readNode(in, Token.Type.values());
+
+            long now = System.currentTimeMillis();
+            if (now - file.lastModified() > TimeUnit.DAYS.toMillis(1))
+                file.setLastModified(now);
+
+            return new Entry(root, warnings);
+        } catch (IOException | RuntimeException ex) {
+            //broken somehow; parse it again
+            file.delete();
+            return null;
+        }
+    }
+
+    /**
+     * @param script   the script
+     * @param root     the tree parsed and optimized from the script
+     * @param warnings the warnings found while parsing
+     */
+    public void put(String script, Node root, List<Warning> warnings) {
+        String key = keyOf(script);
+        File temp = null;
+        try {
+            if (!folder.isDirectory() && !folder.mkdirs())
+                return;
+
+            temp = File.createTempFile(key, ".tmp", folder);
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)))) {
+                out.writeInt(MAGIC);
+                out.writeUTF(key);
+
+                out.writeInt(warnings.size());
+                for (Warning warning : warnings) {
+                    String[] lines = warning.getMessageLines();
+                    out.writeInt(lines.length);
+                    for (String line : lines)
+                        writeString(out, line);
+                }
+
+                writeNode(out, root);
+            }
+
+            //another thread may be writing the same script
+            Files.move(temp.toPath(), new File(folder, key).toPath(), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException | UnsupportedOperationException ex) {
+            //not cached then
+            if (temp != null)
+                temp.delete();
+        }
+    }
+
+    private void expire() {
+        File[] files = folder.listFiles();
+        if (files == null)
+            return;
+
+        long expiry = System.currentTimeMillis() - TimeUnit.DAYS.toMillis(EXPIRE_DAYS);
+        for (File file : files) {
+            if (file.getName().endsWith(".tmp") || file.lastModified() < expiry)
+                file.delete();
+        }
+    }
+
+    private String keyOf(String script) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException(ex);
+        }
+
+        digest.update(salt);
+        digest.update(script.getBytes(StandardCharsets.UTF_8));
+
+        StringBuilder builder = new StringBuilder();
+        for (byte b : digest.digest())
+            builder.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        return builder.toString();
+    }
+
+    private static void writeNode(DataOutputStream out, Node node) throws IOException {
+        Token token = node.getToken();
+        out.writeShort(token.type.ordinal());
+        writeValue(out, token.value);
+        out.writeInt(token.row);
+        out.writeInt(token.col);
+
+        out.writeInt(node.getChildren().size());
+        for (Node child : node.getChildren())
+            writeNode(out, child);
+    }
+
+    private static Node readNode(DataInputStream in, Token.Type[] types) throws IOException {
+        Token.Type type = types[in.readShort()];
+        Object value = readValue(in);
+        int row = in.readInt();
+        int col = in.readInt();
+
+        Node node = new Node(new Token(type, value, row, col));
+        int children = in.readInt();
+        for (int i = 0; i < children; i++)
+            node.getChildren().add(readNode(in, types));
+        return node;
+    }
+
+    private static void writeValue(DataOutputStream out, Object value) throws IOException {
+        if (value == null) {
+            out.writeByte(NULL);
+        } else if (value instanceof String) {
+            out.writeByte(STRING);
+            writeString(out, (String) value);
+        } else if (value instanceof Integer) {
+            out.writeByte(INTEGER);
+            out.writeInt((Integer) value);
+        } else if (value instanceof Double) {
+            out.writeByte(DECIMAL);
+            out.writeDouble((Double) value);
+        } else if (value instanceof Boolean) {
+            out.writeByte(BOOLEAN);
+            out.writeBoolean((Boolean) value);
+        } else {
+            throw new UnsupportedOperationException("Cannot store " + value.getClass());
+        }
+    }
+
+    private static Object readValue(DataInputStream in) throws IOException {
+        int tag = in.readByte();
+        switch (tag) {
+            case NULL:
+                return null;
+            case STRING:
+                return StringPool.intern(readString(in));
+            case INTEGER:
+                return in.readInt();
+            case DECIMAL:
+                return in.readDouble();
+            case BOOLEAN:
+                return in.readBoolean();
+            default:
+                throw new IOException("Unknown value tag " + tag);
+        }
+    }
+
+    //writeUTF() can't take more than 64K bytes, which a long string in a script can exceed
+    private static void writeString(DataOutputStream out, String string) throws IOException {
+        byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    public static final class Entry {
+        private final Node root;
+        private final List<Warning> warnings;
+
+        private Entry(Node root, List<Warning> warnings) {
+            this.root = root;
+            this.warnings = Collections.unmodifiableList(warnings);
+        }
+
+        /**
+         * @return the tree, parsed and optimized
+         */
+        public Node getRoot() {
+            return root;
+        }
+
+        /**
+         * @return the warnings found while parsing the script.
+         */
+        public List<Warning> getWarnings() {
+            return warnings;
+        }
+    }
+
+    private static final class StoredWarning extends Warning {
+        private final String[] lines;
+
+        private StoredWarning(String[] lines) {
+            this.lines = lines;
+        }
+
+        @Override
+        public String[] getMessageLines() {
+            return lines;
+        }
+    }
+}
@@ -3,16 +3,26 @@ package io.github.wysohn.triggerreactor.core.manager.trigger;
 import io.github.wysohn.triggerreactor.core.bridge.entity.IPlayer;
 import io.github.wysohn.triggerreactor.core.main.TriggerReactorCore;
 import io.github.wysohn.triggerreactor.core.manager.trigger.AbstractTriggerManager.TriggerInitFailedException;
+import io.github.wysohn.triggerreactor.core.script.interpreter.ExecutionBudget;
 import io.github.wysohn.triggerreactor.core.script.interpreter.Executor;
 import io.github.wysohn.triggerreactor.core.script.interpreter.Interpreter;
 import io.github.wysohn.triggerreactor.core.script.interpreter.InterpreterException;
+import io.github.wysohn.triggerreactor.core.script.interpreter.LineProfiler;
 import io.github.wysohn.triggerreactor.core.script.interpreter.Placeholder;
+import io.github.wysohn.triggerreactor.core.script.interpreter.Program;
+import io.github.wysohn.triggerreactor.core.script.interpreter.ProgramCache;
+import io.github.wysohn.triggerreactor.core.script.interpreter.ScriptCompiler;
+import io.github.wysohn.triggerreactor.core.script.interpreter.ScriptOptimizer;
+import io.github.wysohn.triggerreactor.core.script.interpreter.SynchronizableTask;
+import io.github.wysohn.triggerreactor.core.script.interpreter.Tier2Compiler;
 import io.github.wysohn.triggerreactor.core.script.lexer.Lexer;
 import io.github.wysohn.triggerreactor.core.script.lexer.LexerException;
 import io.github.wysohn.triggerreactor.core.script.parser.Node;
 import io.github.wysohn.triggerreactor.core.script.parser.Parser;
 import io.github.wysohn.triggerreactor.core.script.parser.ParserException;
 import io.github.wysohn.triggerreactor.core.script.warning.Warning;
+import io.github.wysohn.triggerreactor.tools.MemoryUtil;
+import io.github.wysohn.triggerreactor.tools.RateLimiter;
 import io.github.wysohn.triggerreactor.tools.StringUtils;
 import io.github.wysohn.triggerreactor.tools.timings.Timings;
 
@@ -20,25 +30,40 @@ import java.io.File;
 import java.io.IOException;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public abstract class Trigger implements Cloneable {
     protected final Map<UUID, Long> cooldowns = new ConcurrentHashMap<>();
     protected final File file;
     private static final ExecutorService asyncPool = Executors.newCachedThreadPool();
+    /**
+     * Continues the async Triggers suspended by #WAIT. The timer only hands them over to the asyncPool, so
+     * a single thread is enough no matter how many Triggers are waiting.
+     */
+    private static final Interpreter.WaitScheduler waitScheduler = (resume, delay) -> SynchronizableTask.getTimer()
+            .schedule(() -> asyncPool.submit(resume), delay, TimeUnit.MILLISECONDS);
 
     protected String triggerName;
     protected String script;
 
-    protected Node root;
+    protected volatile Program program;
+    private final AtomicInteger activations = new AtomicInteger();
     protected Map<String, Executor> executorMap;
     protected Map<String, Placeholder> placeholderMap;
     protected Map<Object, Object> gvarMap;
 
     private boolean sync = false;
+    private volatile LineProfiler profiler;
+    private ExecutionBudget budget;
+    /**
+     * a broken Trigger fired by frequent events would flood the log otherwise.
+     */
+    private final RateLimiter errorLimiter = new RateLimiter(3, 10L, TimeUnit.SECONDS);
 
     /**
      * This constructor <b>does not</b> initialize the fields. It is essential to call {@link #init()} method
@@ -97,18 +122,49 @@ public abstract class Trigger implements Cloneable {
      */
     public void init() throws TriggerInitFailedException {
         try {
-            Charset charset = StandardCharsets.UTF_8;
-
-            Lexer lexer = new Lexer(script, charset);
-            Parser parser = new Parser(lexer);
+            List<Warning> warnings;
+            ProgramCache.Entry shared = ProgramCache.get(script);
+            if (shared != null) {
+                script = shared.getScript();
+                program = shared.getProgram();
+                warnings = shared.getWarnings();
+            } else {
+                ScriptCache cache = TriggerReactorCore.getInstance().getScriptCache();
+                ScriptCache.Entry cached = cache == null ? null : cache.get(script);
+
+                Node root;
+                if (cached != null) {
+                    root = cached.getRoot();
+                    warnings = new ArrayList<>(cached.getWarnings());
+                } else {
+                    Charset charset = StandardCharsets.UTF_8;
+
+                    Lexer lexer = new Lexer(script, charset);
+                    Parser parser = new Parser(lexer);
+
+                    root = parser.parse(true);
+                    root = new ScriptOptimizer(root).optimize();
+                    warnings = new ArrayList<>(parser.getWarnings());
+                    if (cache != null)
+                        cache.put(script, root, warnings);
+                }
 
-            root = parser.parse(true);
-            List<Warning> warnings = parser.getWarnings();
+                ScriptCompiler compiler = new ScriptCompiler(root);
+                program = compiler.compile();
+                warnings.addAll(compiler.getWarnings());
+                ProgramCache.put(script, program, warnings);
+            }
+            activations.set(0);
 
             AbstractTriggerManager.reportWarnings(warnings, this);
             executorMap = TriggerReactorCore.getInstance().getExecutorManager().getBackedMap();
             placeholderMap = TriggerReactorCore.getInstance().getPlaceholderManager().getBackedMap();
             gvarMap = TriggerReactorCore.getInstance().getVariableManager().getGlobalVariableAdapter();
+            program.link(executorMap, placeholderMap);
+
+            //the lines are different now
+            if (profiler != null)
+                startProfiling();
         } catch (Exception ex) {
             throw new TriggerInitFailedException("Failed to initialize Trigger [" + this.getClass().getSimpleName()
                     + " -- " + triggerName + "]!", ex);
@@ -124,6 +180,15 @@ public abstract class Trigger implements Cloneable {
         return script;
     }
 
+    /**
+     * @return approximate number of bytes this Trigger keeps for its script; the script itself and the
+     * compiled Program. Triggers with the same script share them, but each of them counts them in full.
+     */
+    public long estimateSize() {
+        Program program = this.program;
+        return MemoryUtil.stringSize(script) + (program == null ? 0 : program.estimateSize());
+    }
+
     public void setScript(String script) throws TriggerInitFailedException {
         if (script == null)
             throw new RuntimeException("script cannot be null.");
@@ -154,6 +219,45 @@ public abstract class Trigger implements Cloneable {
         this.sync = sync;
     }
 
+    /**
+     * @return the budget of this Trigger; null if it follows the default budget.
+     */
+    public ExecutionBudget getBudget() {
+        return budget;
+    }
+
+    /**
+     * Limit the number of instructions each execution of this Trigger can run.
+     *
+     * @param budget the budget; null to follow the default budget, {@link ExecutionBudget#getDefault(boolean)}.
+     */
+    public void setBudget(ExecutionBudget budget) {
+        this.budget = budget;
+    }
+
+    /**
+     * Start measuring how much time each line of this Trigger takes. The result so far is discarded if it
+     * was already being profiled.
+     *
+     * @return the profiler
+     */
+    public LineProfiler startProfiling() {
+        int lines = script == null ? 0 : script.split("\n", -1).length;
+        profiler = new LineProfiler(lines);
+        return profiler;
+    }
+
+    public void stopProfiling() {
+        profiler = null;
+    }
+
+    /**
+     * @return the profiler; null if not being profiled.
+     */
+    public LineProfiler getProfiler() {
+        return profiler;
+    }
+
     /**
      * Start this trigger. Variables in scriptVars may be overridden if it has same name as
      * the name of fields of Event class.
@@ -173,6 +277,14 @@ public abstract class Trigger implements Cloneable {
         if (customVars != null)
             scriptVars.putAll(customVars);
 
+        //hot enough; the Interpreters created from now on use the compiled one
+        if (program != null && activations.incrementAndGet() == Tier2Compiler.THRESHOLD) {
+            Program compiled = Tier2Compiler.compile(program);
+            if (compiled != program)
+                compiled.link(executorMap, placeholderMap);
+            program = compiled;
+        }
+
         Interpreter interpreter = initInterpreter(scriptVars);
 
         startInterpretation(e, scriptVars, interpreter, isSync());
@@ -204,7 +316,7 @@ public abstract class Trigger implements Cloneable {
      * @return
      */
     protected Interpreter initInterpreter(Map<String, Object> scriptVars) {
-        Interpreter interpreter = new Interpreter(root);
+        Interpreter interpreter = new Interpreter(program);
         interpreter.setTaskSupervisor(TriggerReactorCore.getInstance());
         interpreter.setExecutorMap(executorMap);
         interpreter.setPlaceholderMap(placeholderMap);
@@ -212,7 +324,14 @@ public abstract class Trigger implements Cloneable {
         interpreter.setVars(scriptVars);
         interpreter.setSelfReference(TriggerReactorCore.getInstance().getSelfReference());
 
+        interpreter.setProfiler(profiler);
+        interpreter.setErrorHandler(this::reportError);
+        ExecutionBudget budget = getBudget();
+        interpreter.setBudget(budget != null ? budget : ExecutionBudget.getDefault(isSync()));
+
         interpreter.setSync(isSync());
+        if (!isSync())
+            interpreter.setWaitScheduler(waitScheduler);
 
         return interpreter;
     }
@@ -235,8 +354,7 @@ public abstract class Trigger implements Cloneable {
                 try (Timings.Timing t = Timings.getTiming(getTimingId()).begin(sync)) {
                     start(t, e, scriptVars, interpreter, sync);
                 } catch (Exception ex) {
-                    TriggerReactorCore.getInstance().handleException(e, new Exception(
-                            "Trigger [" + getTriggerName() + "] produced an error!", ex));
+                    reportError(e, new Exception("Trigger [" + getTriggerName() + "] produced an error!", ex));
                 }
                 return null;
             }
@@ -250,13 +368,13 @@ public abstract class Trigger implements Cloneable {
 
                 }
             } else {
-                Future<Void> future = TriggerReactorCore.getInstance().callSyncMethod(call);
+                Future<Void> future = TriggerReactorCore.getInstance().submitSync(call);
                 try {
                     future.get(3, TimeUnit.SECONDS);
                 } catch (InterruptedException | ExecutionException e1) {
 
                 } catch (TimeoutException e1) {
-                    TriggerReactorCore.getInstance().handleException(e, new RuntimeException(
+                    reportError(e, new RuntimeException(
                             "Took too long to process Trigger [" + getTriggerName() + "]! Is the server lagging?",
                             e1));
                 }
@@ -282,11 +400,31 @@ public abstract class Trigger implements Cloneable {
                     TriggerReactorCore.getInstance().createInterrupter(e, interpreter, cooldowns),
                     timing);
         } catch (InterpreterException ex) {
-            TriggerReactorCore.getInstance().handleException(e,
-                    new Exception("Could not finish interpretation for [" + getTriggerName() + "]!", ex));
+            reportError(e, ex);
         }
     }
 
+    /**
+     * Report the error of this Trigger, unless it has been reporting too many errors recently.
+     *
+     * @param e         the Event associated with this Trigger
+     * @param throwable the error
+     */
+    protected void reportError(Object e, Throwable throwable) {
+        if (throwable instanceof InterpreterException)
+            ((InterpreterException) throwable).setTrigger(getTriggerName());
+
+        if (!errorLimiter.tryAcquire())
+            return;
+
+        long suppressed = errorLimiter.takeDenied();
+        if (suppressed > 0)
+            TriggerReactorCore.getInstance().getLogger().warning("Trigger [" + getTriggerName() + "] had " + suppressed
+                    + " more errors which were not reported.");
+
+        TriggerReactorCore.getInstance().handleException(e, throwable);
+    }
+
     /**
      * The actual execution part. The Trigger can be sync/async depends on which thread invokes this method.
      *
@@ -22,6 +22,7 @@ import io.github.wysohn.triggerreactor.core.manager.location.Area;
 import io.github.wysohn.triggerreactor.core.manager.location.SimpleChunkLocation;
 import io.github.wysohn.triggerreactor.core.manager.location.SimpleLocation;
 import io.github.wysohn.triggerreactor.core.manager.trigger.AbstractTaggedTriggerManager;
+import io.github.wysohn.triggerreactor.core.script.interpreter.ExecutionBudget;
 import io.github.wysohn.triggerreactor.tools.FileUtil;
 
 import java.io.File;
@@ -39,7 +40,10 @@ public abstract class AbstractAreaTriggerManager extends AbstractTaggedTriggerMa
     protected static final String LARGEST = "Largest";
     protected static final String SYNC = "Sync";
 
-    protected Map<SimpleChunkLocation, Map<Area, AreaTrigger>> areaTriggersByLocation = new ConcurrentHashMap<>();
+    /**
+     * Replaced as a whole when reloading, so the old triggers keep working until the new ones are all loaded.
+     */
+    protected volatile Map<SimpleChunkLocation, Map<Area, AreaTrigger>> areaTriggersByLocation = new ConcurrentHashMap<>();
 
     /**
      * The child class should update this map with its own way. Though, the entity which garbage-corrected will
@@ -94,9 +98,6 @@ public abstract class AbstractAreaTriggerManager extends AbstractTaggedTriggerMa
 
     @Override
     public void reload() {
-        entityLocationMap.clear();
-        entityTrackMap.clear();
-
         FileFilter filter = new FileFilter() {
             @Override
             public boolean accept(File pathname) {
@@ -104,29 +105,29 @@ public abstract class AbstractAreaTriggerManager extends AbstractTaggedTriggerMa
             }
         };
 
-        areaTriggersByLocation.clear();
-
-        for (File ymlfile : folder.listFiles(filter)) {
+        List<AreaTrigger> loaded = loadAll(Arrays.asList(folder.listFiles(filter)), ymlfile -> {
             String[] extracted = extractPrefix(extractName(ymlfile));
             String triggerName = extracted[1];
 
             SimpleLocation smallest = null;
             SimpleLocation largest = null;
             boolean isSync = false;
+            ExecutionBudget budget = null;
             try {
                 smallest = SimpleLocation.valueOf(getData(ymlfile, SMALLEST));
                 largest = SimpleLocation.valueOf(getData(ymlfile, LARGEST));
                 isSync = getData(ymlfile, SYNC, false);
+                budget = readBudget(ymlfile);
             } catch (Exception e) {
                 e.printStackTrace();
                 plugin.getLogger().warning("Could not load Area Trigger " + ymlfile);
-                continue;
+                return null;
             }
 
             if (smallest == null || largest == null) {
                 plugin.getLogger().warning("Could not load Area Trigger" + ymlfile);
                 plugin.getLogger().warning("Could not find Smallest: or Largest:");
-                continue;
+                return null;
             }
 
             File scriptFolder = new File(folder, triggerName);
@@ -141,7 +142,7 @@ public abstract class AbstractAreaTriggerManager extends AbstractTaggedTriggerMa
                 enterScript = FileUtil.readFromFile(enterFile);
             } catch (IOException e1) {
                 e1.printStackTrace();
-                continue;
+                return null;
             }
 
             String exitScript = null;
@@ -151,16 +152,13 @@ public abstract class AbstractAreaTriggerManager extends AbstractTaggedTriggerMa
                 exitScript = FileUtil.readFromFile(exitFile);
             } catch (IOException e1) {
                 e1.printStackTrace();
-                continue;
+                return null;
             }
 
             Area area = new Area(smallest, largest);
             AreaTrigger trigger = new AreaTrigger(area, scriptFolder, triggerName);
             trigger.setSync(isSync);
-
-            triggers.put(triggerName, trigger);
-
-            this.setupArea(trigger);
+            trigger.setBudget(budget);
 
             try {
                 if (enterScript != null) {
@@ -168,7 +166,7 @@ public abstract class AbstractAreaTriggerManager extends AbstractTaggedTriggerMa
                 }
             } catch (TriggerInitFailedException e) {
                 e.printStackTrace();
-                continue;
+                return trigger;
             }
 
             try {
@@ -177,9 +175,21 @@ public abstract class AbstractAreaTriggerManager extends AbstractTaggedTriggerMa
                 }
             } catch (TriggerInitFailedException e) {
                 e.printStackTrace();
-                continue;
             }
+            return trigger;
+        });
+
+        Map<String, AreaTrigger> triggers = new ConcurrentHashMap<>();
+        Map<SimpleChunkLocation, Map<Area, AreaTrigger>> areaTriggersByLocation = new ConcurrentHashMap<>();
+        for (AreaTrigger trigger : loaded) {
+            triggers.put(trigger.getTriggerName(), trigger);
+            setupArea(areaTriggersByLocation, trigger);
         }
+
+        entityLocationMap.clear();
+        entityTrackMap.clear();
+        this.triggers = triggers;
+        this.areaTriggersByLocation = areaTriggersByLocation;
     }
 
     @Override
@@ -213,6 +223,7 @@ public abstract class AbstractAreaTriggerManager extends AbstractTaggedTriggerMa
                 setData(ymlfile, SMALLEST, area.getSmallest().toString());
                 setData(ymlfile, LARGEST, area.getLargest().toString());
                 setData(ymlfile, SYNC, trigger.isSync());
+                writeBudget(ymlfile, trigger.getBudget());
             } catch (Exception e1) {
                 e1.printStackTrace();
                 continue;
@@ -323,6 +334,11 @@ public abstract class AbstractAreaTriggerManager extends AbstractTaggedTriggerMa
      * @param trigger
      */
     protected void setupArea(AreaTrigger trigger) {
+        setupArea(areaTriggersByLocation, trigger);
+    }
+
+    private static void setupArea(Map<SimpleChunkLocation, Map<Area, AreaTrigger>> areaTriggersByLocation,
+                                  AreaTrigger trigger) {
         Area area = trigger.area;
 
         Set<SimpleChunkLocation> sclocs = Area.getAllChunkLocations(area);
@@ -4,6 +4,7 @@ import io.github.wysohn.triggerreactor.core.bridge.entity.IEntity;
 import io.github.wysohn.triggerreactor.core.manager.location.Area;
 import io.github.wysohn.triggerreactor.core.manager.trigger.AbstractTriggerManager;
 import io.github.wysohn.triggerreactor.core.manager.trigger.Trigger;
+import io.github.wysohn.triggerreactor.core.script.interpreter.ExecutionBudget;
 import io.github.wysohn.triggerreactor.core.script.interpreter.Interpreter;
 import io.github.wysohn.triggerreactor.tools.StringUtils;
 
@@ -182,6 +183,16 @@ public class AreaTrigger extends Trigger {
             areaTrigger.setSync(sync);
         }
 
+        @Override
+        public ExecutionBudget getBudget() {
+            return areaTrigger.getBudget();
+        }
+
+        @Override
+        public void setBudget(ExecutionBudget budget) {
+            areaTrigger.setBudget(budget);
+        }
+
         @Override
         public Trigger clone() {
             try {
@@ -219,6 +230,16 @@ public class AreaTrigger extends Trigger {
             areaTrigger.setSync(sync);
         }
 
+        @Override
+        public ExecutionBudget getBudget() {
+            return areaTrigger.getBudget();
+        }
+
+        @Override
+        public void setBudget(ExecutionBudget budget) {
+            areaTrigger.setBudget(budget);
+        }
+
         @Override
         public Trigger clone() {
             try {
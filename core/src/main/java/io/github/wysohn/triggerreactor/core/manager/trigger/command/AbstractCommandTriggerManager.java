@@ -19,40 +19,44 @@ package io.github.wysohn.triggerreactor.core.manager.trigger.command;
 import io.github.wysohn.triggerreactor.core.bridge.ICommandSender;
 import io.github.wysohn.triggerreactor.core.main.TriggerReactorCore;
 import io.github.wysohn.triggerreactor.core.manager.trigger.AbstractTriggerManager;
+import io.github.wysohn.triggerreactor.core.script.interpreter.ExecutionBudget;
 import io.github.wysohn.triggerreactor.tools.FileUtil;
 
 import java.io.File;
 import java.io.IOException;
 import java.util.*;
 import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
 
 public abstract class AbstractCommandTriggerManager extends AbstractTriggerManager<CommandTrigger> {
     protected final Map<String, CommandTrigger> aliasesMap = new CommandMap();
 
     @Override
     public void reload() {
-        triggers.clear();
-        aliasesMap.clear();
-
+        List<File> files = new ArrayList<>();
         for (File file : folder.listFiles()) {
-            if (!isTriggerFile(file))
-                continue;
+            if (isTriggerFile(file))
+                files.add(file);
+        }
 
+        List<CommandTrigger> loaded = loadAll(files, file -> {
             String triggerName = extractName(file);
 
             File triggerConfigFile = new File(folder, triggerName + ".yml");
 
             Boolean sync = Boolean.FALSE;
+            ExecutionBudget budget = null;
             List<String> permissions = new ArrayList<>();
             List<String> aliases = new ArrayList<>();
             if (triggerConfigFile.isFile() && triggerConfigFile.exists()) {
                 try {
                     sync = getData(triggerConfigFile, "sync", Boolean.FALSE);
+                    budget = readBudget(triggerConfigFile);
                     permissions = getData(triggerConfigFile, "permissions", new ArrayList<>());
                     aliases = getData(triggerConfigFile, "aliases", new ArrayList<>());
                 } catch (Exception e) {
                     e.printStackTrace();
-                    continue;
+                    return null;
                 }
             }
 
@@ -61,7 +65,7 @@ public abstract class AbstractCommandTriggerManager extends AbstractTriggerManag
                 script = FileUtil.readFromFile(file);
             } catch (IOException e) {
                 e.printStackTrace();
-                continue;
+                return null;
             }
 
             CommandTrigger trigger = null;
@@ -69,16 +73,24 @@ public abstract class AbstractCommandTriggerManager extends AbstractTriggerManag
                 trigger = new CommandTrigger(triggerName, file, script);
             } catch (TriggerInitFailedException e) {
                 e.printStackTrace();
-                continue;
+                return null;
             }
 
             trigger.setSync(sync);
+            trigger.setBudget(budget);
             trigger.setPermissions(permissions.toArray(new String[0]));
             trigger.setAliases(aliases.toArray(new String[0]));
+            return trigger;
+        });
+
+        Map<String, CommandTrigger> triggers = new ConcurrentHashMap<>();
+        for (CommandTrigger trigger : loaded)
+            triggers.put(trigger.getTriggerName(), trigger);
 
-            triggers.put(triggerName, trigger);
+        this.triggers = triggers;
+        aliasesMap.clear();
+        for (CommandTrigger trigger : loaded)
             registerAliases(trigger);
-        }
     }
 
     @Override
@@ -103,6 +115,7 @@ public abstract class AbstractCommandTriggerManager extends AbstractTriggerManag
             try {
                 triggerConfigFile.createNewFile();
                 setData(triggerConfigFile, "sync", trigger.isSync());
+                writeBudget(triggerConfigFile, trigger.getBudget());
                 setData(triggerConfigFile, "permissions", trigger.permissions);
                 setData(triggerConfigFile, "aliases", trigger.aliases);
             } catch (Exception e) {
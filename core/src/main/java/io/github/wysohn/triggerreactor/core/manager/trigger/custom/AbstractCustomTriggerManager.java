@@ -18,6 +18,7 @@ package io.github.wysohn.triggerreactor.core.manager.trigger.custom;
 
 import io.github.wysohn.triggerreactor.core.main.TriggerReactorCore;
 import io.github.wysohn.triggerreactor.core.manager.trigger.AbstractTriggerManager;
+import io.github.wysohn.triggerreactor.core.script.interpreter.ExecutionBudget;
 import io.github.wysohn.triggerreactor.core.script.lexer.LexerException;
 import io.github.wysohn.triggerreactor.core.script.parser.ParserException;
 import io.github.wysohn.triggerreactor.core.script.wrapper.SelfReference;
@@ -26,8 +27,12 @@ import io.github.wysohn.triggerreactor.tools.FileUtil;
 import java.io.File;
 import java.io.FileFilter;
 import java.io.IOException;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.List;
+import java.util.Map;
 import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
 
 public abstract class AbstractCustomTriggerManager extends AbstractTriggerManager<CustomTrigger> {
 
@@ -39,31 +44,28 @@ public abstract class AbstractCustomTriggerManager extends AbstractTriggerManage
         FileFilter filter = new FileFilter() {
             @Override
             public boolean accept(File pathname) {
-                return pathname.getName().endsWith(".yml");
+                return pathname.isFile() && pathname.getName().endsWith(".yml");
             }
         };
 
-        triggers.clear();
-
-        for (File ymlfile : folder.listFiles(filter)) {
-            if (!ymlfile.isFile())
-                continue;
-
+        List<CustomTrigger> loaded = loadAll(Arrays.asList(folder.listFiles(filter)), ymlfile -> {
             String triggerName = extractName(ymlfile);
 
             String eventName = null;
             boolean isSync = false;
+            ExecutionBudget budget = null;
             try {
                 eventName = this.getData(ymlfile, EVENT);
                 isSync = this.getData(ymlfile, SYNC, false);
+                budget = readBudget(ymlfile);
             } catch (Exception e2) {
                 e2.printStackTrace();
-                continue;
+                return null;
             }
 
             if (eventName == null) {
                 plugin.getLogger().warning("Could not find Event: for " + ymlfile);
-                continue;
+                return null;
             }
 
             Class<?> event = null;
@@ -72,7 +74,7 @@ public abstract class AbstractCustomTriggerManager extends AbstractTriggerManage
             } catch (ClassNotFoundException e1) {
                 plugin.getLogger().warning("Could not load " + ymlfile);
                 plugin.getLogger().warning(e1.getMessage() + " does not exist.");
-                continue;
+                return null;
             }
 
             File triggerFile = getTriggerFile(folder, triggerName, false);
@@ -80,24 +82,25 @@ public abstract class AbstractCustomTriggerManager extends AbstractTriggerManage
             try {
                 String read = FileUtil.readFromFile(triggerFile);
 
-                //Set<CustomTrigger> triggers = getTriggerSetForEvent(event);
-
-                try {
-                    CustomTrigger trigger = new CustomTrigger(event, eventName, triggerName, triggerFile, read);
-                    trigger.setSync(isSync);
-
-                    triggers.put(triggerName, trigger);
-
-                    registerEvent(plugin, event, trigger);
-                } catch (TriggerInitFailedException e) {
-                    e.printStackTrace();
-                    continue;
-                }
-            } catch (IOException e) {
+                CustomTrigger trigger = new CustomTrigger(event, eventName, triggerName, triggerFile, read);
+                trigger.setSync(isSync);
+                trigger.setBudget(budget);
+                return trigger;
+            } catch (TriggerInitFailedException | IOException e) {
                 e.printStackTrace();
-                continue;
+                return null;
             }
-        }
+        });
+
+        Map<String, CustomTrigger> triggers = new ConcurrentHashMap<>();
+        for (CustomTrigger trigger : loaded)
+            triggers.put(trigger.getTriggerName(), trigger);
+
+        for (CustomTrigger trigger : this.triggers.values())
+            unregisterEvent(plugin, trigger);
+        this.triggers = triggers;
+        for (CustomTrigger trigger : loaded)
+            registerEvent(plugin, trigger.event, trigger);
     }
 
     @Override
@@ -118,6 +121,7 @@ public abstract class AbstractCustomTriggerManager extends AbstractTriggerManage
 
             try {
                 this.setData(ymlfile, SYNC, trigger.isSync());
+                writeBudget(ymlfile, trigger.getBudget());
                 this.setData(ymlfile, EVENT, trigger.getEventName());
             } catch (Exception e1) {
                 e1.printStackTrace();
@@ -29,7 +29,9 @@ import io.github.wysohn.triggerreactor.tools.FileUtil;
 import java.io.File;
 import java.io.FileFilter;
 import java.io.IOException;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.concurrent.ConcurrentHashMap;
@@ -50,7 +52,7 @@ public abstract class AbstractInventoryTriggerManager extends AbstractTriggerMan
             }
         };
 
-        for (File ymlfile : folder.listFiles(filter)) {
+        List<InventoryTrigger> loaded = loadAll(Arrays.asList(folder.listFiles(filter)), ymlfile -> {
             String triggerName = extractName(ymlfile);
 
             File triggerFile = getTriggerFile(folder, triggerName, false);
@@ -58,13 +60,13 @@ public abstract class AbstractInventoryTriggerManager extends AbstractTriggerMan
             if (!triggerFile.exists()) {
                 plugin.getLogger().warning(triggerFile + " does not exists!");
                 plugin.getLogger().warning(triggerFile + " is skipped.");
-                continue;
+                return null;
             }
 
             if (triggerFile.isDirectory()) {
                 plugin.getLogger().warning(triggerFile + " should be a file not a directory!");
                 plugin.getLogger().warning(triggerFile + " is skipped.");
-                continue;
+                return null;
             }
 
             int size = 0;
@@ -78,12 +80,12 @@ public abstract class AbstractInventoryTriggerManager extends AbstractTriggerMan
             if (size == 0 || size % 9 != 0) {
                 plugin.getLogger().warning("Could not load inventory trigger " + triggerName);
                 plugin.getLogger().warning("Size: does not exists or not multiple of 9!");
-                continue;
+                return null;
             }
             if (size > InventoryTrigger.MAXSIZE) {
                 plugin.getLogger().warning("Could not load inventory trigger " + triggerName);
                 plugin.getLogger().warning("Size: cannot be larger than " + InventoryTrigger.MAXSIZE);
-                continue;
+                return null;
             }
 
             try {
@@ -94,7 +96,7 @@ public abstract class AbstractInventoryTriggerManager extends AbstractTriggerMan
 
             if (items == null) {
                 plugin.getLogger().warning("Could not find Items: for inventory trigger " + triggerName);
-                continue;
+                return null;
             }
 
             String script = null;
@@ -103,7 +105,7 @@ public abstract class AbstractInventoryTriggerManager extends AbstractTriggerMan
             } catch (IOException e) {
                 e.printStackTrace();
                 plugin.getLogger().warning("Could not load inventory trigger " + triggerName);
-                continue;
+                return null;
             }
 
             InventoryTrigger trigger = null;
@@ -113,11 +115,16 @@ public abstract class AbstractInventoryTriggerManager extends AbstractTriggerMan
             } catch (TriggerInitFailedException e) {
                 e.printStackTrace();
                 plugin.getLogger().warning("Could not load inventory trigger " + triggerName);
-                continue;
+                return null;
             }
 
-            triggers.put(triggerName, trigger);
-        }
+            return trigger;
+        });
+
+        Map<String, InventoryTrigger> triggers = new ConcurrentHashMap<>();
+        for (InventoryTrigger trigger : loaded)
+            triggers.put(trigger.getTriggerName(), trigger);
+        this.triggers = triggers;
     }
 
     @Override
@@ -5,6 +5,7 @@ import io.github.wysohn.triggerreactor.core.main.TriggerReactorCore;
 import io.github.wysohn.triggerreactor.core.manager.trigger.AbstractTriggerManager;
 import io.github.wysohn.triggerreactor.core.manager.trigger.Trigger;
 import io.github.wysohn.triggerreactor.core.script.interpreter.Interpreter;
+import io.github.wysohn.triggerreactor.core.script.interpreter.InterpreterException;
 import io.github.wysohn.triggerreactor.tools.timings.Timings;
 
 import java.io.File;
@@ -46,9 +47,10 @@ public class InventoryTrigger extends Trigger {
             interpreter.startWithContextAndInterrupter(e,
                     TriggerReactorCore.getInstance().createInterrupterForInv(e, interpreter, cooldowns, AbstractInventoryTriggerManager.inventoryMap),
                     timing);
+        } catch (InterpreterException ex) {
+            reportError(e, ex);
         } catch (Exception ex) {
-            TriggerReactorCore.getInstance().handleException(e,
-                    new Exception("Error occurred while processing Trigger [" + getTriggerName() + "]!", ex));
+            reportError(e, new Exception("Error occurred while processing Trigger [" + getTriggerName() + "]!", ex));
         }
     }
 
@@ -33,7 +33,10 @@ import java.util.Map.Entry;
 import java.util.concurrent.ConcurrentHashMap;
 
 public abstract class AbstractLocationBasedTriggerManager<T extends Trigger> extends AbstractTaggedTriggerManager<T> {
-    protected Map<SimpleChunkLocation, Map<SimpleLocation, T>> locationTriggers = new ConcurrentHashMap<>();
+    /**
+     * Replaced as a whole when reloading, so the old triggers keep working until the new ones are all loaded.
+     */
+    protected volatile Map<SimpleChunkLocation, Map<SimpleLocation, T>> locationTriggers = new ConcurrentHashMap<>();
     private Map<UUID, String> settingLocation = new HashMap<>();
 
     public AbstractLocationBasedTriggerManager(TriggerReactorCore plugin, File tirggerFolder) {
@@ -42,65 +45,75 @@ public abstract class AbstractLocationBasedTriggerManager<T extends Trigger> ext
 
     @Override
     public void reload() {
-        locationTriggers.clear();
+        List<File> files = new ArrayList<>();
+        listTriggers(folder.listFiles(), files);
 
-        loadTriggers(folder.listFiles());
-    }
+        List<Entry<SimpleLocation, T>> loaded = loadAll(files, file -> {
+            String[] extracted = extractPrefix(extractName(file));
+            String prefix = extracted[0];
+            String triggerName = extracted[1];
 
-    private void loadTriggers(File[] target) {
-        for (File file : target) {
-            if (file.isDirectory()) {
-                loadTriggers(file.listFiles());
-            } else {
-                if (!isTriggerFile(file))
-                    continue;
+            SimpleLocation sloc = null;
+            try {
+                sloc = stringToSloc(triggerName);
+            } catch (Exception e) {
+                e.printStackTrace();
+                return null;
+            }
 
-                String[] extracted = extractPrefix(extractName(file));
-                String prefix = extracted[0];
-                String triggerName = extracted[1];
+            String script = null;
+            try {
+                script = FileUtil.readFromFile(file);
+            } catch (IOException e1) {
+                e1.printStackTrace();
+                return null;
+            }
 
-                SimpleLocation sloc = null;
-                try {
-                    sloc = stringToSloc(triggerName);
-                } catch (Exception e) {
-                    e.printStackTrace();
-                    continue;
-                }
+            T trigger = null;
+            try {
+                trigger = constructTrigger(sloc.toString(), script);
+            } catch (TriggerInitFailedException e) {
+                e.printStackTrace();
+                return null;
+            }
 
-                String script = null;
-                try {
-                    script = FileUtil.readFromFile(file);
-                } catch (IOException e1) {
-                    e1.printStackTrace();
-                    continue;
-                }
+            if (sloc == null || trigger == null)
+                return null;
 
-                T trigger = null;
-                try {
-                    trigger = constructTrigger(sloc.toString(), script);
-                } catch (TriggerInitFailedException e) {
-                    e.printStackTrace();
-                    continue;
-                }
+            return new SimpleEntry<>(sloc, trigger);
+        });
 
-                if (sloc != null && trigger != null) {
-                    SimpleChunkLocation scloc = new SimpleChunkLocation(sloc);
-
-                    Map<SimpleLocation, T> triggerMap = locationTriggers.get(scloc);
-                    if (!locationTriggers.containsKey(scloc)) {
-                        triggerMap = new ConcurrentHashMap<>();
-                        locationTriggers.put(scloc, triggerMap);
-                    }
-
-                    if (triggerMap.containsKey(sloc)) {
-                        Trigger previous = triggerMap.get(sloc);
-                        plugin.getLogger().warning("Found a duplicating " + trigger.getClass().getSimpleName());
-                        plugin.getLogger().warning("Existing: " + previous.getFile().getAbsolutePath());
-                        plugin.getLogger().warning("Skipped: " + trigger.getFile().getAbsolutePath());
-                    } else {
-                        triggerMap.put(sloc, trigger);
-                    }
-                }
+        Map<SimpleChunkLocation, Map<SimpleLocation, T>> locationTriggers = new ConcurrentHashMap<>();
+        for (Entry<SimpleLocation, T> entry : loaded) {
+            SimpleLocation sloc = entry.getKey();
+            T trigger = entry.getValue();
+
+            SimpleChunkLocation scloc = new SimpleChunkLocation(sloc);
+
+            Map<SimpleLocation, T> triggerMap = locationTriggers.get(scloc);
+            if (!locationTriggers.containsKey(scloc)) {
+                triggerMap = new ConcurrentHashMap<>();
+                locationTriggers.put(scloc, triggerMap);
+            }
+
+            if (triggerMap.containsKey(sloc)) {
+                Trigger previous = triggerMap.get(sloc);
+                plugin.getLogger().warning("Found a duplicating " + trigger.getClass().getSimpleName());
+                plugin.getLogger().warning("Existing: " + previous.getFile().getAbsolutePath());
+                plugin.getLogger().warning("Skipped: " + trigger.getFile().getAbsolutePath());
+            } else {
+                triggerMap.put(sloc, trigger);
+            }
+        }
+        this.locationTriggers = locationTriggers;
+    }
+
+    private void listTriggers(File[] target, List<File> files) {
+        for (File file : target) {
+            if (file.isDirectory()) {
+                listTriggers(file.listFiles(), files);
+            } else if (isTriggerFile(file)) {
+                files.add(file);
             }
         }
     }
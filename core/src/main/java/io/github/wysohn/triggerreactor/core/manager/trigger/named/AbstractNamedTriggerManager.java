@@ -19,13 +19,15 @@ package io.github.wysohn.triggerreactor.core.manager.trigger.named;
 import io.github.wysohn.triggerreactor.core.main.TriggerReactorCore;
 import io.github.wysohn.triggerreactor.core.manager.trigger.AbstractTriggerManager;
 import io.github.wysohn.triggerreactor.core.manager.trigger.Trigger;
-import io.github.wysohn.triggerreactor.core.script.lexer.LexerException;
-import io.github.wysohn.triggerreactor.core.script.parser.ParserException;
 import io.github.wysohn.triggerreactor.tools.FileUtil;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Stack;
+import java.util.concurrent.ConcurrentHashMap;
 
 public abstract class AbstractNamedTriggerManager extends AbstractTriggerManager<NamedTrigger> {
 
@@ -35,16 +37,29 @@ public abstract class AbstractNamedTriggerManager extends AbstractTriggerManager
 
     @Override
     public void reload() {
-        triggers.clear();
-
+        Map<File, String> names = new LinkedHashMap<>();
         for (File file : folder.listFiles()) {
+            list(new Stack<>(), file, names);
+        }
+
+        List<NamedTrigger> loaded = loadAll(names.keySet(), file -> {
             try {
-                load(file);
+                return new NamedTrigger(names.get(file), file, FileUtil.readFromFile(file));
             } catch (TriggerInitFailedException | IOException e) {
                 e.printStackTrace();
-                continue;
+                return null;
+            }
+        });
+
+        Map<String, NamedTrigger> triggers = new ConcurrentHashMap<>();
+        for (NamedTrigger trigger : loaded) {
+            if (triggers.containsKey(trigger.getTriggerName())) {
+                plugin.getLogger().warning(trigger.getTriggerName() + " already registered! Duplicating Named Trigger?");
+            } else {
+                triggers.put(trigger.getTriggerName(), trigger);
             }
         }
+        this.triggers = triggers;
     }
 
     @Override
@@ -85,26 +100,20 @@ public abstract class AbstractNamedTriggerManager extends AbstractTriggerManager
     }
 
     /**
-     * Load script file or folder recursively. If given file is file, it will
-     * just load the trigger, but if it is folder, it will recursively load the
-     * trigger with their path named appended with ':' sign. For example, if
+     * Find script files in the file or folder recursively. If given file is file, it will
+     * just name the trigger, but if it is folder, it will recursively name the
+     * triggers with their path appended with ':' sign. For example, if
      * Test is under Hi folder, it will be named Hi:Test.
      *
-     * @param file the file/folder
-     * @throws IOException
-     * @throws LexerException
-     * @throws ParserException
+     * @param stack the folders visited so far
+     * @param file  the file/folder
+     * @param names the trigger names found, by their file
      */
-    protected void load(File file) throws TriggerInitFailedException, IOException {
-        load(new Stack<>(), file);
-    }
-
-    private void load(Stack<String> stack, File file)
-            throws TriggerInitFailedException, IOException {
+    private void list(Stack<String> stack, File file, Map<File, String> names) {
         if (file.isDirectory()) {
             stack.push(file.getName());
             for (File f : file.listFiles()) {
-                load(stack, f);
+                list(stack, f, names);
             }
             stack.pop();
         } else {
@@ -119,12 +128,7 @@ public abstract class AbstractNamedTriggerManager extends AbstractTriggerManager
             }
             builder.append(triggerName);
 
-            if (triggers.containsKey(builder.toString())) {
-                plugin.getLogger().warning(builder.toString() + " already registered! Duplicating Named Trigger?");
-            } else {
-                NamedTrigger trigger = new NamedTrigger(builder.toString(), file, FileUtil.readFromFile(file));
-                triggers.put(builder.toString(), trigger);
-            }
+            names.put(file, builder.toString());
         }
     }
 
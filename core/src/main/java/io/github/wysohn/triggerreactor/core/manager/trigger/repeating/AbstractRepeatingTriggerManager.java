@@ -20,6 +20,7 @@ import io.github.wysohn.triggerreactor.core.bridge.ICommandSender;
 import io.github.wysohn.triggerreactor.core.main.TriggerReactorCore;
 import io.github.wysohn.triggerreactor.core.manager.trigger.AbstractTriggerManager;
 import io.github.wysohn.triggerreactor.core.manager.trigger.Trigger;
+import io.github.wysohn.triggerreactor.core.script.interpreter.ExecutionBudget;
 import io.github.wysohn.triggerreactor.core.script.lexer.LexerException;
 import io.github.wysohn.triggerreactor.core.script.parser.ParserException;
 import io.github.wysohn.triggerreactor.tools.FileUtil;
@@ -28,7 +29,9 @@ import io.github.wysohn.triggerreactor.tools.TimeUtil;
 import java.io.File;
 import java.io.FileFilter;
 import java.io.IOException;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.concurrent.ConcurrentHashMap;
@@ -47,20 +50,16 @@ public abstract class AbstractRepeatingTriggerManager extends AbstractTriggerMan
             }
         };
 
-        triggers.clear();
-        for (Entry<String, Thread> entry : runningThreads.entrySet()) {
-            entry.getValue().interrupt();
-        }
-        runningThreads.clear();
-
-        for (File ymlfile : folder.listFiles(filter)) {
+        List<RepeatingTrigger> loaded = loadAll(Arrays.asList(folder.listFiles(filter)), ymlfile -> {
             String triggerName = extractName(ymlfile);
 
             boolean autoStart = false;
             int interval = 1000;
+            ExecutionBudget budget = null;
             try {
                 autoStart = this.getData(ymlfile, "AutoStart", false);
                 interval = this.getData(ymlfile, "Interval", 1000);
+                budget = readBudget(ymlfile);
             } catch (Exception e2) {
                 e2.printStackTrace();
             }
@@ -73,6 +72,7 @@ public abstract class AbstractRepeatingTriggerManager extends AbstractTriggerMan
                 script = FileUtil.readFromFile(triggerFile);
             } catch (IOException e1) {
                 e1.printStackTrace();
+                return null;
             }
 
             RepeatingTrigger trigger = null;
@@ -80,18 +80,31 @@ public abstract class AbstractRepeatingTriggerManager extends AbstractTriggerMan
                 trigger = new RepeatingTrigger(triggerName, triggerFile, script, interval);
             } catch (TriggerInitFailedException e) {
                 e.printStackTrace();
+                return null;
             }
             trigger.setAutoStart(autoStart);
             trigger.setInterval(interval);
+            trigger.setBudget(budget);
+            return trigger;
+        });
 
-            triggers.put(triggerName, trigger);
+        Map<String, RepeatingTrigger> triggers = new ConcurrentHashMap<>();
+        for (RepeatingTrigger trigger : loaded)
+            triggers.put(trigger.getTriggerName(), trigger);
+
+        for (Entry<String, Thread> entry : runningThreads.entrySet()) {
+            entry.getValue().interrupt();
+        }
+        runningThreads.clear();
+        this.triggers = triggers;
 
-            final RepeatingTrigger triggerCopy = trigger;
+        for (RepeatingTrigger trigger : loaded) {
+            String triggerName = trigger.getTriggerName();
             //start 1 tick later so other managers can be initialized.
             plugin.runTask(new Runnable() {
                 @Override
                 public void run() {
-                    if (triggerCopy.isAutoStart()) {
+                    if (trigger.isAutoStart()) {
                         startTrigger(triggerName);
                     }
                 }
@@ -111,6 +124,7 @@ public abstract class AbstractRepeatingTriggerManager extends AbstractTriggerMan
             try {
                 this.setData(ymlfile, "AutoStart", trigger.isAutoStart());
                 this.setData(ymlfile, "Interval", trigger.getInterval());
+                writeBudget(ymlfile, trigger.getBudget());
             } catch (Exception e) {
                 e.printStackTrace();
             }
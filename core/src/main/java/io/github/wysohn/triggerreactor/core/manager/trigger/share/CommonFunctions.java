@@ -3,7 +3,6 @@ package io.github.wysohn.triggerreactor.core.manager.trigger.share;
 import io.github.wysohn.triggerreactor.core.manager.location.SimpleLocation;
 import io.github.wysohn.triggerreactor.core.script.wrapper.SelfReference;
 import io.github.wysohn.triggerreactor.tools.ReflectionUtil;
-import org.apache.commons.lang3.ClassUtils;
 
 import java.lang.reflect.Array;
 import java.lang.reflect.Constructor;
@@ -199,94 +198,8 @@ public class CommonFunctions implements SelfReference {
         try {
             Class<?> clazz = Class.forName(className);
 
-            List<Constructor<?>> validConstructors = new ArrayList<>();
-
-            for (Constructor<?> constructor : clazz.getConstructors()) {
-                Class<?>[] parameterTypes = null;
-
-                parameterTypes = constructor.getParameterTypes();
-                if (constructor.isVarArgs()) {
-                    if (constructor.isVarArgs() && (parameterTypes.length - args.length >= 2)) {
-                        parameterTypes = null;
-                        continue;
-                    }
-                } else {
-                    if (parameterTypes.length != args.length) {
-                        parameterTypes = null;
-                        continue;
-                    }
-                }
-
-                if (constructor.isVarArgs()) {
-                    boolean matches = false;
-
-                    // check non vararg part
-                    for (int i = 0; i < parameterTypes.length - 1; i++) {
-                        matches = ReflectionUtil.checkMatch(parameterTypes[i], args[i]);
-                        if (!matches)
-                            break;
-                    }
-
-                    // check rest
-                    for (int i = parameterTypes.length - 1; i < args.length; i++) {
-                        Class<?> arrayType = parameterTypes[parameterTypes.length - 1].getComponentType();
-
-                        matches = ReflectionUtil.checkMatch(arrayType, args[i]);
-                        if (!matches)
-                            break;
-                    }
-
-                    if (matches) {
-                        validConstructors.add(constructor);
-                    }
-                } else {
-                    boolean matches = true;
-
-                    for (int i = 0; i < parameterTypes.length; i++) {
-                        matches = ReflectionUtil.checkMatch(parameterTypes[i], args[i]);
-                        if (!matches)
-                            break;
-                    }
-
-                    if (matches) {
-                        validConstructors.add(constructor);
-                    }
-                }
-            }
-
-            if (!validConstructors.isEmpty()) {
-                Constructor<?> constructor = validConstructors.get(0);
-                for (int i = 1; i < validConstructors.size(); i++) {
-                    Constructor<?> targetConstructor = validConstructors.get(i);
-
-                    Class<?>[] params = constructor.getParameterTypes();
-                    Class<?>[] otherParams = targetConstructor.getParameterTypes();
-
-                    if (constructor.isVarArgs() && targetConstructor.isVarArgs()) {
-                        for (int j = 0; j < params.length; j++) {
-                            if (params[j].isAssignableFrom(otherParams[j])) {
-                                constructor = targetConstructor;
-                                break;
-                            }
-                        }
-                    } else if (constructor.isVarArgs()) {
-                        //usually, non-vararg is more specific method. So we use that
-                        constructor = targetConstructor;
-                    } else if (targetConstructor.isVarArgs()) {
-                        //do nothing
-                    } else {
-                        for (int j = 0; j < params.length; j++) {
-                            if (otherParams[j].isEnum()) { // enum will be handled later
-                                constructor = targetConstructor;
-                                break;
-                            } else if (ClassUtils.isAssignable(otherParams[j], params[j], true)) { //narrow down to find the most specific method
-                                constructor = targetConstructor;
-                                break;
-                            }
-                        }
-                    }
-                }
-
+            Constructor<?> constructor = ReflectionUtil.findConstructor(clazz, args);
+            if (constructor != null) {
                 constructor.setAccessible(true);
 
                 for (int i = 0; i < args.length; i++) {
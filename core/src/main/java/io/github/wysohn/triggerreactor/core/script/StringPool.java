@@ -0,0 +1,51 @@
+package io.github.wysohn.triggerreactor.core.script;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Identifiers and string values shared by all the scripts. The same names and messages show up over and over again
+ * across the triggers, so each of them is kept only once.
+ */
+public final class StringPool {
+    /**
+     * Stops growing at this many strings, just in case.
+     */
+    private static final int MAX_STRINGS = 1 << 16;
+    /**
+     * Longer strings are rarely repeated, so they are not worth keeping.
+     */
+    private static final int MAX_LENGTH = 128;
+
+    private static final Map<String, String> STRINGS = new ConcurrentHashMap<>();
+
+    private StringPool() {
+    }
+
+    /**
+     * @param str the string
+     * @return the same string from the pool if there is one; otherwise the given string, which is added to the pool
+     * if there is still room.
+     */
+    public static String intern(String str) {
+        if (str == null || str.length() > MAX_LENGTH)
+            return str;
+
+        String interned = STRINGS.get(str);
+        if (interned != null)
+            return interned;
+
+        if (STRINGS.size() >= MAX_STRINGS)
+            return str;
+
+        interned = STRINGS.putIfAbsent(str, str);
+        return interned == null ? str : interned;
+    }
+
+    /**
+     * @return number of the strings in the pool.
+     */
+    public static int size() {
+        return STRINGS.size();
+    }
+}
@@ -0,0 +1,49 @@
+package io.github.wysohn.triggerreactor.core.script.interpreter;
+
+import java.lang.ref.WeakReference;
+import java.util.Collections;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Classes IMPORTed by the scripts, shared by all of them, so the same class is looked up only once no matter how
+ * many scripts import it or how many times they are compiled again.
+ * <p>
+ * Each ClassLoader has its own cache, since the same name can mean different classes to different ClassLoaders.
+ * Neither the ClassLoaders nor the classes are strongly referenced, so a plugin can still be unloaded after its
+ * classes were imported.
+ */
+final class ClassCache {
+    private static final Map<ClassLoader, Map<String, WeakReference<Class<?>>>> CACHE =
+            Collections.synchronizedMap(new WeakHashMap<>());
+
+    private ClassCache() {
+    }
+
+    /**
+     * @param name   fully qualified name of the class. Use $ for the nested classes.
+     * @param loader the ClassLoader to find the class with
+     * @return the class. It's not initialized until it's actually used.
+     * @throws ClassNotFoundException if there is no such class. Not cached, so the class may be found next time.
+     */
+    static Class<?> forName(String name, ClassLoader loader) throws ClassNotFoundException {
+        Map<String, WeakReference<Class<?>>> classes = CACHE.computeIfAbsent(loader,
+                key -> new ConcurrentHashMap<>());
+
+        WeakReference<Class<?>> reference = classes.get(name);
+        Class<?> clazz = reference == null ? null : reference.get();
+        if (clazz == null) {
+            clazz = Class.forName(name, false, loader);
+            classes.put(name, new WeakReference<>(clazz));
+        }
+        return clazz;
+    }
+
+    /**
+     * @return simple name of the class the IMPORT refers to, which is what the script calls it.
+     */
+    static String simpleName(String name) {
+        return name.substring(Math.max(name.lastIndexOf('.'), name.lastIndexOf('$')) + 1);
+    }
+}
@@ -0,0 +1,88 @@
+package io.github.wysohn.triggerreactor.core.script.interpreter;
+
+/**
+ * Limits how many instructions a single execution of a script can run, so a runaway loop can't stall the server.
+ * Counting instructions is much cheaper than checking the clock, and it covers every kind of loop the same way.
+ * <p>
+ * Waiting for #WAIT or a SYNC block doesn't count, but the instructions inside the SYNC block do.
+ */
+public final class ExecutionBudget {
+    /**
+     * 1,000,000 instructions take roughly 10~100ms depending on what they do, which is already more than
+     * a server tick.
+     */
+    public static final long DEFAULT_STEPS = 1_000_000L;
+    /**
+     * for the Triggers which shouldn't be limited even though there is a default budget.
+     */
+    public static final ExecutionBudget UNLIMITED = new ExecutionBudget(Long.MAX_VALUE, Policy.LOG);
+
+    private static volatile ExecutionBudget syncDefault = new ExecutionBudget(DEFAULT_STEPS, Policy.ABORT);
+    private static volatile ExecutionBudget asyncDefault = null;
+
+    private final long steps;
+    private final Policy policy;
+
+    /**
+     * @param steps  number of instructions allowed.
+     * @param policy what to do when there are more
+     */
+    public ExecutionBudget(long steps, Policy policy) {
+        if (steps <= 0)
+            throw new IllegalArgumentException("steps must be positive: " + steps);
+        if (policy == null)
+            throw new NullPointerException("policy");
+
+        this.steps = steps;
+        this.policy = policy;
+    }
+
+    public long getSteps() {
+        return steps;
+    }
+
+    public Policy getPolicy() {
+        return policy;
+    }
+
+    /**
+     * @param sync true for the Triggers running in the server thread
+     * @return the budget applied to the Triggers which don't have one of their own; null if unlimited.
+     */
+    public static ExecutionBudget getDefault(boolean sync) {
+        return sync ? syncDefault : asyncDefault;
+    }
+
+    /**
+     * @param sync   true for the Triggers running in the server thread
+     * @param budget the budget; null for unlimited
+     */
+    public static void setDefault(boolean sync, ExecutionBudget budget) {
+        if (sync) {
+            syncDefault = budget;
+        } else {
+            asyncDefault = budget;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return steps + " steps, " + policy;
+    }
+
+    public enum Policy {
+        /**
+         * stop the execution with an {@link InterpreterException}.
+         */
+        ABORT,
+        /**
+         * suspend the execution and continue with a new budget at the next tick, just like #WAIT. Only
+         * possible where #WAIT doesn't block the thread, which means the async Triggers; the others are aborted.
+         */
+        YIELD,
+        /**
+         * leave a warning, and let the execution continue without the limit.
+         */
+        LOG,
+    }
+}
@@ -0,0 +1,406 @@
+package io.github.wysohn.triggerreactor.core.script.interpreter;
+
+import io.github.wysohn.triggerreactor.core.script.Token;
+
+/**
+ * Several instructions of a hot {@link Program} compiled into a tree of typed expressions by {@link Tier2Compiler}.
+ * The types of the local variables are speculated from what the instructions have seen so far, so the
+ * values are computed as int, double, or boolean without going through the {@link OperandStack} at all.
+ * <p>
+ * The expressions have no side effect until the very end, so when the speculation is wrong (or the arithmetic fails)
+ * the Interpreter can simply execute the original instructions instead, which are still there right after
+ * the {@link Opcode#FUSED} instruction. An expression which keeps failing is disabled for good.
+ */
+final class FusedExpression {
+    /**
+     * store the value to the local variable
+     */
+    static final int STORE = 0;
+    /**
+     * jump to the target if the value is false
+     */
+    static final int BRANCH = 1;
+    /**
+     * leave the value on the stack
+     */
+    static final int PUSH = 2;
+
+    static final int MAX_FAILURES = 100;
+
+    /**
+     * the instruction replaced by this expression.
+     */
+    final Instruction original;
+    private final int kind;
+    private final Expr expr;
+    /**
+     * slot to store or jump target.
+     */
+    private final int arg;
+    /**
+     * index of the instruction after the last instruction replaced.
+     */
+    private final int end;
+    private final Token origin;
+
+    private int failures = 0;
+    private volatile boolean disabled = false;
+
+    FusedExpression(Instruction original, int kind, Expr expr, int arg, int end, Token origin) {
+        this.original = original;
+        this.kind = kind;
+        this.expr = expr;
+        this.arg = arg;
+        this.end = end;
+        this.origin = origin;
+    }
+
+    /**
+     * @return the next instruction to execute. -1 if the original instructions must be executed instead.
+     */
+    int run(LocalVariables vars, OperandStack stack) {
+        if (disabled)
+            return -1;
+
+        Object[] slots = vars.slots;
+        try {
+            switch (kind) {
+                case STORE:
+                    vars.set(arg, expr.evalBoxed(slots));
+                    return end;
+                case BRANCH:
+                    return expr.evalCondition(slots) ? end : arg;
+                default:
+                    if (expr.type == OperandStack.INTEGER) {
+                        stack.pushInteger(expr.evalInt(slots), origin);
+                    } else if (expr.type == OperandStack.DECIMAL) {
+                        stack.pushDecimal(expr.evalDecimal(slots), origin);
+                    } else {
+                        stack.pushBoolean(expr.evalBoolean(slots), origin);
+                    }
+                    return end;
+            }
+        } catch (Deoptimize | ArithmeticException e) {
+            if (++failures >= MAX_FAILURES)
+                disabled = true;
+            return -1;
+        }
+    }
+
+    boolean isDisabled() {
+        return disabled;
+    }
+
+    @Override
+    public String toString() {
+        return (kind == STORE ? "STORE " : kind == BRANCH ? "BRANCH " : "PUSH ") + arg + " " + expr + " -> " + end;
+    }
+
+    /**
+     * Thrown when the value is not the type that the expression expected.
+     */
+    static final class Deoptimize extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        private static final Deoptimize INSTANCE = new Deoptimize();
+
+        private Deoptimize() {
+            super(null, null, false, false);
+        }
+    }
+
+    /**
+     * Typed expression. Only the eval method matches the {@link #type} is valid, except that INTEGER can be
+     * evaluated as DECIMAL as well.
+     */
+    abstract static class Expr {
+        /**
+         * one of {@link OperandStack#INTEGER}, {@link OperandStack#DECIMAL}, and {@link OperandStack#BOOLEAN}
+         */
+        final byte type;
+
+        Expr(byte type) {
+            this.type = type;
+        }
+
+        int evalInt(Object[] slots) {
+            throw new UnsupportedOperationException();
+        }
+
+        double evalDecimal(Object[] slots) {
+            return evalInt(slots);
+        }
+
+        boolean evalBoolean(Object[] slots) {
+            throw new UnsupportedOperationException();
+        }
+
+        final Object evalBoxed(Object[] slots) {
+            if (type == OperandStack.INTEGER) {
+                return evalInt(slots);
+            } else if (type == OperandStack.DECIMAL) {
+                return evalDecimal(slots);
+            } else {
+                return evalBoolean(slots);
+            }
+        }
+
+        /**
+         * Same as the condition of IF statement.
+         */
+        final boolean evalCondition(Object[] slots) {
+            return type == OperandStack.BOOLEAN ? evalBoolean(slots) : evalDecimal(slots) != 0.0;
+        }
+    }
+
+    static final class Constant extends Expr {
+        private final Object value;
+
+        Constant(byte type, Object value) {
+            super(type);
+            this.value = value;
+        }
+
+        @Override
+        int evalInt(Object[] slots) {
+            return (Integer) value;
+        }
+
+        @Override
+        double evalDecimal(Object[] slots) {
+            return type == OperandStack.INTEGER ? (Integer) value : (Double) value;
+        }
+
+        @Override
+        boolean evalBoolean(Object[] slots) {
+            return (Boolean) value;
+        }
+
+        @Override
+        public String toString() {
+            return String.valueOf(value);
+        }
+    }
+
+    static final class Local extends Expr {
+        private final int slot;
+
+        Local(byte type, int slot) {
+            super(type);
+            this.slot = slot;
+        }
+
+        @Override
+        int evalInt(Object[] slots) {
+            Object value = slots[slot];
+            if (value instanceof Integer)
+                return (Integer) value;
+            throw Deoptimize.INSTANCE;
+        }
+
+        @Override
+        double evalDecimal(Object[] slots) {
+            Object value = slots[slot];
+            if (type == OperandStack.DECIMAL && value instanceof Double)
+                return (Double) value;
+            if (type == OperandStack.INTEGER && value instanceof Integer)
+                return (Integer) value;
+            throw Deoptimize.INSTANCE;
+        }
+
+        @Override
+        boolean evalBoolean(Object[] slots) {
+            Object value = slots[slot];
+            if (value instanceof Boolean)
+                return (Boolean) value;
+            throw Deoptimize.INSTANCE;
+        }
+
+        @Override
+        public String toString() {
+            return "$" + slot;
+        }
+    }
+
+    /**
+     * ADD, SUB, MUL, DIV, and MOD. INTEGER if both sides are INTEGER; DECIMAL otherwise.
+     */
+    static final class Arithmetic extends Expr {
+        private final int opcode;
+        private final Expr left;
+        private final Expr right;
+
+        Arithmetic(int opcode, Expr left, Expr right) {
+            super(left.type == OperandStack.INTEGER && right.type == OperandStack.INTEGER
+                    ? OperandStack.INTEGER : OperandStack.DECIMAL);
+            this.opcode = opcode;
+            this.left = left;
+            this.right = right;
+        }
+
+        @Override
+        int evalInt(Object[] slots) {
+            int l = left.evalInt(slots);
+            int r = right.evalInt(slots);
+            switch (opcode) {
+                case Opcode.ADD:
+                    return l + r;
+                case Opcode.SUB:
+                    return l - r;
+                case Opcode.MUL:
+                    return l * r;
+                case Opcode.DIV:
+                    return l / r;
+                default:
+                    return l % r;
+            }
+        }
+
+        @Override
+        double evalDecimal(Object[] slots) {
+            if (type == OperandStack.INTEGER)
+                return evalInt(slots);
+
+            double l = left.evalDecimal(slots);
+            double r = right.evalDecimal(slots);
+            switch (opcode) {
+                case Opcode.ADD:
+                    return l + r;
+                case Opcode.SUB:
+                    return l - r;
+                case Opcode.MUL:
+                    return l * r;
+                case Opcode.DIV:
+                    return l / r;
+                default:
+                    return l % r;
+            }
+        }
+
+        @Override
+        public String toString() {
+            return "(" + left + " " + Opcode.name(opcode) + " " + right + ")";
+        }
+    }
+
+    static final class Negate extends Expr {
+        private final Expr value;
+
+        Negate(Expr value) {
+            super(value.type);
+            this.value = value;
+        }
+
+        @Override
+        int evalInt(Object[] slots) {
+            return -value.evalInt(slots);
+        }
+
+        @Override
+        double evalDecimal(Object[] slots) {
+            return -value.evalDecimal(slots);
+        }
+
+        @Override
+        public String toString() {
+            return "-" + value;
+        }
+    }
+
+    /**
+     * Numbers are false if zero.
+     */
+    static final class Not extends Expr {
+        private final Expr value;
+
+        Not(Expr value) {
+            super(OperandStack.BOOLEAN);
+            this.value = value;
+        }
+
+        @Override
+        boolean evalBoolean(Object[] slots) {
+            return value.type == OperandStack.BOOLEAN ? !value.evalBoolean(slots) : value.evalDecimal(slots) == 0.0;
+        }
+
+        @Override
+        public String toString() {
+            return "!" + value;
+        }
+    }
+
+    /**
+     * LT, GT, LE, GE of numbers
+     */
+    static final class Compare extends Expr {
+        private final int opcode;
+        private final Expr left;
+        private final Expr right;
+
+        Compare(int opcode, Expr left, Expr right) {
+            super(OperandStack.BOOLEAN);
+            this.opcode = opcode;
+            this.left = left;
+            this.right = right;
+        }
+
+        @Override
+        boolean evalBoolean(Object[] slots) {
+            double l = left.evalDecimal(slots);
+            double r = right.evalDecimal(slots);
+            switch (opcode) {
+                case Opcode.LT:
+                    return l < r;
+                case Opcode.GT:
+                    return l > r;
+                case Opcode.LE:
+                    return l <= r;
+                default:
+                    return l >= r;
+            }
+        }
+
+        @Override
+        public String toString() {
+            return "(" + left + " " + Opcode.name(opcode) + " " + right + ")";
+        }
+    }
+
+    /**
+     * EQ and NE. Values of different types are never equal.
+     */
+    static final class Equals extends Expr {
+        private final boolean negate;
+        private final Expr left;
+        private final Expr right;
+
+        Equals(boolean negate, Expr left, Expr right) {
+            super(OperandStack.BOOLEAN);
+            this.negate = negate;
+            this.left = left;
+            this.right = right;
+        }
+
+        @Override
+        boolean evalBoolean(Object[] slots) {
+            boolean equals;
+            if (left.type != right.type) {
+                left.evalBoxed(slots);
+                right.evalBoxed(slots);
+                equals = false;
+            } else if (left.type == OperandStack.INTEGER) {
+                equals = left.evalInt(slots) == right.evalInt(slots);
+            } else if (left.type == OperandStack.DECIMAL) {
+                equals = Double.compare(left.evalDecimal(slots), right.evalDecimal(slots)) == 0;
+            } else {
+                equals = left.evalBoolean(slots) == right.evalBoolean(slots);
+            }
+            return negate != equals;
+        }
+
+        @Override
+        public String toString() {
+            return "(" + left + (negate ? " NE " : " EQ ") + right + ")";
+        }
+    }
+}
@@ -0,0 +1,183 @@
+package io.github.wysohn.triggerreactor.core.script.interpreter;
+
+import io.github.wysohn.triggerreactor.tools.ReflectionUtil;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+
+/**
+ * Inline cache of a single method call site in the script, such as player.getLocation().
+ * <p>
+ * The method resolved by {@link ReflectionUtil#findMethod(Class, String, Object...)} is remembered with the
+ * class of the receiver and the classes of the arguments, along with a {@link MethodHandle} that already has
+ * the varargs packing baked in. Next time the call site is executed with the same classes, the method is
+ * invoked right away without searching it again. A call site can remember up to {@link #MAX_ENTRIES} different
+ * combinations; after that, it's considered megamorphic and simply uses {@link ReflectionUtil} for the misses.
+ * <p>
+ * The cache is shared by all the Interpreters running the same {@link Program}, so it must be thread safe.
+ */
+final class InlineCache {
+    static final int MAX_ENTRIES = 4;
+
+    private static final MethodType INVOKER_TYPE = MethodType.methodType(Object.class, Object.class, Object[].class);
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+
+    private final String methodName;
+    private volatile Entry[] entries = new Entry[0];
+    private volatile boolean megamorphic = false;
+
+    InlineCache(String methodName) {
+        this.methodName = methodName;
+    }
+
+    /**
+     * Invoke the method. Works the same as {@link ReflectionUtil#invokeMethod(Class, Object, String, Object...)}
+     *
+     * @param clazz    the class where the method will be searched
+     * @param receiver the instance. null if static.
+     * @param args     the arguments. String arguments may be replaced with the Enum values
+     * @return the value returned by the method
+     */
+    Object invoke(Class<?> clazz, Object receiver, Object[] args)
+            throws NoSuchMethodException, IllegalArgumentException, InvocationTargetException, IllegalAccessException {
+        Entry[] entries = this.entries;
+        for (Entry entry : entries) {
+            if (entry.matches(clazz, args))
+                return entry.invoke(clazz, receiver, methodName, args);
+        }
+
+        if (megamorphic)
+            return ReflectionUtil.invokeMethod(clazz, receiver, methodName, args);
+
+        Entry entry = resolve(clazz, args);
+        if (entry == null)
+            return ReflectionUtil.invokeMethod(clazz, receiver, methodName, args);
+
+        synchronized (this) {
+            if (this.entries.length >= MAX_ENTRIES) {
+                megamorphic = true;
+            } else {
+                Entry[] newEntries = new Entry[this.entries.length + 1];
+                System.arraycopy(this.entries, 0, newEntries, 0, this.entries.length);
+                newEntries[newEntries.length - 1] = entry;
+                this.entries = newEntries;
+            }
+        }
+
+        return entry.invoke(clazz, receiver, methodName, args);
+    }
+
+    /**
+     * @return number of the receiver/argument combinations this call site remembers.
+     */
+    int size() {
+        return entries.length;
+    }
+
+    boolean isMegamorphic() {
+        return megamorphic;
+    }
+
+    private Entry resolve(Class<?> clazz, Object[] args) {
+        Method method = ReflectionUtil.findMethod(clazz, methodName, args);
+        if (method == null)
+            return null;
+
+        Class<?>[] parameterTypes = method.getParameterTypes();
+
+        MethodHandle handle;
+        try {
+            method.setAccessible(true);
+            handle = LOOKUP.unreflect(method);
+        } catch (IllegalAccessException | RuntimeException e) {
+            //let ReflectionUtil handle it
+            return null;
+        }
+
+        if (method.isVarArgs()) {
+            handle = handle.asFixedArity().asCollector(parameterTypes[parameterTypes.length - 1],
+                    args.length - parameterTypes.length + 1);
+        }
+
+        if (Modifier.isStatic(method.getModifiers())) {
+            handle = MethodHandles.dropArguments(handle, 0, Object.class);
+        }
+
+        handle = handle.asType(handle.type().generic())
+                .asSpreader(Object[].class, args.length)
+                .asType(INVOKER_TYPE);
+
+        Class<?>[] argTypes = new Class<?>[args.length];
+        Class<?>[] enumTypes = null;
+        for (int i = 0; i < args.length; i++) {
+            argTypes[i] = args[i] == null ? null : args[i].getClass();
+
+            if (args[i] instanceof String && i < parameterTypes.length && parameterTypes[i].isEnum()) {
+                if (enumTypes == null)
+                    enumTypes = new Class<?>[args.length];
+                enumTypes[i] = parameterTypes[i];
+            }
+        }
+
+        return new Entry(clazz, argTypes, enumTypes, handle);
+    }
+
+    private static final class Entry {
+        private final Class<?> receiverType;
+        private final Class<?>[] argTypes;
+        /**
+         * Enum type of the parameter if the String argument has to be converted. null if no conversion is needed.
+         */
+        private final Class<?>[] enumTypes;
+        private final MethodHandle handle;
+
+        private Entry(Class<?> receiverType, Class<?>[] argTypes, Class<?>[] enumTypes, MethodHandle handle) {
+            this.receiverType = receiverType;
+            this.argTypes = argTypes;
+            this.enumTypes = enumTypes;
+            this.handle = handle;
+        }
+
+        private boolean matches(Class<?> clazz, Object[] args) {
+            if (clazz != receiverType || args.length != argTypes.length)
+                return false;
+
+            for (int i = 0; i < args.length; i++) {
+                if ((args[i] == null ? null : args[i].getClass()) != argTypes[i])
+                    return false;
+            }
+
+            return true;
+        }
+
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        private Object invoke(Class<?> clazz, Object receiver, String methodName, Object[] args)
+                throws NoSuchMethodException, IllegalArgumentException, InvocationTargetException, IllegalAccessException {
+            if (enumTypes != null) {
+                Object[] converted = args.clone();
+                for (int i = 0; i < enumTypes.length; i++) {
+                    if (enumTypes[i] == null)
+                        continue;
+
+                    try {
+                        converted[i] = Enum.valueOf((Class<? extends Enum>) enumTypes[i], (String) args[i]);
+                    } catch (IllegalArgumentException ex) {
+                        //not a valid name. ReflectionUtil will look for an alternative.
+                        return ReflectionUtil.invokeMethod(clazz, receiver, methodName, args);
+                    }
+                }
+                System.arraycopy(converted, 0, args, 0, args.length);
+            }
+
+            try {
+                return (Object) handle.invokeExact(receiver, args);
+            } catch (Throwable throwable) {
+                throw new InvocationTargetException(throwable);
+            }
+        }
+    }
+}
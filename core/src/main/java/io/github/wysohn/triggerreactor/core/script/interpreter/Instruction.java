@@ -0,0 +1,103 @@
+package io.github.wysohn.triggerreactor.core.script.interpreter;
+
+import io.github.wysohn.triggerreactor.core.script.Token;
+import io.github.wysohn.triggerreactor.core.script.parser.Node;
+
+/**
+ * A single step of a compiled {@link Program}.
+ */
+public final class Instruction {
+    final int opcode;
+    /**
+     * Token of the Node this instruction was generated from. Used for error reporting. Only the Token is kept
+     * so the tree can be let go once the Program is compiled.
+     */
+    final Token token;
+    /**
+     * extra value of the instruction; command name of executor, operator, error message, etc.
+     */
+    final Object operand;
+    /**
+     * jump target, number of arguments, or the loop index depends on the opcode.
+     */
+    int arg;
+    /**
+     * index of the innermost loop surrounding this instruction. -1 if not in a loop.
+     */
+    int loop = -1;
+    /**
+     * types of the values this instruction has seen so far. See {@link #observe(Object)}
+     */
+    byte seen;
+    /**
+     * created when {@link Interpreter.ProcessInterrupter#onNodeProcess(Node)} first needs it.
+     */
+    private Node node;
+
+    Instruction(int opcode, Token token, Object operand, int arg) {
+        this.opcode = opcode;
+        this.token = token;
+        this.operand = operand;
+        this.arg = arg;
+    }
+
+    /**
+     * @return a Node holding the Token of this instruction. It has no children. Not synchronized, as the Token and
+     * the children of a Node are final; two threads may each make one the first time, and either one is fine.
+     */
+    Node node() {
+        Node node = this.node;
+        if (node == null)
+            this.node = node = new Node(token);
+        return node;
+    }
+
+    static final byte SEEN_INTEGER = 1;
+    static final byte SEEN_DECIMAL = 2;
+    static final byte SEEN_BOOLEAN = 4;
+    static final byte SEEN_OTHER = 8;
+
+    /**
+     * Remember the type of the value. {@link Tier2Compiler} uses it to decide which type to expect.
+     * This is not synchronized; losing an update only makes the profile less complete.
+     */
+    void observe(Object value) {
+        byte type;
+        if (value instanceof Integer) {
+            type = SEEN_INTEGER;
+        } else if (value instanceof Double) {
+            type = SEEN_DECIMAL;
+        } else if (value instanceof Boolean) {
+            type = SEEN_BOOLEAN;
+        } else {
+            type = SEEN_OTHER;
+        }
+
+        if ((seen & type) == 0)
+            seen |= type;
+    }
+
+    public int getOpcode() {
+        return opcode;
+    }
+
+    /**
+     * @see #node()
+     */
+    public Node getNode() {
+        return node();
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder(Opcode.name(opcode));
+        builder.append(' ').append(arg);
+        if (operand != null)
+            builder.append(" '").append(operand).append('\'');
+        if (loop >= 0)
+            builder.append(" loop=").append(loop);
+        if (token != null)
+            builder.append(' ').append(token.toStringRowColOnly());
+        return builder.toString();
+    }
+}
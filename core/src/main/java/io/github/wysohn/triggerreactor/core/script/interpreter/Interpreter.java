@@ -23,39 +23,60 @@ import io.github.wysohn.triggerreactor.core.script.lexer.Lexer;
 import io.github.wysohn.triggerreactor.core.script.parser.Node;
 import io.github.wysohn.triggerreactor.core.script.parser.Parser;
 import io.github.wysohn.triggerreactor.core.script.wrapper.Accessor;
+import io.github.wysohn.triggerreactor.core.script.wrapper.FieldAccessor;
 import io.github.wysohn.triggerreactor.core.script.wrapper.IScriptObject;
 import io.github.wysohn.triggerreactor.core.script.wrapper.SelfReference;
 import io.github.wysohn.triggerreactor.tools.CaseInsensitiveStringMap;
 import io.github.wysohn.triggerreactor.tools.ReflectionUtil;
-import io.github.wysohn.triggerreactor.tools.VarMap;
 import io.github.wysohn.triggerreactor.tools.timings.Timings;
 
 import java.lang.reflect.Array;
 import java.lang.reflect.InvocationTargetException;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
-import java.util.Map.Entry;
-import java.util.Stack;
+import java.util.RandomAccess;
+import java.util.ArrayList;
 import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.ExecutionException;
-
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Runs a {@link Program}. The Program is immutable and shared, so an Interpreter only holds the state of a
+ * single execution, and creating one is cheap. Things that are not always needed (imported classes, the copy of the
+ * executor map, etc.) are created only when they are used; the executor and placeholder maps given by the caller
+ * are used as they are instead of being copied.
+ * <p>
+ * The operand stack and the loop states, which are needed only while running, are in a {@link Frame} borrowed
+ * from the pool when the execution starts and returned when it's over.
+ */
 public class Interpreter {
-    private final Node root;
-    private final Map<String, Class<?>> importMap = new ConcurrentHashMap<>();
+    private static final SelfReference DEFAULT_SELF_REFERENCE = new SelfReference() {
+    };
+    private static volatile Capture defaultCapture = Capture.SHARED;
+
+    private final Program program;
 
     private TaskSupervisor task;
 
-    private Map<String, Executor> executorMap = new CaseInsensitiveStringMap<>();
-    private Map<String, Placeholder> placeholderMap = new CaseInsensitiveStringMap<>();
-    private Map<Object, Object> gvars = new ConcurrentHashMap<>();
-    private Map<String, Object> vars = new VarMap();
-    private SelfReference selfReference = new SelfReference() {
-    };
+    private Map<String, Executor> executorMap = Collections.emptyMap();
+    private Map<String, Placeholder> placeholderMap = Collections.emptyMap();
+    private Map<Object, Object> gvars;
+    private LocalVariables vars;
+    private SelfReference selfReference = DEFAULT_SELF_REFERENCE;
 
-    private Stack<Token> stack = new Stack<>();
+    private Frame frame;
+    private OperandStack stack;
+    private LoopState[] loopStates;
 
     private Object context = null;
     private ProcessInterrupter interrupter = null;
@@ -64,10 +85,57 @@ public class Interpreter {
 
     private boolean stopFlag = false;
     private boolean waitFlag = false;
-    private boolean breakFlag = false;
-    private boolean continueFlag = false;
+    private long waitMillis = 0L;
+
+    private WaitScheduler waitScheduler;
+    /**
+     * number of executions in progress that can't be suspended, such as SYNC blocks.
+     */
+    private int nesting = 0;
+    /**
+     * where to continue when the execution was suspended by #WAIT. -1 if not suspended.
+     */
+    private int suspendedAt = -1;
+    /**
+     * the SYNC instruction the execution left off to run its block in the server thread. -1 if none.
+     */
+    private int syncAt = -1;
 
     private int callArgsSize = 0;
+    private Executor waitExecutor;
+    private Executor awaitExecutor;
+
+    private Capture capture;
+    /**
+     * the ASYNC blocks this execution started, which may not be done yet.
+     */
+    private List<CompletableFuture<Void>> asyncBlocks;
+    private int pruneAsyncBlocksAt = 64;
+    /**
+     * what #AWAIT is waiting for while the execution is suspended by it.
+     */
+    private CompletableFuture<Void> awaiting;
+    /**
+     * completed when the execution is over, including the parts after suspensions. Only for ASYNC blocks.
+     */
+    private CompletableFuture<Void> done;
+
+    private ErrorHandler errorHandler;
+    private ExecutionBudget budget;
+    /**
+     * number of instructions that can be executed before the budget runs out.
+     */
+    private long stepsLeft = Long.MAX_VALUE;
+
+    private LineProfiler profiler;
+    /**
+     * the line being profiled, and when, where, and how much memory allocated when the execution entered it.
+     * -1 if none.
+     */
+    private int profiledRow = -1;
+    private long profiledSince;
+    private long profiledThread;
+    private long profiledBytes;
 
     /*    public Interpreter(Node root, Map<String, Executor> executorMap, Map<String, Object> gvars,
                 SelfReference selfReference, InterpretCondition condition) {
@@ -83,35 +151,94 @@ public class Interpreter {
         }
     */
     public Interpreter(Node root) {
-        this.root = root;
+        this(new ScriptCompiler(root).compile());
+    }
 
-        initDefaultExecutors();
-        initDefaultPlaceholders();
+    public Interpreter(Program program) {
+        this.program = program;
+    }
+
+    /**
+     * Execution of an ASYNC block. It runs the same Program as the parent, and shares everything that stays the
+     * same throughout the execution instead of setting them up again.
+     */
+    private Interpreter(Interpreter parent, LocalVariables vars) {
+        this.program = parent.program;
+        this.task = parent.task;
+        this.executorMap = parent.executorMap;
+        this.placeholderMap = parent.placeholderMap;
+        this.gvars = parent.getGvars();
+        this.vars = vars;
+        this.selfReference = parent.selfReference;
+        this.waitScheduler = parent.waitScheduler;
+        this.errorHandler = parent.errorHandler;
+        this.capture = parent.capture;
+        this.profiler = parent.profiler;
+        this.done = new CompletableFuture<>();
+        setBudget(parent.budget);
     }
 
     public void setTaskSupervisor(TaskSupervisor taskSupervisor) {
         this.task = taskSupervisor;
     }
 
+    /**
+     * @return the executors of this Interpreter, including the default ones like #STOP. Modifying it
+     * only affects this Interpreter.
+     */
     public Map<String, Executor> getExecutorMap() {
+        if (!(executorMap instanceof CaseInsensitiveStringMap)) {
+            Map<String, Executor> copy = new CaseInsensitiveStringMap<>();
+            copy.put("STOP", EXECUTOR_STOP);
+            copy.put("WAIT", waitExecutor());
+            copy.put("AWAIT", awaitExecutor());
+            copy.put("BREAK", EXECUTOR_BREAK);
+            copy.put("CONTINUE", EXECUTOR_CONTINUE);
+            copy.putAll(executorMap);
+            executorMap = copy;
+        }
         return executorMap;
     }
 
+    /**
+     * Add the executors. The first map given is used as is without copying it, so the changes made to the map
+     * later are visible to this Interpreter.
+     */
     public void setExecutorMap(Map<String, Executor> executorMap) {
-        for (Entry<String, Executor> entry : executorMap.entrySet())
-            this.executorMap.put(entry.getKey(), entry.getValue());
+        if (this.executorMap.isEmpty()) {
+            this.executorMap = executorMap;
+        } else {
+            getExecutorMap().putAll(executorMap);
+        }
     }
 
+    /**
+     * @return the placeholders of this Interpreter. Modifying it only affects this Interpreter.
+     */
     public Map<String, Placeholder> getPlaceholderMap() {
+        if (!(placeholderMap instanceof CaseInsensitiveStringMap)) {
+            Map<String, Placeholder> copy = new CaseInsensitiveStringMap<>();
+            copy.putAll(placeholderMap);
+            placeholderMap = copy;
+        }
         return placeholderMap;
     }
 
+    /**
+     * Add the placeholders. The first map given is used as is without copying it, so the changes made to the map
+     * later are visible to this Interpreter.
+     */
     public void setPlaceholderMap(Map<String, Placeholder> placeholderMap) {
-        for (Entry<String, Placeholder> entry : placeholderMap.entrySet())
-            this.placeholderMap.put(entry.getKey(), entry.getValue());
+        if (this.placeholderMap.isEmpty()) {
+            this.placeholderMap = placeholderMap;
+        } else {
+            getPlaceholderMap().putAll(placeholderMap);
+        }
     }
 
     public Map<Object, Object> getGvars() {
+        if (gvars == null)
+            gvars = new ConcurrentHashMap<>();
         return gvars;
     }
 
@@ -127,19 +254,65 @@ public class Interpreter {
         this.selfReference = selfReference;
     }
 
+    /**
+     * Use the given map as the local variables. Variables used in the script are copied in right away, and
+     * the changes are copied back when the interpretation is over.
+     *
+     * @param vars
+     */
     public void setVars(Map<String, Object> vars) {
-        this.vars = vars;
+        this.vars = new LocalVariables(program, vars);
+    }
+
+    private LocalVariables vars() {
+        if (vars == null)
+            vars = new LocalVariables(program);
+        return vars;
     }
 
-    private void initDefaultExecutors() {
-        executorMap.put("STOP", EXECUTOR_STOP);
-        executorMap.put("WAIT", EXECUTOR_WAIT);
-        executorMap.put("BREAK", EXECUTOR_BREAK);
-        executorMap.put("CONTINUE", EXECUTOR_CONTINUE);
+    /**
+     * Find the executor. Name is case insensitive, and the executors given by {@link #setExecutorMap(Map)} take
+     * priority over the default ones.
+     *
+     * @return the executor; null if not found.
+     */
+    private Executor findExecutor(Link<Executor> link) {
+        Executor executor = link.resolve(executorMap);
+        //the map may be shared with the parent of the ASYNC block, but these belong to each Interpreter
+        if (executor instanceof WaitExecutor)
+            return waitExecutor();
+        if (executor instanceof AwaitExecutor)
+            return awaitExecutor();
+        if (executor != null)
+            return executor;
+
+        String name = link.name;
+
+        if ("STOP".equalsIgnoreCase(name)) {
+            return EXECUTOR_STOP;
+        } else if ("WAIT".equalsIgnoreCase(name)) {
+            return waitExecutor();
+        } else if ("AWAIT".equalsIgnoreCase(name)) {
+            return awaitExecutor();
+        } else if ("BREAK".equalsIgnoreCase(name)) {
+            return EXECUTOR_BREAK;
+        } else if ("CONTINUE".equalsIgnoreCase(name)) {
+            return EXECUTOR_CONTINUE;
+        } else {
+            return null;
+        }
     }
 
-    private void initDefaultPlaceholders() {
+    private Executor waitExecutor() {
+        if (waitExecutor == null)
+            waitExecutor = new WaitExecutor();
+        return waitExecutor;
+    }
 
+    private Executor awaitExecutor() {
+        if (awaitExecutor == null)
+            awaitExecutor = new AwaitExecutor();
+        return awaitExecutor;
     }
 
     public boolean isStopFlag() {
@@ -154,17 +327,91 @@ public class Interpreter {
         return sync;
     }
 
+    /**
+     * Let #WAIT suspend the execution instead of blocking the thread. When the execution is suspended,
+     * startWithContext() returns right away, and the scheduler continues the rest of it later. Without the scheduler,
+     * #WAIT blocks the thread until the time passes.
+     *
+     * @param waitScheduler the scheduler; null to block the thread.
+     */
+    public void setWaitScheduler(WaitScheduler waitScheduler) {
+        this.waitScheduler = waitScheduler;
+    }
+
+    /**
+     * @param errorHandler handles the errors which can't be thrown to the caller of startWithContext(), such as
+     *                     the ones after #WAIT suspended the execution, or in ASYNC blocks. null to let
+     *                     {@link TriggerReactorCore#handleException(Object, Throwable)} handle them.
+     */
+    public void setErrorHandler(ErrorHandler errorHandler) {
+        this.errorHandler = errorHandler;
+    }
+
+    private void reportError(InterpreterException e) {
+        if (errorHandler != null) {
+            errorHandler.onError(context, e);
+        } else {
+            TriggerReactorCore.getInstance().handleException(context, e);
+        }
+    }
+
+    /**
+     * @param budget limit of the number of instructions executed; null for unlimited.
+     */
+    public void setBudget(ExecutionBudget budget) {
+        this.budget = budget;
+        this.stepsLeft = budget == null ? Long.MAX_VALUE : budget.getSteps();
+    }
+
+    /**
+     * @param profiler the profiler to report the time spent in each line; null to not profile.
+     */
+    public void setProfiler(LineProfiler profiler) {
+        this.profiler = profiler;
+    }
+
     public void setSync(boolean sync) {
         this.sync = sync;
     }
 
+    /**
+     * @param capture how the ASYNC blocks see the local variables; null for {@link #getDefaultCapture()}.
+     */
+    public void setCapture(Capture capture) {
+        this.capture = capture;
+    }
+
+    public static Capture getDefaultCapture() {
+        return defaultCapture;
+    }
+
+    /**
+     * @param capture how the ASYNC blocks see the local variables, unless set with {@link #setCapture(Capture)}.
+     */
+    public static void setDefaultCapture(Capture capture) {
+        if (capture == null)
+            throw new NullPointerException("capture");
+        defaultCapture = capture;
+    }
+
+    /**
+     * @return future completed when all the ASYNC blocks this execution started so far are done, including
+     * the ones failed.
+     */
+    public CompletableFuture<Void> getAsyncBlocks() {
+        if (asyncBlocks == null || asyncBlocks.isEmpty())
+            return CompletableFuture.completedFuture(null);
+
+        return CompletableFuture.allOf(asyncBlocks.toArray(new CompletableFuture<?>[0]));
+    }
+
     /**
      * Map of local variables. Fill this map with necessary pairs depends on the context.
      *
      * @return
      */
     public Map<String, Object> getVars() {
-        return vars;
+        return vars();
     }
 
     public void startWithContext(Object context) throws InterpreterException {
@@ -190,742 +437,1205 @@ public class Interpreter {
      */
     public void startWithContextAndInterrupter(Object context, ProcessInterrupter interrupter,
                                                Timings.Timing timing) throws InterpreterException {
+        startWithContextAndInterrupter(context, interrupter, timing, 0, program.size());
+    }
+
+    private void startWithContextAndInterrupter(Object context, ProcessInterrupter interrupter,
+                                                Timings.Timing timing, int from, int to) throws InterpreterException {
         this.context = context;
         this.interrupter = interrupter;
         this.timing = timing;
 
+        vars();
+        acquireFrame();
+        execute(from, to, from);
+    }
+
+    /**
+     * Run the instructions, and schedule the rest of them if #WAIT or SYNC suspended the execution.
+     */
+    private void execute(int from, int to, int start) throws InterpreterException {
+        suspendedAt = -1;
+        syncAt = -1;
         try (Timings.Timing t = this.timing.getTiming("Code Interpretation").begin(sync)) {
-            for (int i = 0; i < root.getChildren().size(); i++)
-                start(root.getChildren().get(i));
+            run(from, to, start);
+        } finally {
+            if (profiler != null)
+                profileLine(-1);
+            //the frame is still in use if suspended
+            if (suspendedAt < 0 && syncAt < 0) {
+                finish();
+            } else {
+                vars.flush();
+            }
         }
-    }
 
-    //Check if stopFlag is on before pop Token from stack.
-    private void start(Node node) throws InterpreterException {
-        if (stopFlag)
+        if (syncAt >= 0) {
+            continueAfterSync(from, to, program.code[syncAt], syncAt + 1);
             return;
+        }
 
-        //IF children -- [0] : condition , [1] : true body , [2] : false body(may not exist)
-        if ("ELSEIF".equals(node.getToken().value) || "IF".equals(node.getToken().value)) {
-            start(node.getChildren().get(0));//[0] condition
-            if (stopFlag)
-                return;
+        if (suspendedAt >= 0) {
+            int resumeAt = suspendedAt;
+            Runnable resume = () -> {
+                waitFlag = false;
+                try {
+                    execute(from, to, resumeAt);
+                } catch (InterpreterException e) {
+                    reportError(e);
+                }
+            };
 
-            Token resultToken = stack.pop();
+            if (awaiting != null) {
+                CompletableFuture<Void> blocks = awaiting;
+                awaiting = null;
+                blocks.whenComplete((nothing, throwable) -> waitScheduler.schedule(resume, 0L));
+            } else {
+                waitScheduler.schedule(resume, waitMillis);
+            }
+        }
+    }
 
-            if (isVariable(resultToken)) {
-                resultToken = unwrapVariable(resultToken);
+    /**
+     * Clean up after the execution is over.
+     */
+    private void finish() {
+        releaseFrame();
+        vars.flush();
+        if (done != null)
+            done.complete(null);
+    }
+
+    /**
+     * Run the SYNC block in the server thread, and then the rest of the execution in a separate thread. No thread
+     * is blocked in the meantime, and the block is run along with the other tasks queued for the same tick.
+     */
+    private void continueAfterSync(int from, int to, Instruction inst, int begin) {
+        task.queueSync(() -> {
+            nesting++;
+            try {
+                return run(begin, inst.arg);
+            } finally {
+                nesting--;
             }
+        }).whenComplete((exit, throwable) -> task.submitAsync(() -> {
+            try {
+                if (throwable != null) {
+                    finish();
 
-            if (resultToken.type == Type.NULLVALUE) { // null check failed
-                if (node.getChildren().size() > 2) {
-                    start(node.getChildren().get(2));
-                }
-            } else { // normal IF statement
-                if (resultToken.isBoolean()) {
-                    boolean result = (boolean) resultToken.value;
-                    if (result) {
-                        start(node.getChildren().get(1));//[1] true body
-                    } else if (node.getChildren().size() > 2) {
-                        start(node.getChildren().get(2));//[2] false body
-                    }
-                } else if (resultToken.isInteger()) {
-                    int value = resultToken.toInteger();
-                    if (value != 0) {
-                        start(node.getChildren().get(1));
-                    } else if (node.getChildren().size() > 2) {
-                        start(node.getChildren().get(2));
-                    }
-                } else if (resultToken.isDecimal()) {
-                    double value = resultToken.toDecimal();
-                    if (value != 0.0) {
-                        start(node.getChildren().get(1));
-                    } else if (node.getChildren().size() > 2) {
-                        start(node.getChildren().get(2));
-                    }
-                } else if (resultToken.value != null) {//always true if not null
-                    start(node.getChildren().get(1));
-                } else {
-                    throw new InterpreterException("Unexpected token for IF statement! -- " + resultToken);
+                    InterpreterException ex = throwable instanceof InterpreterException
+                            ? (InterpreterException) throwable
+                            : new InterpreterException("Synchronous task error.", throwable);
+                    throw ex.addFrame(frameOf(inst));
                 }
+
+                //#BREAK or #CONTINUE may jumped out of the block
+                execute(from, to, exit);
+            } catch (InterpreterException e) {
+                reportError(e);
             }
-        } else if ("WHILE".equals(node.getToken().value)) {
-            long start = System.currentTimeMillis();
+        }));
+    }
 
-            Token resultToken = null;
-            do {
-                start(node.getChildren().get(0));
+    /**
+     * Report the line the execution has been in so far, and start measuring the given line.
+     *
+     * @param row the line the execution entered; -1 if it's leaving.
+     */
+    private void profileLine(int row) {
+        long now = System.nanoTime();
+        long thread = Thread.currentThread().getId();
+        long bytes = LineProfiler.allocatedBytes();
+
+        if (profiledRow > 0) {
+            //allocation is counted per thread, so it's meaningless if the line continued in another thread
+            long allocated = bytes >= 0 && thread == profiledThread ? bytes - profiledBytes : 0L;
+            profiler.record(profiledRow, now - profiledSince, allocated);
+        }
 
-                if (stack.isEmpty())
-                    throw new InterpreterException("Could not find condition for WHILE statement!");
+        profiledRow = row;
+        profiledSince = now;
+        profiledThread = thread;
+        profiledBytes = bytes;
+    }
 
-                resultToken = stack.pop();
+    private void acquireFrame() {
+        frame = Frame.acquire(program.getLoopCount());
+        stack = frame.stack;
+        loopStates = frame.loopStates;
+    }
 
-                if (isVariable(resultToken)) {
-                    resultToken = unwrapVariable(resultToken);
-                }
+    private void releaseFrame() {
+        Frame.release(frame);
+        frame = null;
+        stack = null;
+        loopStates = null;
+    }
 
-                if (!(resultToken.value instanceof Boolean))
-                    throw new InterpreterException("Unexpected token for WHILE statement! -- " + resultToken);
+    /**
+     * Execute the instructions in the range [from, to).
+     *
+     * @param from first instruction to execute
+     * @param to   end of the range (exclusive)
+     * @return the index of the instruction where the execution left the range. It's usually 'to,' but
+     * it can be somewhere else if #BREAK or #CONTINUE jumped out of the range.
+     * @throws InterpreterException
+     */
+    private int run(int from, int to) throws InterpreterException {
+        return run(from, to, from);
+    }
 
-                if ((boolean) resultToken.value) {
-                    start(node.getChildren().get(1));
-                    if (breakFlag) {
-                        breakFlag = false;
-                        break;
-                    }
+    /**
+     * Same as {@link #run(int, int)}, but start from the given instruction instead.
+     */
+    private int run(int from, int to, int start) throws InterpreterException {
+        final Instruction[] code = program.code;
 
-                    breakFlag = false;
-                    continueFlag = false;
-                } else {
+        int pc = start;
+        Instruction inst = null;
+        try {
+            while (!stopFlag && pc >= from && pc < to) {
+                inst = code[pc++];
+
+                if (--stepsLeft < 0 && !renewBudget(pc - 1))
                     break;
-                }
 
-                if (sync) {
-                    long timeTook = System.currentTimeMillis() - start;
-                    if (timeTook > 3000L)
-                        throw new InterpreterException("WHILE loop took more than 3 seconds in Server Thread. This is usually "
-                                + "considered as 'too long' and can crash the server.");
+                if (profiler != null) {
+                    int row = inst.token.row;
+                    //some Tokens made by the optimizer have no line
+                    if (row > 0 && row != profiledRow)
+                        profileLine(row);
                 }
-            } while (!stopFlag);
-        } else if ("FOR".equals(node.getToken().value)) {
-            start(node.getChildren().get(0));
-
-            if (stopFlag)
-                return;
-            Token idToken = stack.pop();
 
-            if (idToken == null)
-                throw new InterpreterException("Iteration variable for FOR statement not found!");
-
-            if (node.getChildren().get(1).getToken().type != Type.ITERATOR)
-                throw new InterpreterException("Expected <ITERATOR> but found " + node.getChildren().get(1).getToken());
-            Node iterNode = node.getChildren().get(1);
-
-            if (iterNode.getChildren().size() == 1) {
-                start(iterNode.getChildren().get(0));
+                if (interrupter != null && interrupter.onNodeProcess(inst.node())) {
+                    stopFlag = true;
+                    break;
+                }
 
-                if (stopFlag)
-                    return;
-                Token valueToken = stack.pop();
+                if (inst.opcode == Opcode.FUSED) {
+                    FusedExpression fused = (FusedExpression) inst.operand;
+                    //the interrupter was already asked above, once for the whole fused range
+                    int next = fused.run(vars, stack);
+                    if (next >= 0) {
+                        pc = next;
+                        continue;
+                    }
 
-                if (isVariable(valueToken)) {
-                    valueToken = unwrapVariable(valueToken);
+                    inst = fused.original;
                 }
 
-                if (!valueToken.isIterable())
-                    throw new InterpreterException(valueToken + " is not iterable!");
-
-                if (valueToken.isArray()) {
-                    for (int i = 0; i < Array.getLength(valueToken.value); i++) {
-                        Object obj = Array.get(valueToken.value, i);
-                        if (stopFlag)
-                            break;
+                switch (inst.opcode) {
+                    case Opcode.PUSH_TOKEN:
+                        stack.push((Token) inst.operand);
+                        break;
+                    case Opcode.CALL:
+                        stack.push(inst.token);
+                        callArgsSize = inst.arg;
+                        break;
+                    case Opcode.GVAR:
+                        gvar(inst);
+                        break;
+                    case Opcode.PLACEHOLDER:
+                        placeholder(inst);
+                        break;
+                    case Opcode.EXECUTOR:
+                        Integer result = executor(inst);
+                        if (result != null) {
+                            pc = onReturnCode(inst, result, pc);
+                        }
+                        break;
+                    case Opcode.NEW:
+                        newInstance(inst);
+                        break;
+                    case Opcode.LOAD_LOCAL:
+                        Object local = vars.get(inst.arg);
+                        inst.observe(local);
+                        pushValue(local, (Token) inst.operand);
+                        break;
+                    case Opcode.STORE_LOCAL:
+                        vars.set(inst.arg, popValue());
+                        break;
+                    case Opcode.ASSIGN:
+                        Token right = stack.pop();
+                        Token left = stack.pop();
+                        assignValue(left, right);
+                        break;
+                    case Opcode.DOT:
+                        dot(inst);
+                        break;
+                    case Opcode.ARRAY_ACCESS:
+                        arrayAccess(inst);
+                        break;
+                    case Opcode.IS:
+                        is(inst);
+                        break;
+                    case Opcode.ADD:
+                    case Opcode.SUB:
+                    case Opcode.MUL:
+                    case Opcode.DIV:
+                    case Opcode.MOD:
+                        if (stack.tag(0) == OperandStack.INTEGER && stack.tag(1) == OperandStack.INTEGER) {
+                            integerArithmetic(inst);
+                        } else if (stack.isNumericPair()) {
+                            decimalArithmetic(inst);
+                        } else {
+                            arithmetic(inst);
+                        }
+                        break;
+                    case Opcode.NEG:
+                        if (stack.tag(0) == OperandStack.INTEGER) {
+                            stack.pushInteger(-stack.popInteger(), inst.token);
+                        } else if (stack.tag(0) == OperandStack.DECIMAL) {
+                            stack.pushDecimal(-stack.popDecimal(), inst.token);
+                        } else {
+                            negate();
+                        }
+                        break;
+                    case Opcode.NOT:
+                        if (stack.tag(0) == OperandStack.BOOLEAN) {
+                            stack.pushBoolean(!stack.popBoolean(), inst.token);
+                        } else if (stack.tag(0) != OperandStack.TOKEN) {
+                            stack.pushBoolean(stack.popDecimal() == 0.0, inst.token);
+                        } else {
+                            not(inst);
+                        }
+                        break;
+                    case Opcode.LT:
+                    case Opcode.GT:
+                    case Opcode.LE:
+                    case Opcode.GE:
+                    case Opcode.EQ:
+                    case Opcode.NE:
+                    case Opcode.AND:
+                    case Opcode.OR:
+                        if (!comparePrimitives(inst))
+                            compare(inst);
+                        break;
+                    case Opcode.JMP:
+                        pc = inst.arg;
+                        break;
+                    case Opcode.BRANCH_FALSE:
+                        boolean condition;
+                        if (stack.tag(0) == OperandStack.BOOLEAN) {
+                            condition = stack.popBoolean();
+                        } else if (stack.tag(0) != OperandStack.TOKEN) {
+                            condition = stack.popDecimal() != 0.0;
+                        } else {
+                            condition = checkCondition(stack.pop());
+                        }
 
-                        assignValue(idToken, parseValue(obj, valueToken));
-                        start(node.getChildren().get(2));
-                        if (breakFlag) {
-                            breakFlag = false;
+                        if (!condition)
+                            pc = inst.arg;
+                        break;
+                    case Opcode.AND_SC:
+                        if (!shortCircuitOperand(inst))
+                            pc = inst.arg;
+                        break;
+                    case Opcode.OR_SC:
+                        if (shortCircuitOperand(inst))
+                            pc = inst.arg;
+                        break;
+                    case Opcode.WHILE_TEST:
+                        if (!checkWhileCondition())
+                            pc = inst.arg;
+                        break;
+                    case Opcode.FOR_VAR:
+                        if (inst.operand != null) {
+                            loopStates[inst.arg] = new LoopState(null, (Integer) inst.operand);
                             break;
                         }
 
-                        breakFlag = false;
-                        continueFlag = false;
-                    }
-                } else {
-                    for (Object obj : (Iterable<?>) valueToken.value) {
-                        if (stopFlag)
-                            break;
+                        Token idToken = stack.pop();
+                        if (idToken == null)
+                            throw new InterpreterException("Iteration variable for FOR statement not found!");
 
-                        assignValue(idToken, parseValue(obj, valueToken));
-                        start(node.getChildren().get(2));
-                        if (breakFlag) {
-                            breakFlag = false;
+                        loopStates[inst.arg] = new LoopState(idToken, -1);
+                        break;
+                    case Opcode.FOR_EACH:
+                        initForEach(inst);
+                        break;
+                    case Opcode.FOR_RANGE:
+                        initForRange(inst);
+                        break;
+                    case Opcode.FOR_NEXT:
+                        if (!nextElement(loopStates[inst.arg]))
+                            pc = program.breakTargets[inst.arg];
+                        break;
+                    case Opcode.FOR_RANGE_NEXT:
+                        LoopState rangeState = loopStates[inst.arg];
+                        if (rangeState.index >= rangeState.limit) {
+                            pc = program.breakTargets[inst.arg];
+                        } else if (rangeState.slot >= 0) {
+                            vars.set(rangeState.slot, rangeState.index++);
+                        } else {
+                            assignValue(rangeState.id, new Token(Type.INTEGER, rangeState.index++, rangeState.source));
+                        }
+                        break;
+                    case Opcode.FOR_END:
+                        loopStates[inst.arg] = null;
+                        break;
+                    case Opcode.CONCAT:
+                        Object[] values = new Object[inst.arg];
+                        for (int i = values.length - 1; i >= 0; i--)
+                            values[i] = popValue();
+                        stack.push(new Token(Type.STRING, ((StringTemplate) inst.operand).build(values),
+                                inst.token));
+                        break;
+                    case Opcode.SYNC:
+                        if (waitScheduler != null && nesting == 0) {
+                            //leave the range; execute() continues after the block is done
+                            syncAt = pc - 1;
+                            pc = -1;
                             break;
                         }
 
-                        breakFlag = false;
-                        continueFlag = false;
-                    }
+                        pc = runSync(pc, inst.arg);
+                        break;
+                    case Opcode.ASYNC:
+                        runAsync(pc, inst.arg);
+                        pc = inst.arg;
+                        break;
+                    case Opcode.FAIL:
+                        throw new InterpreterException((String) inst.operand);
+                    default:
+                        throw new InterpreterException("Cannot interpret the unknown opcode " + inst.opcode);
                 }
-            } else if (iterNode.getChildren().size() == 2) {
-                Node initNode = iterNode.getChildren().get(0);
-                start(initNode);
+            }
+        } catch (InterpreterException e) {
+            throw e.addFrame(frameOf(inst));
+        } catch (Exception e) {
+            //the cause tells what went wrong; the frame tells where
+            throw new InterpreterException(e.getClass().getSimpleName(), e).addFrame(frameOf(inst));
+        }
 
-                if (stopFlag)
-                    return;
-                Token initToken = stack.pop();
-                if (isVariable(initToken)) {
-                    initToken = unwrapVariable(initToken);
-                }
+        return pc;
+    }
 
-                if (initToken.type != Type.INTEGER)
-                    throw new InterpreterException("Init value must be an Integer value! -- " + initToken);
+    private static ScriptFrame frameOf(Instruction inst) {
+        String callee = null;
+        if (inst.opcode == Opcode.EXECUTOR) {
+            callee = "#" + inst.operand;
+        } else if (inst.opcode == Opcode.PLACEHOLDER) {
+            callee = "$" + inst.operand;
+        }
 
-                Node limitNode = iterNode.getChildren().get(1);
-                start(limitNode);
+        Token token = inst.token;
+        return new ScriptFrame(callee, token.row, token.col);
+    }
 
-                if (stopFlag)
-                    return;
-                Token limitToken = stack.pop();
-                if (isVariable(limitToken)) {
-                    limitToken = unwrapVariable(limitToken);
+    /**
+     * Called when the budget ran out right before executing the instruction.
+     *
+     * @param pc the instruction about to be executed
+     * @return true to continue; false if the execution is suspended.
+     * @throws InterpreterException if the execution has to be stopped.
+     */
+    private boolean renewBudget(int pc) throws InterpreterException {
+        switch (budget.getPolicy()) {
+            case YIELD:
+                if (waitScheduler != null && nesting == 0) {
+                    stepsLeft = budget.getSteps();
+                    waitMillis = 0L;
+                    suspendedAt = pc;
+                    return false;
                 }
+                //can't be suspended here, so abort instead
+                throw budgetExceeded();
+            case ABORT:
+                throw budgetExceeded();
+            default:
+                stepsLeft = Long.MAX_VALUE;
+                TriggerReactorCore.getInstance().getLogger().warning("Executed more than " + budget.getSteps()
+                        + " instructions at once " + program.getInstruction(pc).token.toStringRowColOnly());
+                return true;
+        }
+    }
 
-                if (limitToken.type != Type.INTEGER)
-                    throw new InterpreterException("Limit value must be an Integer value! -- " + limitToken);
+    private InterpreterException budgetExceeded() {
+        return new InterpreterException("Executed more than " + budget.getSteps() + " instructions at once. "
+                + "This is usually an infinite loop, and it can crash the server.");
+    }
 
-                for (int i = initToken.toInteger(); !stopFlag && i < limitToken.toInteger(); i++) {
-                    assignValue(idToken, new Token(Type.INTEGER, i, iterNode.getToken()));
-                    start(node.getChildren().get(2));
-                    if (breakFlag) {
-                        breakFlag = false;
-                        break;
-                    }
+    /**
+     * Handle the return code of Executor.
+     *
+     * @return the next instruction to execute
+     */
+    private int onReturnCode(Instruction inst, int result, int pc) throws InterpreterException {
+        switch (result) {
+            case Executor.STOP:
+                stopFlag = true;
+                return pc;
+            case Executor.WAIT:
+                waitFlag = true;
+                if (waitScheduler != null && nesting == 0) {
+                    //leave the range, so the execution stops here
+                    suspendedAt = pc;
+                    return -1;
+                }
 
-                    breakFlag = false;
-                    continueFlag = false;
+                Executor.runTaskLater(new Runnable() {
+                    @Override
+                    public void run() {
+                        synchronized (Interpreter.this) {
+                            Interpreter.this.waitFlag = false;
+                            Interpreter.this.notify();
+                        }
+                    }
+                }, waitMillis);
+                synchronized (this) {
+                    while (waitFlag) {
+                        try {
+                            this.wait();
+                        } catch (InterruptedException e) {
+                            e.printStackTrace();
+                        }
+                    }
                 }
+                return pc;
+            case Executor.BREAK:
+                return inst.loop < 0 ? pc : program.breakTargets[inst.loop];
+            case Executor.CONTINUE:
+                return inst.loop < 0 ? pc : program.continueTargets[inst.loop];
+            default:
+                throw new InterpreterException(result + " is not a valid return code!");
+        }
+    }
+
+    private boolean checkCondition(Token resultToken) throws InterpreterException {
+        if (isVariable(resultToken)) {
+            resultToken = unwrapVariable(resultToken);
+        }
+
+        if (resultToken.type == Type.NULLVALUE) { // null check failed
+            return false;
+        } else if (resultToken.isBoolean()) {
+            return (boolean) resultToken.value;
+        } else if (resultToken.isInteger()) {
+            return resultToken.toInteger() != 0;
+        } else if (resultToken.isDecimal()) {
+            return resultToken.toDecimal() != 0.0;
+        } else if (resultToken.value != null) {//always true if not null
+            return true;
+        } else {
+            throw new InterpreterException("Unexpected token for IF statement! -- " + resultToken);
+        }
+    }
+
+    private boolean checkWhileCondition() throws InterpreterException {
+        if (stack.isEmpty())
+            throw new InterpreterException("Could not find condition for WHILE statement!");
+
+        if (stack.tag(0) == OperandStack.BOOLEAN)
+            return stack.popBoolean();
+
+        Token resultToken = stack.pop();
+
+        if (isVariable(resultToken)) {
+            resultToken = unwrapVariable(resultToken);
+        }
+
+        if (!(resultToken.value instanceof Boolean))
+            throw new InterpreterException("Unexpected token for WHILE statement! -- " + resultToken);
+
+        return (boolean) resultToken.value;
+    }
+
+    private boolean shortCircuitOperand(Instruction inst) throws InterpreterException {
+        if (stack.tag(0) == OperandStack.BOOLEAN)
+            return stack.peekBoolean();
+
+        Token leftBool = stack.pop();
+        if (isVariable(leftBool)) {
+            leftBool = unwrapVariable(leftBool);
+        }
+        stack.push(leftBool);
+
+        if (!leftBool.isBoolean())
+            throw new InterpreterException("Left of " + inst.token.value + " operator should be Boolean but was " + leftBool);
+
+        return leftBool.toBoolean();
+    }
+
+    private void initForEach(Instruction inst) throws InterpreterException {
+        Token valueToken = stack.pop();
+
+        if (isVariable(valueToken)) {
+            valueToken = unwrapVariable(valueToken);
+        }
+
+        if (!valueToken.isIterable())
+            throw new InterpreterException(valueToken + " is not iterable!");
+
+        LoopState state = loopStates[inst.arg];
+        state.source = valueToken;
+        state.index = 0;
+
+        Object value = valueToken.value;
+        if (valueToken.isArray()) {
+            state.array = value;
+            state.limit = Array.getLength(value);
+            if (value instanceof Object[]) {
+                state.kind = LoopState.OBJECT_ARRAY;
+            } else if (value instanceof int[]) {
+                state.kind = LoopState.INT_ARRAY;
+            } else if (value instanceof double[]) {
+                state.kind = LoopState.DOUBLE_ARRAY;
             } else {
-                throw new InterpreterException("Number of <ITERATOR> must be 1 or 2!");
+                state.kind = LoopState.ARRAY;
             }
+        } else if (value instanceof RandomAccess && value instanceof List
+                && !(value instanceof CopyOnWriteArrayList)) {
+            //CopyOnWriteArrayList is left to the Iterator as it iterates over the snapshot
+            state.list = (List<?>) value;
+            state.kind = LoopState.LIST;
+        } else {
+            state.iterator = ((Iterable<?>) value).iterator();
+            state.kind = LoopState.ITERATOR;
+        }
+    }
+
+    private void initForRange(Instruction inst) throws InterpreterException {
+        Token limitToken = stack.pop();
+        Token initToken = stack.pop();
+
+        if (isVariable(initToken)) {
+            initToken = unwrapVariable(initToken);
+        }
+
+        if (initToken.type != Type.INTEGER)
+            throw new InterpreterException("Init value must be an Integer value! -- " + initToken);
+
+        if (isVariable(limitToken)) {
+            limitToken = unwrapVariable(limitToken);
+        }
+
+        if (limitToken.type != Type.INTEGER)
+            throw new InterpreterException("Limit value must be an Integer value! -- " + limitToken);
+
+        LoopState state = loopStates[inst.arg];
+        state.source = inst.token;
+        state.index = initToken.toInteger();
+        state.limit = limitToken.toInteger();
+    }
+
+    /**
+     * Assign the next element to the iteration variable.
+     *
+     * @return false if there is no more element to iterate
+     */
+    private boolean nextElement(LoopState state) throws InterpreterException {
+        Object element;
+        switch (state.kind) {
+            case LoopState.OBJECT_ARRAY:
+                if (state.index >= state.limit)
+                    return false;
+                element = ((Object[]) state.array)[state.index++];
+                break;
+            case LoopState.INT_ARRAY:
+                if (state.index >= state.limit)
+                    return false;
+                element = ((int[]) state.array)[state.index++];
+                break;
+            case LoopState.DOUBLE_ARRAY:
+                if (state.index >= state.limit)
+                    return false;
+                element = ((double[]) state.array)[state.index++];
+                break;
+            case LoopState.ARRAY:
+                if (state.index >= state.limit)
+                    return false;
+                element = Array.get(state.array, state.index++);
+                break;
+            case LoopState.LIST:
+                if (state.index >= state.list.size())
+                    return false;
+                element = state.list.get(state.index++);
+                break;
+            default:
+                if (!state.iterator.hasNext())
+                    return false;
+                element = state.iterator.next();
+                break;
+        }
+
+        if (state.slot >= 0) {
+            vars.set(state.slot, element instanceof IScriptObject ? ((IScriptObject) element).get() : element);
+        } else {
+            assignValue(state.id, parseValue(element, state.source));
+        }
+        return true;
+    }
+
+    private int runSync(int begin, int end) throws InterpreterException {
+        final int[] exit = {end};
+        try {
+            task.submitSync(new Callable<Void>() {
+
+                @Override
+                public Void call() throws Exception {
+                    nesting++;
+                    try {
+                        exit[0] = run(begin, end);
+                    } finally {
+                        nesting--;
+                    }
+                    return null;
+                }
+
+            }).get();
+        } catch (ExecutionException ex) {
+            if (ex.getCause() instanceof InterpreterException)
+                throw (InterpreterException) ex.getCause();
+            throw new InterpreterException("Synchronous task error.", ex.getCause());
+        } catch (InterruptedException ex) {
+            throw new InterpreterException("Synchronous task error.", ex);
+        }
+
+        //#BREAK or #CONTINUE may jumped out of the block
+        return exit[0];
+    }
+
+    private void runAsync(int begin, int end) throws InterpreterException {
+        Capture capture = this.capture == null ? defaultCapture : this.capture;
+        Interpreter child = new Interpreter(this, capture == Capture.COPY ? vars.copy() : vars);
+        try {
+            task.submitAsyncBlock(() -> {
+                try {
+                    child.startWithContextAndInterrupter(context, interrupter, timing, begin, end);
+                } catch (InterpreterException e) {
+                    child.reportError(e);
+                }
+            });
+        } catch (RejectedExecutionException ex) {
+            throw new InterpreterException("Too many ASYNC blocks are waiting to be run.", ex);
+        }
+
+        if (asyncBlocks == null)
+            asyncBlocks = new ArrayList<>();
+        if (asyncBlocks.size() >= pruneAsyncBlocksAt) {
+            asyncBlocks.removeIf(CompletableFuture::isDone);
+            pruneAsyncBlocksAt = Math.max(64, asyncBlocks.size() * 2);
+        }
+        asyncBlocks.add(child.done);
+    }
+
+    private void is(Instruction inst) throws InterpreterException {
+        Token right = stack.pop();
+        Token left = stack.pop();
+
+        if (isVariable(right)) {
+            right = unwrapVariable(right);
+        }
+
+        if (!(right.value instanceof Class))
+            throw new RuntimeException(right + " is not a Class!");
+
+        if (isVariable(left)) {
+            left = unwrapVariable(left);
+        }
+
+        Class<?> clazz = (Class<?>) right.value;
+        stack.push(new Token(Type.BOOLEAN, clazz.isInstance(left.value), inst.token));
+    }
+
+    @SuppressWarnings("unchecked")
+    private Integer executor(Instruction inst) throws Exception {
+        Link<Executor> link = (Link<Executor>) inst.operand;
+        String command = link.name;
+
+        Object[] args = new Object[inst.arg];
+        for (int i = args.length - 1; i >= 0; i--) {
+            args[i] = popValue();
+        }
+
+        if (interrupter != null && interrupter.onCommand(context, command, args)) {
+            return null;
+        } else {
+            Executor executor = findExecutor(link);
+            if (executor == null)
+                throw new InterpreterException("No executor named #" + command + " found!");
+
+            return executor.execute(timing, sync, vars, context, args);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void placeholder(Instruction inst) throws Exception {
+        Link<Placeholder> link = (Link<Placeholder>) inst.operand;
+        String placeholderName = link.name;
+
+        Object[] args = new Object[inst.arg];
+        for (int i = args.length - 1; i >= 0; i--) {
+            args[i] = popValue();
+        }
+
+        Object replaced = null;
+        if (interrupter != null) {
+            replaced = interrupter.onPlaceholder(context, placeholderName, args);
+        }
 
-        } else if (node.getToken().getType() == Type.SYNC) {
-            try {
-                task.submitSync(new Callable<Void>() {
+        if (replaced == null) {
+            Placeholder placeholder = link.resolve(placeholderMap);
+            if (placeholder == null)
+                throw new InterpreterException("No placeholder named $" + placeholderName + " found!");
 
-                    @Override
-                    public Void call() throws Exception {
-                        for (Node node : node.getChildren()) {
-                            //ignore whatever returns as it's impossible
-                            //to handle it from the caller
-                            start(node);
-                        }
-                        return null;
-                    }
+            replaced = placeholder.parse(timing, context, vars, args);
+        }
 
-                }).get();
-                return;
-            } catch (InterruptedException | ExecutionException ex) {
-                throw new InterpreterException("Synchronous task error.", ex);
+        if (replaced instanceof Number) {
+            double d = ((Number) replaced).doubleValue();
+            if (d % 1 == 0) {
+                // whole number
+                stack.push(new Token(Type.INTEGER, (int) d, inst.token));
+            } else {
+                stack.push(new Token(Type.DECIMAL, d, inst.token));
             }
-        } else if (node.getToken().getType() == Type.ASYNC) {
-            task.submitAsync(() -> {
-                Node rootCopy = new Node(new Token(Type.ROOT, "<ROOT>", -1, -1));
-                rootCopy.getChildren().addAll(node.getChildren());
-
-                Interpreter copy = new Interpreter(rootCopy);
-                // ignore whatever returns as it's impossible
-                // to handle it from the caller
-                copy.setExecutorMap(executorMap);
-                copy.setPlaceholderMap(placeholderMap);
-                
-                //prevents default executors/placeholders from being overwritten by setting the maps
-                copy.initDefaultPlaceholders();
-                copy.initDefaultExecutors();
-                copy.setGvars(gvars);
-                copy.setVars(vars);
-                copy.setSelfReference(selfReference);
-                copy.setTaskSupervisor(task);
-                copy.setSync(false);
-
-                try {
-                    copy.startWithContextAndInterrupter(context, interrupter, timing);
-                } catch (InterpreterException e) {
-                    TriggerReactorCore.getInstance().handleException(context, e);
-                }
-            });
-            return;
+        } else if (replaced == null) {
+            stack.push(new Token(Type.NULLVALUE, null, inst.token));
         } else {
-            for (int i = 0; i < node.getChildren().size(); i++) {
-                //ignore rest of body and continue if continue flag is set
-                if (continueFlag)
-                    continue;
-                //ignore rest of body and stop
-                if (breakFlag)
-                    break;
+            stack.push(new Token(Type.EPS, replaced, inst.token));
+        }
+    }
+
+    private void integerArithmetic(Instruction inst) {
+        int right = stack.popInteger();
+        int left = stack.popInteger();
+
+        int result;
+        switch (inst.opcode) {
+            case Opcode.ADD:
+                result = left + right;
+                break;
+            case Opcode.SUB:
+                result = left - right;
+                break;
+            case Opcode.MUL:
+                result = left * right;
+                break;
+            case Opcode.DIV:
+                result = left / right;
+                break;
+            default:
+                result = left % right;
+                break;
+        }
 
-                Node child = node.getChildren().get(i);
-                start(child);
+        stack.pushInteger(result, inst.token);
+    }
 
-                if (i == 0) {
-                    if ("&&".equals(node.getToken().value)) {
-                        Token leftBool = stack.pop();
-                        if (isVariable(leftBool)) {
-                            leftBool = unwrapVariable(leftBool);
-                        }
-                        stack.push(leftBool);
+    private void decimalArithmetic(Instruction inst) {
+        double right = stack.popDecimal();
+        double left = stack.popDecimal();
+
+        double result;
+        switch (inst.opcode) {
+            case Opcode.ADD:
+                result = left + right;
+                break;
+            case Opcode.SUB:
+                result = left - right;
+                break;
+            case Opcode.MUL:
+                result = left * right;
+                break;
+            case Opcode.DIV:
+                result = left / right;
+                break;
+            default:
+                result = left % right;
+                break;
+        }
 
-                        if (!leftBool.isBoolean())
-                            throw new InterpreterException("Left of && operator should be Boolean but was " + leftBool);
+        stack.pushDecimal(result, inst.token);
+    }
 
-                        boolean result = leftBool.toBoolean();
+    private void arithmetic(Instruction inst) throws InterpreterException {
+        Token right = stack.pop();
+        Token left = stack.pop();
 
-                        if (!result) { //false anyway
-                            return;
-                        }
-                    } else if ("||".equals(node.getToken().value)) {
-                        Token leftBool = stack.pop();
-                        if (isVariable(leftBool)) {
-                            leftBool = unwrapVariable(leftBool);
-                        }
-                        stack.push(leftBool);
+        if (isVariable(right)) {
+            right = unwrapVariable(right);
+        }
 
-                        if (!leftBool.isBoolean())
-                            throw new InterpreterException("Left of || operator should be Boolean but was " + leftBool);
+        if (isVariable(left)) {
+            left = unwrapVariable(left);
+        }
 
-                        boolean result = leftBool.toBoolean();
+        Token opToken = inst.token;
+        if (inst.opcode == Opcode.ADD
+                && (left.type == Type.STRING || right.type == Type.STRING)) {
+            stack.push(new Token(Type.STRING, String.valueOf(left.value) + right.value, opToken));
+        } else {
+            if (!left.isNumeric())
+                throw new InterpreterException("Cannot execute arithmetic operation on non-numeric value [" + left + "]!");
 
-                        if (result) { //true anyway
-                            return;
-                        }
-                    }
-                }
+            if (!right.isNumeric())
+                throw new InterpreterException("Cannot execute arithmetic operation on non-numeric value [" + right + "]!");
+
+            boolean integer = true;
+            if (left.isDecimal() || right.isDecimal()) {
+                integer = false;
             }
-        }
 
-        Integer result = interpret(node);
-        if (result != null) {
-            switch (result) {
-                case Executor.STOP:
-                    stopFlag = true;
-                    return;
-                case Executor.WAIT:
-                    waitFlag = true;
-                    synchronized (this) {
-                        while (waitFlag) {
-                            try {
-                                this.wait();
-                            } catch (InterruptedException e) {
-                                e.printStackTrace();
-                            }
-                        }
-                    }
+            Number result;
+            switch (inst.opcode) {
+                case Opcode.ADD:
+                    result = integer ? left.toInteger() + right.toInteger() : left.toDecimal() + right.toDecimal();
+                    break;
+                case Opcode.SUB:
+                    result = integer ? left.toInteger() - right.toInteger() : left.toDecimal() - right.toDecimal();
+                    break;
+                case Opcode.MUL:
+                    result = integer ? left.toInteger() * right.toInteger() : left.toDecimal() * right.toDecimal();
+                    break;
+                case Opcode.DIV:
+                    result = integer ? left.toInteger() / right.toInteger() : left.toDecimal() / right.toDecimal();
+                    break;
+                case Opcode.MOD:
+                    result = integer ? left.toInteger() % right.toInteger() : left.toDecimal() % right.toDecimal();
                     break;
-                case Executor.BREAK:
-                    breakFlag = true;
-                    return;
-                case Executor.CONTINUE:
-                    continueFlag = true;
-                    return;
                 default:
-                    throw new InterpreterException(result + " is not a valid return code!");
+                    throw new InterpreterException("Cannot interpret the unknown operator " + opToken.value);
             }
-        }
-    }
 
-    /**
-     * @param node
-     * @return return codes in Executor. null if execution continues.
-     * @throws InterpreterException
-     */
-    private Integer interpret(Node node) throws InterpreterException {
-        try {
-            if (interrupter != null && interrupter.onNodeProcess(node)) {
-                return Executor.STOP;
+            if (integer) {
+                stack.push(new Token(Type.INTEGER, result.intValue(), opToken.row, opToken.col));
+            } else {
+                stack.push(new Token(Type.DECIMAL, result.doubleValue(), opToken.row, opToken.col));
             }
+        }
+    }
 
-            if (node.getToken().type == Type.BODY
-                    || "IF".equals(node.getToken().value)
-                    || "ELSEIF".equals(node.getToken().value)
-                    || "WHILE".equals(node.getToken().value)) {
-                return null;
-            } else if ("IS".equals(node.getToken().value)) {
-                Token right = stack.pop();
-                Token left = stack.pop();
+    private void negate() throws InterpreterException {
+        Token value = stack.pop();
 
-                if (isVariable(right)) {
-                    right = unwrapVariable(right);
-                }
+        if (isVariable(value)) {
+            value = unwrapVariable(value);
+        }
 
-                if (!(right.value instanceof Class))
-                    throw new RuntimeException(right + " is not a Class!");
+        if (!value.isNumeric())
+            throw new InterpreterException("Cannot do unary minus operation for non-numeric value " + value);
 
-                if (isVariable(left)) {
-                    left = unwrapVariable(left);
-                }
+        stack.push(value.isInteger() ? new Token(Type.INTEGER, -value.toInteger(), value.row, value.col)
+                : new Token(Type.DECIMAL, -value.toDecimal(), value.row, value.col));
+    }
 
-                Class<?> clazz = (Class<?>) right.value;
-                stack.push(new Token(Type.BOOLEAN, clazz.isInstance(left.value), node.getToken()));
-            } else if (node.getToken().type == Type.EXECUTOR) {
-                String command = (String) node.getToken().value;
+    private void not(Instruction inst) throws InterpreterException {
+        Token boolval = stack.pop();
 
-                Object[] args = new Object[node.getChildren().size()];
-                for (int i = args.length - 1; i >= 0; i--) {
-                    Token argument = stack.pop();
+        if (isVariable(boolval)) {
+            boolval = unwrapVariable(boolval);
+        }
 
-                    if (isVariable(argument)) {
-                        argument = unwrapVariable(argument);
-                    }
+        Token opToken = inst.token;
+        if (boolval.type == Type.NULLVALUE) {// treat null as false
+            stack.push(new Token(Type.BOOLEAN, true, opToken));
+        } else if (boolval.isBoolean()) {
+            stack.push(new Token(Type.BOOLEAN, !boolval.toBoolean(), opToken));
+        } else if (boolval.isDecimal()) {
+            stack.push(new Token(Type.BOOLEAN, boolval.toDecimal() == 0.0, opToken));
+        } else if (boolval.isInteger()) {
+            stack.push(new Token(Type.BOOLEAN, boolval.toInteger() == 0, opToken));
+        } else {
+            throw new InterpreterException("Cannot negate non-boolean value " + boolval);
+        }
+    }
 
-                    args[i] = argument.value;
+    /**
+     * Compare the values in the primitive lanes of the stack without creating any Token.
+     *
+     * @return false if the values are not primitive, so {@link #compare(Instruction)} has to handle it.
+     */
+    private boolean comparePrimitives(Instruction inst) {
+        byte rightTag = stack.tag(0);
+        byte leftTag = stack.tag(1);
+        if (rightTag == OperandStack.TOKEN || leftTag == OperandStack.TOKEN)
+            return false;
+
+        Token opToken = inst.token;
+        switch (inst.opcode) {
+            case Opcode.LT:
+            case Opcode.GT:
+            case Opcode.LE:
+            case Opcode.GE:
+                if (rightTag == OperandStack.BOOLEAN || leftTag == OperandStack.BOOLEAN)
+                    return false;
+
+                double right = stack.popDecimal();
+                double left = stack.popDecimal();
+                boolean result;
+                if (inst.opcode == Opcode.LT) {
+                    result = left < right;
+                } else if (inst.opcode == Opcode.GT) {
+                    result = left > right;
+                } else if (inst.opcode == Opcode.LE) {
+                    result = left <= right;
+                } else {
+                    result = left >= right;
                 }
-
-                if (interrupter != null && interrupter.onCommand(context, command, args)) {
-                    return null;
+                stack.pushBoolean(result, opToken);
+                return true;
+            case Opcode.EQ:
+            case Opcode.NE:
+                //same as equals() of the boxed values; different types are never equal
+                boolean equals;
+                if (rightTag != leftTag) {
+                    stack.popBoxed();
+                    stack.popBoxed();
+                    equals = false;
+                } else if (rightTag == OperandStack.BOOLEAN) {
+                    equals = stack.popBoolean() == stack.popBoolean();
+                } else if (rightTag == OperandStack.INTEGER) {
+                    equals = stack.popInteger() == stack.popInteger();
                 } else {
-                    if (!executorMap.containsKey(command))
-                        throw new InterpreterException("No executor named #" + command + " found!");
-
-                    return executorMap.get(command).execute(timing, sync, vars, context, args);
+                    equals = Double.compare(stack.popDecimal(), stack.popDecimal()) == 0;
                 }
-            } else if (node.getToken().type == Type.PLACEHOLDER) {
-                String placeholderName = (String) node.getToken().value;
-
-                Object[] args = new Object[node.getChildren().size()];
-                for (int i = args.length - 1; i >= 0; i--) {
-                    Token argument = stack.pop();
-
-                    if (isVariable(argument)) {
-                        argument = unwrapVariable(argument);
-                    }
+                stack.pushBoolean(inst.opcode == Opcode.EQ ? equals : !equals, opToken);
+                return true;
+            case Opcode.AND:
+            case Opcode.OR:
+                if (rightTag != OperandStack.BOOLEAN || leftTag != OperandStack.BOOLEAN)
+                    return false;
+
+                boolean rightBool = stack.popBoolean();
+                boolean leftBool = stack.popBoolean();
+                stack.pushBoolean(inst.opcode == Opcode.AND ? leftBool && rightBool : leftBool || rightBool, opToken);
+                return true;
+            default:
+                return false;
+        }
+    }
 
-                    args[i] = argument.value;
-                }
+    private void compare(Instruction inst) throws InterpreterException {
+        Token right = stack.pop();
+        Token left = stack.pop();
 
-                Object replaced = null;
-                if (interrupter != null) {
-                    replaced = interrupter.onPlaceholder(context, placeholderName, args);
-                }
+        if (isVariable(right)) {
+            right = unwrapVariable(right);
+        }
 
-                if (replaced == null && !placeholderMap.containsKey(placeholderName))
-                    throw new InterpreterException("No placeholder named $" + placeholderName + " found!");
+        if (isVariable(left)) {
+            left = unwrapVariable(left);
+        }
 
-                if (replaced == null) {
-                    replaced = placeholderMap.get(placeholderName).parse(timing, context, vars, args);
+        Token opToken = inst.token;
+        switch (inst.opcode) {
+            case Opcode.LT:
+                if (!left.isNumeric() || !right.isNumeric())
+                    throw new InterpreterException("Only numeric values can be compared!");
+
+                stack.push(new Token(Type.BOOLEAN, (left.isInteger() ? left.toInteger() : left.toDecimal()) < (right.isInteger()
+                        ? right.toInteger() : right.toDecimal()), opToken));
+                break;
+            case Opcode.GT:
+                if (!left.isNumeric() || !right.isNumeric())
+                    throw new InterpreterException("Only numeric values can be compared!");
+
+                stack.push(new Token(Type.BOOLEAN, (left.isInteger() ? left.toInteger() : left.toDecimal()) > (right.isInteger()
+                        ? right.toInteger() : right.toDecimal()), opToken));
+                break;
+            case Opcode.LE:
+                if (!left.isNumeric() || !right.isNumeric())
+                    throw new InterpreterException("Only numeric values can be compared!");
+
+                stack.push(new Token(Type.BOOLEAN, (left.isInteger() ? left.toInteger() : left.toDecimal()) <= (right.isInteger()
+                        ? right.toInteger() : right.toDecimal()), opToken));
+                break;
+            case Opcode.GE:
+                if (!left.isNumeric() || !right.isNumeric())
+                    throw new InterpreterException("Only numeric values can be compared!");
+
+                stack.push(new Token(Type.BOOLEAN, (left.isInteger() ? left.toInteger() : left.toDecimal()) >= (right.isInteger()
+                        ? right.toInteger() : right.toDecimal()), opToken));
+                break;
+            case Opcode.EQ:
+                if (left.type == Type.NULLVALUE || right.type == Type.NULLVALUE) {
+                    if (left.value == null && right.value == null) {
+                        stack.push(new Token(Type.BOOLEAN, true, opToken));
+                    } else if (left.value == null) {
+                        stack.push(new Token(Type.BOOLEAN, right.value == null, opToken));
+                    } else {
+                        stack.push(new Token(Type.BOOLEAN, left.value == null, opToken));
+                    }
+                } else {
+                    stack.push(new Token(Type.BOOLEAN, left.value.equals(right.value), opToken));
                 }
 
-                if (replaced instanceof Number) {
-                    double d = ((Number) replaced).doubleValue();
-                    if (d % 1 == 0) {
-                        // whole number
-                        stack.push(new Token(Type.INTEGER, (int) d, node.getToken()));
+                break;
+            case Opcode.NE:
+                if (left.type == Type.NULLVALUE || right.type == Type.NULLVALUE) {
+                    if (left.value == null && right.value == null) {
+                        stack.push(new Token(Type.BOOLEAN, false, opToken));
+                    } else if (left.value == null) {
+                        stack.push(new Token(Type.BOOLEAN, right.value != null, opToken));
                     } else {
-                        stack.push(new Token(Type.DECIMAL, d, node.getToken()));
+                        stack.push(new Token(Type.BOOLEAN, left.value != null, opToken));
                     }
-                } else if (replaced == null) {
-                    stack.push(new Token(Type.NULLVALUE, null, node.getToken()));
                 } else {
-                    stack.push(new Token(Type.EPS, replaced, node.getToken()));
+                    stack.push(new Token(Type.BOOLEAN, !left.value.equals(right.value), opToken));
                 }
-            } else if (node.getToken().type == Type.OPERATOR_A) {
-                Token right = stack.pop();
-                Token left = stack.pop();
+                break;
+            case Opcode.AND:
+                stack.push(new Token(Type.BOOLEAN, left.toBoolean() && right.toBoolean(), opToken));
+                break;
+            case Opcode.OR:
+                stack.push(new Token(Type.BOOLEAN, left.toBoolean() || right.toBoolean(), opToken));
+                break;
+        }
+    }
 
-                if (isVariable(right)) {
-                    right = unwrapVariable(right);
-                }
+    private void dot(Instruction inst) throws InterpreterException {
+        Token opToken = inst.token;
+        Token right, left;
 
-                if (isVariable(left)) {
-                    left = unwrapVariable(left);
-                }
+        right = stack.pop();
+        //function call
+        if (right.type == Type.CALL) {
+            Object[] args = new Object[callArgsSize];
+            for (int i = callArgsSize - 1; i >= 0; i--) {
+                Token argument = stack.pop();
 
-                if (node.getToken().value.equals("+")
-                        && (left.type == Type.STRING || right.type == Type.STRING)) {
-                    stack.push(new Token(Type.STRING, String.valueOf(left.value) + right.value, node.getToken()));
-                } else {
-                    if (!left.isNumeric())
-                        throw new InterpreterException("Cannot execute arithmetic operation on non-numeric value [" + left + "]!");
+                if (isVariable(argument)) {
+                    argument = unwrapVariable(argument);
+                }
 
-                    if (!right.isNumeric())
-                        throw new InterpreterException("Cannot execute arithmetic operation on non-numeric value [" + right + "]!");
+                args[i] = argument.value;
+            }
+            callArgsSize = 0;
 
-                    boolean integer = true;
-                    if (left.isDecimal() || right.isDecimal()) {
-                        integer = false;
-                    }
+            left = stack.pop();
 
-                    Number result;
-                    switch ((String) node.getToken().value) {
-                        case "+":
-                            result = integer ? left.toInteger() + right.toInteger() : left.toDecimal() + right.toDecimal();
-                            break;
-                        case "-":
-                            result = integer ? left.toInteger() - right.toInteger() : left.toDecimal() - right.toDecimal();
-                            break;
-                        case "*":
-                            result = integer ? left.toInteger() * right.toInteger() : left.toDecimal() * right.toDecimal();
-                            break;
-                        case "/":
-                            result = integer ? left.toInteger() / right.toInteger() : left.toDecimal() / right.toDecimal();
-                            break;
-                        case "%":
-                            result = integer ? left.toInteger() % right.toInteger() : left.toDecimal() % right.toDecimal();
-                            break;
-                        default:
-                            throw new InterpreterException("Cannot interpret the unknown operator " + node.getToken().value);
-                    }
+            if (left.type == Type.THIS) {
+                callFunction((InlineCache) inst.operand, new Token(Type.OBJECT, right.value, opToken),
+                        new Token(Type.OBJECT, selfReference, opToken), args);
+            } else {
+                Token temp = left;
 
-                    if (integer) {
-                        stack.push(new Token(Type.INTEGER, result.intValue(), node.getToken().row, node.getToken().col));
-                    } else {
-                        stack.push(new Token(Type.DECIMAL, result.doubleValue(), node.getToken().row, node.getToken().col));
-                    }
+                if (isVariable(left)) {
+                    left = unwrapVariable(left);
                 }
-            } else if (node.getToken().type == Type.UNARYMINUS) {
-                Token value = stack.pop();
 
-                if (isVariable(value)) {
-                    value = unwrapVariable(value);
+                if (left.getType() == Type.NULLVALUE) {
+                    throw new InterpreterException("Cannot access " + right + "! " + temp.value + " is null.");
                 }
 
-                if (!value.isNumeric())
-                    throw new InterpreterException("Cannot do unary minus operation for non-numeric value " + value);
-
-                stack.push(value.isInteger() ? new Token(Type.INTEGER, -value.toInteger(), value.row, value.col)
-                        : new Token(Type.DECIMAL, -value.toDecimal(), value.row, value.col));
-            } else if (node.getToken().type == Type.OPERATOR_L) {
-                if ("!".equals(node.getToken().value)) {
-                    Token boolval = stack.pop();
-
-                    if (isVariable(boolval)) {
-                        boolval = unwrapVariable(boolval);
-                    }
-
-                    if (boolval.type == Type.NULLVALUE) {// treat null as false
-                        stack.push(new Token(Type.BOOLEAN, true, node.getToken()));
-                    } else if (boolval.isBoolean()) {
-                        stack.push(new Token(Type.BOOLEAN, !boolval.toBoolean(), node.getToken()));
-                    } else if (boolval.isDecimal()) {
-                        stack.push(new Token(Type.BOOLEAN, boolval.toDecimal() == 0.0, node.getToken()));
-                    } else if (boolval.isInteger()) {
-                        stack.push(new Token(Type.BOOLEAN, boolval.toInteger() == 0, node.getToken()));
-                    } else {
-                        throw new InterpreterException("Cannot negate non-boolean value " + boolval);
-                    }
+                if (left.isObject()) {
+                    callFunction((InlineCache) inst.operand, right, left, args);
                 } else {
-                    Token right = stack.pop();
-                    Token left = stack.pop();
-
-                    if (isVariable(right)) {
-                        right = unwrapVariable(right);
+                    Accessor accessor = (Accessor) left.value;
+
+                    Object var;
+                    try {
+                        var = accessor.evaluateTarget();
+                    } catch (NoSuchFieldException e) {
+                        throw new InterpreterException("Unknown field " + accessor, e);
+                    } catch (Exception e) {
+                        throw new InterpreterException("Unknown error " + e.getMessage(), e);
                     }
 
-                    if (isVariable(left)) {
-                        left = unwrapVariable(left);
-                    }
-
-                    switch ((String) node.getToken().value) {
-                        case "<":
-                            if (!left.isNumeric() || !right.isNumeric())
-                                throw new InterpreterException("Only numeric values can be compared!");
-
-                            stack.push(new Token(Type.BOOLEAN, (left.isInteger() ? left.toInteger() : left.toDecimal()) < (right.isInteger()
-                                    ? right.toInteger() : right.toDecimal()), node.getToken()));
-                            break;
-                        case ">":
-                            if (!left.isNumeric() || !right.isNumeric())
-                                throw new InterpreterException("Only numeric values can be compared!");
+                    callFunction((InlineCache) inst.operand, right, new Token(Type.EPS, var, opToken), args);
+                }
+            }
+        }
+        //field access
+        else {
+            left = stack.pop();
 
-                            stack.push(new Token(Type.BOOLEAN, (left.isInteger() ? left.toInteger() : left.toDecimal()) > (right.isInteger()
-                                    ? right.toInteger() : right.toDecimal()), node.getToken()));
-                            break;
-                        case "<=":
-                            if (!left.isNumeric() || !right.isNumeric())
-                                throw new InterpreterException("Only numeric values can be compared!");
+            if (left.type == Type.THIS) {
+                stack.push(right);
+            } else {
+                Token temp = left;
 
-                            stack.push(new Token(Type.BOOLEAN, (left.isInteger() ? left.toInteger() : left.toDecimal()) <= (right.isInteger()
-                                    ? right.toInteger() : right.toDecimal()), node.getToken()));
-                            break;
-                        case ">=":
-                            if (!left.isNumeric() || !right.isNumeric())
-                                throw new InterpreterException("Only numeric values can be compared!");
+                if (isVariable(left)) {
+                    left = unwrapVariable(left);
+                }
 
-                            stack.push(new Token(Type.BOOLEAN, (left.isInteger() ? left.toInteger() : left.toDecimal()) >= (right.isInteger()
-                                    ? right.toInteger() : right.toDecimal()), node.getToken()));
-                            break;
-                        case "==":
-                            if (left.type == Type.NULLVALUE || right.type == Type.NULLVALUE) {
-                                if (left.value == null && right.value == null) {
-                                    stack.push(new Token(Type.BOOLEAN, true, node.getToken()));
-                                } else if (left.value == null) {
-                                    stack.push(new Token(Type.BOOLEAN, right.value == null, node.getToken()));
-                                } else {
-                                    stack.push(new Token(Type.BOOLEAN, left.value == null, node.getToken()));
-                                }
-                            } else {
-                                stack.push(new Token(Type.BOOLEAN, left.value.equals(right.value), node.getToken()));
-                            }
+                if (left.getType() == Type.NULLVALUE) {
+                    throw new InterpreterException("Cannot access " + right + "! " + temp.value + " is null.");
+                }
 
-                            break;
-                        case "!=":
-                            if (left.type == Type.NULLVALUE || right.type == Type.NULLVALUE) {
-                                if (left.value == null && right.value == null) {
-                                    stack.push(new Token(Type.BOOLEAN, false, node.getToken()));
-                                } else if (left.value == null) {
-                                    stack.push(new Token(Type.BOOLEAN, right.value != null, node.getToken()));
-                                } else {
-                                    stack.push(new Token(Type.BOOLEAN, left.value != null, node.getToken()));
-                                }
-                            } else {
-                                stack.push(new Token(Type.BOOLEAN, !left.value.equals(right.value), node.getToken()));
-                            }
-                            break;
-                        case "&&":
-                            stack.push(new Token(Type.BOOLEAN, left.toBoolean() && right.toBoolean(), node.getToken()));
-                            break;
-                        case "||":
-                            stack.push(new Token(Type.BOOLEAN, left.toBoolean() || right.toBoolean(), node.getToken()));
-                            break;
+                Object parent;
+                if (left.isObject() || left.isArray()) {
+                    parent = left.value;
+                } else {
+                    Accessor accessor = (Accessor) left.value;
+
+                    try {
+                        parent = accessor.evaluateTarget();
+                    } catch (NoSuchFieldException e) {
+                        throw new InterpreterException("Unknown field " + accessor, e);
+                    } catch (Exception e) {
+                        throw new InterpreterException("Unknown error " + e.getMessage(), e);
                     }
                 }
-            } else if (node.getToken().type == Type.OPERATOR) {
-                Token right, left;
-                switch ((String) node.getToken().value) {
-                    case "=":
-                        right = stack.pop();
-                        left = stack.pop();
 
-                        assignValue(left, right);
-                        break;
-                    case ".":
-                        right = stack.pop();
-                        //function call
-                        if (right.type == Type.CALL) {
-                            Object[] args = new Object[callArgsSize];
-                            for (int i = callArgsSize - 1; i >= 0; i--) {
-                                Token argument = stack.pop();
-
-                                if (isVariable(argument)) {
-                                    argument = unwrapVariable(argument);
-                                }
-
-                                args[i] = argument.value;
-                            }
-                            callArgsSize = 0;
-
-                            left = stack.pop();
-
-                            if (left.type == Type.THIS) {
-                                callFunction(new Token(Type.OBJECT, right.value, node.getToken()),
-                                        new Token(Type.OBJECT, selfReference, node.getToken()), args);
-                            } else {
-                                Token temp = left;
-
-                                if (isVariable(left)) {
-                                    left = unwrapVariable(left);
-                                }
-
-                                if (left.getType() == Type.NULLVALUE) {
-                                    throw new InterpreterException("Cannot access " + right + "! " + temp.value + " is null.");
-                                }
-
-                                if (left.isObject()) {
-                                    callFunction(right, left, args);
-                                } else {
-                                    Accessor accessor = (Accessor) left.value;
-
-                                    Object var;
-                                    try {
-                                        var = accessor.evaluateTarget();
-                                    } catch (NoSuchFieldException e) {
-                                        throw new InterpreterException("Unknown field " + accessor, e);
-                                    } catch (Exception e) {
-                                        throw new InterpreterException("Unknown error " + e.getMessage(), e);
-                                    }
-
-                                    callFunction(right, new Token(Type.EPS, var, node.getToken()), args);
-                                }
-                            }
-                        }
-                        //field access
-                        else {
-                            left = stack.pop();
-
-                            if (left.type == Type.THIS) {
-                                stack.push(right);
-                            } else {
-                                Token temp = left;
-
-                                if (isVariable(left)) {
-                                    left = unwrapVariable(left);
-                                }
-
-                                if (left.getType() == Type.NULLVALUE) {
-                                    throw new InterpreterException("Cannot access " + right + "! " + temp.value + " is null.");
-                                }
-
-                                if (left.isObject() || left.isArray()) {
-                                    stack.push(new Token(Type.ACCESS, new Accessor(left.value, (String) right.value), node.getToken()));
-                                } else {
-                                    Accessor accessor = (Accessor) left.value;
-
-                                    Object var;
-                                    try {
-                                        var = accessor.evaluateTarget();
-                                    } catch (NoSuchFieldException e) {
-                                        throw new InterpreterException("Unknown field " + accessor, e);
-                                    } catch (Exception e) {
-                                        throw new InterpreterException("Unknown error " + e.getMessage(), e);
-                                    }
-
-                                    stack.push(new Token(Type.ACCESS, new Accessor(var, (String) right.value), node.getToken()));
-                                }
-                            }
-                        }
-                        break;
-                }
-            } else if (node.getToken().type == Type.ARRAYACCESS) {
-                Token right = stack.pop();
-                Token left = stack.pop();
+                FieldAccessor field = (FieldAccessor) inst.operand;
+                if (field == null) {
+                    stack.push(new Token(Type.ACCESS, new Accessor(parent, (String) right.value), opToken));
+                } else if (inst.arg == 1) {
+                    stack.push(new Token(Type.ACCESS, new Accessor(parent, field), opToken));
+                } else {
+                    Object var;
+                    try {
+                        var = field.get(parent);
+                    } catch (NoSuchFieldException e) {
+                        throw new InterpreterException("Unknown field " + parent + "." + field.getName(), e);
+                    } catch (Exception e) {
+                        throw new InterpreterException("Unknown error " + e.getMessage(), e);
+                    }
 
-                if (isVariable(left)) {
-                    left = unwrapVariable(left);
+                    pushValue(var, opToken);
                 }
+            }
+        }
+    }
 
-                if (isVariable(right)) {
-                    right = unwrapVariable(right);
-                }
+    private void arrayAccess(Instruction inst) throws InterpreterException {
+        Token right = stack.pop();
+        Token left = stack.pop();
 
-                if (!left.isArray())
-                    throw new InterpreterException(left + " is not an array!");
+        if (isVariable(left)) {
+            left = unwrapVariable(left);
+        }
 
-                if (!right.isInteger())
-                    throw new InterpreterException(right + " is not a valid index for array!");
+        if (isVariable(right)) {
+            right = unwrapVariable(right);
+        }
 
-                stack.push(new Token(Type.ACCESS, new Accessor(left.value, right.toInteger()), node.getToken()));
-            } else if (node.getToken().type == Type.THIS) {
-                stack.push(node.getToken());
-            } else if (node.getToken().type == Type.ID) {
-                stack.push(node.getToken());
-            } else if (node.getToken().type == Type.GID || node.getToken().type == Type.GID_TEMP) {
-                Token keyToken = stack.pop();
+        if (!left.isArray())
+            throw new InterpreterException(left + " is not an array!");
 
-                if (isVariable(keyToken)) {
-                    keyToken = unwrapVariable(keyToken);
-                }
+        if (!right.isInteger())
+            throw new InterpreterException(right + " is not a valid index for array!");
 
-                if (keyToken.getType() != Type.STRING) {
-                    throw new InterpreterException(keyToken + " is not a valid global variable id.");
-                }
+        if (inst.arg == 1) {
+            stack.push(new Token(Type.ACCESS, new Accessor(left.value, right.toInteger()), inst.token));
+            return;
+        }
 
-                stack.push(new Token(node.getToken().type, keyToken.value, node.getToken()));
-            } else if (node.getToken().type == Type.CALL) {
-                stack.push(node.getToken());
-                callArgsSize = node.getChildren().size();
-            } else if (node.getToken().type == Type.STRING) {
-                stack.push(new Token(node.getToken().type, node.getToken().value, node.getToken()));
-            } else if (node.getToken().type == Type.INTEGER) {
-                stack.push(new Token(node.getToken().type, Integer.parseInt((String) node.getToken().value), node.getToken()));
-            } else if (node.getToken().type == Type.DECIMAL) {
-                stack.push(new Token(node.getToken().type, Double.parseDouble((String) node.getToken().value), node.getToken()));
-            } else if (node.getToken().type == Type.BOOLEAN) {
-                stack.push(new Token(node.getToken().type, Boolean.parseBoolean((String) node.getToken().value), node.getToken()));
-            } else if (node.getToken().type == Type.EPS) {
-                stack.push(new Token(node.getToken().type, node.getToken().value, node.getToken()));
-            } else if (node.getToken().type == Type.NULLVALUE) {
-                stack.push(new Token(node.getToken().type, null, node.getToken()));
-            } else if (node.getToken().type == Type.IMPORT) {
-                Class<?> clazz = Class.forName((String) node.getToken().getValue());
-                importMap.put(clazz.getSimpleName(), clazz);
-            } else {
-                throw new InterpreterException("Cannot interpret the unknown node " + node.getToken().type.name());
-            }
+        Object var;
+        try {
+            var = Accessor.getElement(left.value, right.toInteger());
         } catch (Exception e) {
-            throw new InterpreterException("Error " + node.getToken().toStringRowColOnly(), e);
+            throw new InterpreterException("Unknown error " + e.getMessage(), e);
+        }
+
+        pushValue(var, inst.token);
+    }
+
+    private void gvar(Instruction inst) throws InterpreterException {
+        Token keyToken = stack.pop();
+
+        if (isVariable(keyToken)) {
+            keyToken = unwrapVariable(keyToken);
         }
 
-        return null;
+        if (keyToken.getType() != Type.STRING) {
+            throw new InterpreterException(keyToken + " is not a valid global variable id.");
+        }
+
+        stack.push(new Token(inst.token.type, keyToken.value, inst.token));
     }
 
     private void assignValue(Token id, Token value) throws InterpreterException {
@@ -948,13 +1658,13 @@ public class Interpreter {
             }
         } else if (id.type == Type.GID || id.type == Type.GID_TEMP) {
             if (value.type == Type.NULLVALUE) {
-                gvars.remove(id.type == Type.GID ? id.value.toString() : new TemporaryGlobalVariableKey(id.value.toString()));
+                getGvars().remove(id.type == Type.GID ? id.value.toString() : new TemporaryGlobalVariableKey(id.value.toString()));
             } else {
                 if (isVariable(value)) {
                     value = unwrapVariable(value);
                 }
 
-                gvars.put(id.type == Type.GID ? id.value.toString() : new TemporaryGlobalVariableKey(id.value.toString()), value.value);
+                getGvars().put(id.type == Type.GID ? id.value.toString() : new TemporaryGlobalVariableKey(id.value.toString()), value.value);
             }
         } else if (id.type == Type.ID) {
             if (isVariable(value)) {
@@ -967,22 +1677,15 @@ public class Interpreter {
         }
     }
 
-    private void callFunction(Token right, Token left, Object[] args) throws InterpreterException {
+    private void callFunction(InlineCache cache, Token right, Token left, Object[] args) throws InterpreterException {
         Object result;
 
-        if (importMap.containsKey(right.value)) {
-            Class<?> clazz = importMap.get(right.value);
-
-            try {
-                result = ReflectionUtil.constructNew(clazz, args);
-            } catch (Exception e) {
-                throw new InterpreterException("Cannot create new instance with " + right + " of " + clazz.getSimpleName(), e);
-            }
-        } else if (left.type == Type.CLAZZ) {
+        if (left.type == Type.CLAZZ) {
             Class<?> clazz = (Class<?>) left.value;
 
             try {
-                result = ReflectionUtil.invokeMethod(clazz, null, (String) right.value, args);
+                result = cache == null ? ReflectionUtil.invokeMethod(clazz, null, (String) right.value, args)
+                        : cache.invoke(clazz, null, args);
             } catch (IllegalAccessException e) {
                 throw new InterpreterException("Function " + right + " is not visible.", e);
             } catch (NoSuchMethodException e) {
@@ -994,7 +1697,8 @@ public class Interpreter {
             }
         } else {
             try {
-                result = ReflectionUtil.invokeMethod(left.value, (String) right.value, args);
+                result = cache == null ? ReflectionUtil.invokeMethod(left.value, (String) right.value, args)
+                        : cache.invoke(left.value.getClass(), left.value, args);
             } catch (IllegalAccessException e) {
                 throw new InterpreterException("Function " + right + " is not visible.", e);
             } catch (NoSuchMethodException e) {
@@ -1006,14 +1710,36 @@ public class Interpreter {
             }
         }
 
+        pushResult(result, right);
+    }
+
+    private void newInstance(Instruction inst) throws InterpreterException {
+        Object[] args = new Object[inst.arg];
+        for (int i = args.length - 1; i >= 0; i--) {
+            args[i] = popValue();
+        }
+
+        Class<?> clazz = (Class<?>) inst.operand;
+        Token call = inst.token;
+        Object result;
+        try {
+            result = ReflectionUtil.constructNew(clazz, args);
+        } catch (Exception e) {
+            throw new InterpreterException("Cannot create new instance with " + call + " of " + clazz.getSimpleName(), e);
+        }
+
+        pushResult(result, call);
+    }
+
+    private void pushResult(Object result, Token origin) {
         if (result != null) {
             if (isPrimitive(result)) {
-                stack.push(new Token(Type.EPS, result, right));
+                stack.push(new Token(Type.EPS, result, origin));
             } else {
-                stack.push(new Token(Type.OBJECT, result, right));
+                stack.push(new Token(Type.OBJECT, result, origin));
             }
         } else {
-            stack.push(new Token(Type.NULLVALUE, null, right));
+            stack.push(new Token(Type.NULLVALUE, null, origin));
         }
     }
 
@@ -1033,18 +1759,13 @@ public class Interpreter {
 
     private Token unwrapVariable(Token varToken) throws InterpreterException {
         if (varToken.type == Type.ID) {
-            if (importMap.containsKey(varToken.value)) {
-                Class<?> clazz = importMap.get(varToken.value);
-                return new Token(Type.CLAZZ, clazz, varToken.row, varToken.col);
-            }
-
             Object var = vars.get(varToken.value);
 
             return parseValue(var, varToken);
         } else if (varToken.type == Type.GID) {
-            return parseValue(gvars.get(varToken.value), varToken);
+            return parseValue(getGvars().get(varToken.value), varToken);
         } else if (varToken.type == Type.GID_TEMP) {
-            return parseValue(gvars.get(new TemporaryGlobalVariableKey((String) varToken.value)), varToken);
+            return parseValue(getGvars().get(new TemporaryGlobalVariableKey((String) varToken.value)), varToken);
         } else if (varToken.type == Type.ACCESS) {
             Accessor accessor = (Accessor) varToken.value;
             Object var;
@@ -1062,6 +1783,38 @@ public class Interpreter {
         }
     }
 
+    /**
+     * Pop the top of the stack and get its actual value. Variables are resolved.
+     */
+    private Object popValue() throws InterpreterException {
+        if (stack.tag(0) != OperandStack.TOKEN)
+            return stack.popBoxed();
+
+        Token token = stack.pop();
+        if (isVariable(token)) {
+            token = unwrapVariable(token);
+        }
+        return token.value;
+    }
+
+    /**
+     * Same as pushing {@link #parseValue(Object, Token)}, but Integer, Double, and Boolean go
+     * straight to the primitive lanes.
+     */
+    private void pushValue(Object var, Token origin) {
+        if (var == null) {
+            stack.push(new Token(Type.NULLVALUE, null, origin));
+        } else if (var.getClass() == Integer.class) {
+            stack.pushInteger((Integer) var, origin);
+        } else if (var.getClass() == Double.class) {
+            stack.pushDecimal((Double) var, origin);
+        } else if (var.getClass() == Boolean.class) {
+            stack.pushBoolean((Boolean) var, origin);
+        } else {
+            stack.push(parseValue(var, origin));
+        }
+    }
+
     private Token parseValue(Object var, Token origin) {
         if (var == null) {
             return new Token(Type.NULLVALUE, null, origin);
@@ -1080,26 +1833,26 @@ public class Interpreter {
         }
     }
 
-    private final Executor EXECUTOR_STOP = new Executor() {
+    private static final Executor EXECUTOR_STOP = new Executor() {
         @Override
         public Integer execute(Timings.Timing timing, boolean sync, Map<String, Object> vars, Object context, Object... args) {
             return STOP;
         }
     };
-    private final Executor EXECUTOR_BREAK = new Executor() {
+    private static final Executor EXECUTOR_BREAK = new Executor() {
         @Override
         public Integer execute(Timings.Timing timing, boolean sync, Map<String, Object> vars, Object context, Object... args) {
             return BREAK;
         }
     };
-    private final Executor EXECUTOR_CONTINUE = new Executor() {
+    private static final Executor EXECUTOR_CONTINUE = new Executor() {
         @Override
         public Integer execute(Timings.Timing timing, boolean sync, Map<String, Object> vars, Object context, Object... args) {
 
             return CONTINUE;
         }
     };
-    private final Executor EXECUTOR_WAIT = new Executor() {
+    private class WaitExecutor extends Executor {
         @Override
         public Integer execute(Timings.Timing timing, boolean sync, Map<String, Object> vars, Object context, Object... args) {
 
@@ -1114,25 +1867,155 @@ public class Interpreter {
                 throw new RuntimeException(args[0] + " is not a number!");
 
             double secs = ((Number) args[0]).doubleValue();
-            long later = (long) (secs * 1000);
-            Executor.runTaskLater(new Runnable() {
-                @Override
-                public void run() {
-                    synchronized (Interpreter.this) {
-                        Interpreter.this.waitFlag = false;
-                        Interpreter.this.notify();
-                    }
-                }
-            }, later);
+            waitMillis = (long) (secs * 1000);
             return WAIT;
         }
-    };
+    }
+
+    private class AwaitExecutor extends Executor {
+        @Override
+        public Integer execute(Timings.Timing timing, boolean sync, Map<String, Object> vars, Object context, Object... args) {
+
+            if (sync) {
+                throw new RuntimeException("AWAIT is illegal in sync mode!");
+            }
+
+            //the blocks may need the server thread for their SYNC blocks
+            if (nesting > 0) {
+                throw new RuntimeException("AWAIT is illegal in SYNC blocks!");
+            }
+
+            CompletableFuture<Void> blocks = getAsyncBlocks();
+            if (blocks.isDone())
+                return null;
+
+            if (waitScheduler != null) {
+                awaiting = blocks;
+                return WAIT;
+            }
+
+            blocks.join();
+            return null;
+        }
+    }
+
+    /**
+     * The part of the execution state that's only needed while running. Since most of the Triggers finish
+     * in a moment, these are reused instead of being allocated every time.
+     */
+    private static final class Frame {
+        private static final int POOL_SIZE = 32;
+        private static final AtomicReferenceArray<Frame> POOL = new AtomicReferenceArray<>(POOL_SIZE);
+
+        private final OperandStack stack = new OperandStack();
+        private LoopState[] loopStates;
+
+        private Frame(int loopCount) {
+            this.loopStates = new LoopState[loopCount];
+        }
+
+        private static Frame acquire(int loopCount) {
+            int start = (int) (Thread.currentThread().getId() % POOL_SIZE);
+            for (int i = 0; i < POOL_SIZE; i++) {
+                int index = (start + i) % POOL_SIZE;
+                Frame frame = POOL.get(index);
+                if (frame != null && POOL.compareAndSet(index, frame, null)) {
+                    if (frame.loopStates.length < loopCount)
+                        frame.loopStates = new LoopState[loopCount];
+                    return frame;
+                }
+            }
+
+            return new Frame(loopCount);
+        }
+
+        private static void release(Frame frame) {
+            frame.stack.clear();
+            Arrays.fill(frame.loopStates, null);
+
+            int start = (int) (Thread.currentThread().getId() % POOL_SIZE);
+            for (int i = 0; i < POOL_SIZE; i++) {
+                int index = (start + i) % POOL_SIZE;
+                if (POOL.get(index) == null && POOL.compareAndSet(index, null, frame))
+                    return;
+            }
+        }
+    }
+
+    private static class LoopState {
+        private final Token id;
+        private final int slot;
+
+        private static final int ITERATOR = 0;
+        private static final int LIST = 1;
+        private static final int OBJECT_ARRAY = 2;
+        private static final int INT_ARRAY = 3;
+        private static final int DOUBLE_ARRAY = 4;
+        private static final int ARRAY = 5;
+
+        private Token source;
+        /**
+         * how FOR_NEXT gets the next element
+         */
+        private int kind;
+        private Object array;
+        private List<?> list;
+        private Iterator<?> iterator;
+        private int index;
+        private int limit;
+
+        private LoopState(Token id, int slot) {
+            this.id = id;
+            this.slot = slot;
+        }
+    }
+
+    /**
+     * How the ASYNC blocks see the local variables of the execution that started them.
+     */
+    public enum Capture {
+        /**
+         * the block uses the same variables, so the changes made by either side are visible to the other. Since
+         * the both sides run at the same time, when they see the changes is unpredictable.
+         */
+        SHARED,
+        /**
+         * the block gets a copy of the variables at the moment it started, and the changes made by either side
+         * after that are not visible to the other. Objects in the variables are not copied.
+         */
+        COPY,
+    }
+
+    public interface ErrorHandler {
+        /**
+         * @param context the context of the execution
+         * @param ex      the error
+         */
+        void onError(Object context, InterpreterException ex);
+    }
+
+    public interface WaitScheduler {
+        /**
+         * Continue the execution suspended by #WAIT after the delay. It should run in a separate thread, not the
+         * server thread, like the async Triggers do.
+         *
+         * @param resume the rest of the execution
+         * @param delay  milliseconds to wait
+         */
+        void schedule(Runnable resume, long delay);
+    }
 
     public interface ProcessInterrupter {
         /**
-         * This will be called every time when a node is processing.
+         * This will be called every time when a node is processing. A range of instructions fused by
+         * {@link Tier2Compiler} is reported only once, with the first Node of the range, as the range has no
+         * side effect until its very end.
+         * <p>
+         * The script is run from its compiled {@link Program}, and the tree it was parsed into is not kept. So the
+         * Node only tells the Token being processed, which has the position in the script; it has no children.
+         * The same Node may be given again whenever the same instruction runs, in any thread.
          *
-         * @param node the current node
+         * @param node the current node. Do not modify it.
          * @return return true will terminate execution
          */
         boolean onNodeProcess(Node node);
@@ -18,18 +18,72 @@ package io.github.wysohn.triggerreactor.core.script.interpreter;
 
 import io.github.wysohn.triggerreactor.core.script.Token;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Error in the script. It doesn't record the Java stack trace, as it always points to the Interpreter itself and
+ * filling it in is the most expensive part of throwing an exception; the {@link #getScriptStack() script stack}
+ * tells where the error is instead. The cause, if any, still has its own stack trace.
+ */
 public class InterpreterException extends Exception {
     private static final long serialVersionUID = 1L;
 
+    private String trigger;
+    private List<ScriptFrame> scriptStack;
+
     public InterpreterException(String message) {
-        super(message);
+        super(message, null, true, false);
     }
 
     public InterpreterException(String message, Throwable cause) {
-        super(message, cause);
+        super(message, cause, true, false);
     }
 
     public InterpreterException(String message, Token context) {
+        this(message);
+        addFrame(new ScriptFrame(null, context.row, context.col));
+    }
+
+    /**
+     * Add the position the exception passed through. The first one added is where it's thrown.
+     *
+     * @return this
+     */
+    public InterpreterException addFrame(ScriptFrame frame) {
+        if (scriptStack == null)
+            scriptStack = new ArrayList<>(2);
+        scriptStack.add(frame);
+        return this;
+    }
+
+    /**
+     * @return the message followed by where the exception is thrown, if known.
+     */
+    @Override
+    public String getMessage() {
+        if (scriptStack == null || scriptStack.isEmpty())
+            return super.getMessage();
+
+        return super.getMessage() + " at " + scriptStack.get(0);
+    }
+
+    /**
+     * @return the positions the exception passed through, where it's thrown first.
+     */
+    public List<ScriptFrame> getScriptStack() {
+        return scriptStack == null ? Collections.emptyList() : Collections.unmodifiableList(scriptStack);
+    }
+
+    /**
+     * @return name of the Trigger where this error is from; null if unknown.
+     */
+    public String getTrigger() {
+        return trigger;
+    }
 
+    public void setTrigger(String trigger) {
+        this.trigger = trigger;
     }
 }
@@ -0,0 +1,153 @@
+package io.github.wysohn.triggerreactor.core.script.interpreter;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Collects how much time each line of a script takes. Set it to the {@link Interpreter} with
+ * {@link Interpreter#setProfiler(LineProfiler)}, and the Interpreter reports every time the execution moves to
+ * another line, so the overhead is a couple of counters per line rather than per instruction.
+ * <p>
+ * Time spent in Executors and Placeholders counts toward the line calling them. Time spent waiting
+ * for #WAIT doesn't count at all.
+ * <p>
+ * Many Interpreters may report to the same LineProfiler at the same time.
+ */
+public final class LineProfiler {
+    private static final boolean ALLOCATION = findAllocation();
+
+    private final AtomicLongArray hits;
+    private final AtomicLongArray nanos;
+    private final AtomicLongArray bytes;
+    private final long startTime = System.nanoTime();
+
+    /**
+     * @param lines number of lines of the script. Lines after that are ignored.
+     */
+    public LineProfiler(int lines) {
+        this.hits = new AtomicLongArray(lines + 1);
+        this.nanos = new AtomicLongArray(lines + 1);
+        this.bytes = new AtomicLongArray(lines + 1);
+    }
+
+    /**
+     * @return nanoseconds since this profiler was created.
+     */
+    public long getElapsed() {
+        return System.nanoTime() - startTime;
+    }
+
+    /**
+     * @return whether the bytes allocated by each line are also measured. Depends on the JVM.
+     */
+    public static boolean isAllocationSupported() {
+        return ALLOCATION;
+    }
+
+    private static boolean findAllocation() {
+        try {
+            return Allocation.BEAN != null;
+        } catch (Throwable ex) {
+            //no com.sun.management in this JVM
+            return false;
+        }
+    }
+
+    void record(int row, long nanos, long bytes) {
+        if (row <= 0 || row >= hits.length())
+            return;
+
+        this.hits.incrementAndGet(row);
+        this.nanos.addAndGet(row, nanos);
+        if (bytes > 0)
+            this.bytes.addAndGet(row, bytes);
+    }
+
+    /**
+     * @param limit maximum number of lines to return
+     * @return the lines which took the most time so far, the slowest first.
+     */
+    public List<Line> getHotLines(int limit) {
+        List<Line> lines = new ArrayList<>();
+        for (int row = 1; row < hits.length(); row++) {
+            long hit = hits.get(row);
+            if (hit > 0)
+                lines.add(new Line(row, hit, nanos.get(row), bytes.get(row)));
+        }
+
+        lines.sort(Comparator.comparingLong((Line line) -> line.nanos).reversed());
+        return lines.size() > limit ? lines.subList(0, limit) : lines;
+    }
+
+    /**
+     * @return total nanoseconds spent in all the lines.
+     */
+    public long getTotalNanos() {
+        long total = 0L;
+        for (int row = 1; row < nanos.length(); row++)
+            total += nanos.get(row);
+        return total;
+    }
+
+    /**
+     * @return bytes allocated by the current thread so far; -1 if not supported.
+     */
+    static long allocatedBytes() {
+        if (!ALLOCATION)
+            return -1L;
+
+        return Allocation.BEAN.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    public static final class Line {
+        public final int row;
+        /**
+         * number of times the execution entered this line.
+         */
+        public final long hits;
+        public final long nanos;
+        /**
+         * bytes allocated while running this line. 0 if not supported.
+         */
+        public final long bytes;
+
+        private Line(int row, long hits, long nanos, long bytes) {
+            this.row = row;
+            this.hits = hits;
+            this.nanos = nanos;
+            this.bytes = bytes;
+        }
+
+        @Override
+        public String toString() {
+            return "line " + row + ": " + hits + " hits, " + nanos + "ns, " + bytes + " bytes";
+        }
+    }
+
+    /**
+     * Separated so that LineProfiler still works without com.sun.management.
+     */
+    private static final class Allocation {
+        private static final com.sun.management.ThreadMXBean BEAN = find();
+
+        private static com.sun.management.ThreadMXBean find() {
+            try {
+                java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+                if (!(bean instanceof com.sun.management.ThreadMXBean))
+                    return null;
+
+                com.sun.management.ThreadMXBean sunBean = (com.sun.management.ThreadMXBean) bean;
+                if (!sunBean.isThreadAllocatedMemorySupported())
+                    return null;
+
+                sunBean.setThreadAllocatedMemoryEnabled(true);
+                return sunBean;
+            } catch (Throwable ex) {
+                return null;
+            }
+        }
+    }
+}
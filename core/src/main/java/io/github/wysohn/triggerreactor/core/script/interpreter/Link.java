@@ -0,0 +1,76 @@
+package io.github.wysohn.triggerreactor.core.script.interpreter;
+
+import io.github.wysohn.triggerreactor.tools.CaseInsensitiveStringMap;
+import io.github.wysohn.triggerreactor.tools.Registry;
+
+import java.util.Map;
+
+/**
+ * Operand of {@link Opcode#EXECUTOR} and {@link Opcode#PLACEHOLDER}. Remembers the Executor (or Placeholder) found
+ * with the name, so it doesn't have to be looked up every time.
+ * <p>
+ * What's found is only reused when it came from a {@link Registry} and the Registry has not been modified since;
+ * other kind of Maps are searched every time as they can change without notice.
+ *
+ * @param <V> Executor or Placeholder
+ */
+final class Link<V> {
+    final String name;
+    private volatile Bound<V> bound;
+
+    Link(String name) {
+        this.name = name;
+    }
+
+    /**
+     * @param map the map to find the value from
+     * @return the value with the name. Case insensitive. null if not found.
+     */
+    @SuppressWarnings("unchecked")
+    V resolve(Map<String, V> map) {
+        if (!(map instanceof Registry))
+            return lookup(map, name);
+
+        Registry<V> registry = (Registry<V>) map;
+        Bound<V> bound = this.bound;
+        long version = registry.getVersion();
+        if (bound != null && bound.registry == registry && bound.version == version)
+            return bound.value;
+
+        V value = registry.get(name);
+        this.bound = new Bound<>(registry, version, value);
+        return value;
+    }
+
+    /**
+     * Exact match first, since that's how the names are written most of the time.
+     */
+    static <V> V lookup(Map<String, V> map, String name) {
+        V value = map.get(name);
+        if (value != null || map instanceof Registry || map instanceof CaseInsensitiveStringMap)
+            return value;
+
+        for (Map.Entry<String, V> entry : map.entrySet()) {
+            if (entry.getKey().equalsIgnoreCase(name))
+                return entry.getValue();
+        }
+        return null;
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+
+    private static final class Bound<V> {
+        private final Registry<V> registry;
+        private final long version;
+        private final V value;
+
+        private Bound(Registry<V> registry, long version, V value) {
+            this.registry = registry;
+            this.version = version;
+            this.value = value;
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package io.github.wysohn.triggerreactor.core.script.interpreter;
+
+import io.github.wysohn.triggerreactor.tools.VarMap;
+
+import java.util.AbstractMap;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Local variables of a running {@link Program}. Variables that appear in the script are stored in
+ * slots, which the compiler assigned, so the Interpreter can read and write them by index
+ * without hashing the name every time.
+ * <p>
+ * This is still a Map for the Executors, Placeholders, and everyone else who uses {@link Interpreter#getVars()}.
+ * Names that are not used by the script are simply stored in the backing map. Values in the slots are copied
+ * from the backing map when created and copied back to it by {@link #flush()}.
+ */
+final class LocalVariables extends AbstractMap<String, Object> {
+    private static final Object UNSET = new Object();
+
+    private final Program program;
+    private final Map<String, Object> backing;
+    final Object[] slots;
+
+    LocalVariables(Program program) {
+        this(program, new VarMap());
+    }
+
+    LocalVariables(Program program, Map<String, Object> backing) {
+        this.program = program;
+        this.backing = backing;
+        this.slots = new Object[program.locals.length];
+
+        for (int i = 0; i < slots.length; i++) {
+            String name = program.locals[i];
+            slots[i] = backing.containsKey(name) ? backing.get(name) : UNSET;
+        }
+    }
+
+    private LocalVariables(LocalVariables source) {
+        this.program = source.program;
+        this.backing = new VarMap();
+        //putAll() of ConcurrentHashMap doesn't take null
+        for (Entry<String, Object> entry : source.backing.entrySet())
+            this.backing.put(entry.getKey(), entry.getValue());
+        this.slots = source.slots.clone();
+    }
+
+    /**
+     * @return independent copy of the current variables. The values themselves are not copied.
+     */
+    LocalVariables copy() {
+        return new LocalVariables(this);
+    }
+
+    Object get(int slot) {
+        Object value = slots[slot];
+        return value == UNSET ? null : value;
+    }
+
+    void set(int slot, Object value) {
+        slots[slot] = value;
+    }
+
+    /**
+     * Copy the values in the slots to the backing map.
+     */
+    void flush() {
+        for (int i = 0; i < slots.length; i++) {
+            if (slots[i] != UNSET)
+                backing.put(program.locals[i], slots[i]);
+        }
+    }
+
+    private int slotOf(Object key) {
+        Integer slot = program.localIndex.get(key);
+        return slot == null ? -1 : slot;
+    }
+
+    @Override
+    public Object get(Object key) {
+        int slot = slotOf(key);
+        return slot < 0 ? backing.get(key) : get(slot);
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        int slot = slotOf(key);
+        return slot < 0 ? backing.containsKey(key) : slots[slot] != UNSET;
+    }
+
+    @Override
+    public Object put(String key, Object value) {
+        int slot = slotOf(key);
+        if (slot < 0)
+            return backing.put(key, value);
+
+        Object previous = get(slot);
+        slots[slot] = value;
+        return previous;
+    }
+
+    @Override
+    public Object remove(Object key) {
+        int slot = slotOf(key);
+        if (slot < 0)
+            return backing.remove(key);
+
+        Object previous = get(slot);
+        slots[slot] = UNSET;
+        backing.remove(key);
+        return previous;
+    }
+
+    @Override
+    public void clear() {
+        for (int i = 0; i < slots.length; i++)
+            slots[i] = UNSET;
+        backing.clear();
+    }
+
+    /**
+     * @return snapshot of the current variables. Modifying it does not affect this map.
+     */
+    @Override
+    public Set<Entry<String, Object>> entrySet() {
+        Map<String, Object> snapshot = new HashMap<>(backing);
+        for (int i = 0; i < slots.length; i++) {
+            if (slots[i] == UNSET) {
+                snapshot.remove(program.locals[i]);
+            } else {
+                snapshot.put(program.locals[i], slots[i]);
+            }
+        }
+        return Collections.unmodifiableMap(snapshot).entrySet();
+    }
+}
@@ -0,0 +1,136 @@
+package io.github.wysohn.triggerreactor.core.script.interpreter;
+
+/**
+ * Operation codes of {@link Instruction}. These are plain int constants so the
+ * dispatch loop in {@link Interpreter} compiles into a single tableswitch.
+ */
+public final class Opcode {
+    /**
+     * push the Token in {@link Instruction#operand}. Literals are already converted to their
+     * actual values (Integer, Double, Boolean) by the compiler.
+     */
+    public static final int PUSH_TOKEN = 0;
+    /**
+     * push the CALL Token and remember the number of arguments for the following DOT
+     */
+    public static final int CALL = 1;
+    public static final int GVAR = 2;
+    public static final int PLACEHOLDER = 3;
+    public static final int EXECUTOR = 4;
+    /**
+     * new instance of the imported class in {@link Instruction#operand}, with {@link Instruction#arg} arguments
+     */
+    public static final int NEW = 5;
+    /**
+     * push the value of the local variable in the slot {@link Instruction#arg}
+     */
+    public static final int LOAD_LOCAL = 6;
+    /**
+     * pop the value and store it to the local variable in the slot {@link Instruction#arg}
+     */
+    public static final int STORE_LOCAL = 7;
+
+    public static final int ASSIGN = 8;
+    /**
+     * method call or field access. The operand is the {@link InlineCache} for a method call and the
+     * {@link io.github.wysohn.triggerreactor.core.script.wrapper.FieldAccessor} for a field. Field is read right away
+     * unless {@link Instruction#arg} is 1, which means it will be assigned.
+     */
+    public static final int DOT = 9;
+    /**
+     * element of the array. Read right away unless {@link Instruction#arg} is 1, which means it will be assigned.
+     */
+    public static final int ARRAY_ACCESS = 10;
+    public static final int IS = 11;
+
+    public static final int ADD = 12;
+    public static final int SUB = 13;
+    public static final int MUL = 14;
+    public static final int DIV = 15;
+    public static final int MOD = 16;
+    public static final int NEG = 17;
+
+    public static final int NOT = 18;
+    public static final int LT = 19;
+    public static final int GT = 20;
+    public static final int LE = 21;
+    public static final int GE = 22;
+    public static final int EQ = 23;
+    public static final int NE = 24;
+    public static final int AND = 25;
+    public static final int OR = 26;
+
+    /**
+     * unconditional jump to {@link Instruction#arg}
+     */
+    public static final int JMP = 27;
+    /**
+     * pop the condition of IF statement and jump to {@link Instruction#arg} if it's false (or null)
+     */
+    public static final int BRANCH_FALSE = 28;
+    /**
+     * short circuit of &amp;&amp;. Leaves the left value on the stack and jump if it's false.
+     */
+    public static final int AND_SC = 29;
+    /**
+     * short circuit of ||. Leaves the left value on the stack and jump if it's true.
+     */
+    public static final int OR_SC = 30;
+
+    public static final int WHILE_TEST = 31;
+
+    public static final int FOR_VAR = 32;
+    /**
+     * pop the iterable of <code>FOR x = iterable</code>. Arrays and random access Lists are iterated with the index
+     * instead of an Iterator.
+     */
+    public static final int FOR_EACH = 33;
+    public static final int FOR_RANGE = 34;
+    /**
+     * assign the next element of FOR_EACH, or jump out of the loop if there is no more.
+     */
+    public static final int FOR_NEXT = 35;
+    public static final int FOR_END = 36;
+
+    public static final int SYNC = 37;
+    public static final int ASYNC = 38;
+
+    /**
+     * the compiler could not make sense of the Node. Throws the message in {@link Instruction#operand} when executed.
+     */
+    public static final int FAIL = 39;
+    /**
+     * expression compiled by {@link Tier2Compiler}. Evaluates the {@link FusedExpression} in {@link Instruction#operand},
+     * or executes the original instruction if the expression can't handle the current values.
+     */
+    public static final int FUSED = 40;
+    /**
+     * assign the next integer of FOR_RANGE, or jump out of the loop if it reached the limit. The integer is kept
+     * unboxed in the loop state.
+     */
+    public static final int FOR_RANGE_NEXT = 41;
+    /**
+     * pop {@link Instruction#arg} values and push the String built with the {@link StringTemplate} in
+     * {@link Instruction#operand}.
+     */
+    public static final int CONCAT = 42;
+
+    private static final String[] NAMES = {
+            "PUSH_TOKEN", "CALL", "GVAR", "PLACEHOLDER", "EXECUTOR", "NEW", "LOAD_LOCAL", "STORE_LOCAL",
+            "ASSIGN", "DOT", "ARRAY_ACCESS", "IS", "ADD", "SUB", "MUL", "DIV", "MOD", "NEG",
+            "NOT", "LT", "GT", "LE", "GE", "EQ", "NE", "AND", "OR", "JMP", "BRANCH_FALSE", "AND_SC", "OR_SC",
+            "WHILE_TEST", "FOR_VAR", "FOR_EACH", "FOR_RANGE", "FOR_NEXT", "FOR_END",
+            "SYNC", "ASYNC", "FAIL", "FUSED", "FOR_RANGE_NEXT", "CONCAT",
+    };
+
+    public static String name(int opcode) {
+        if (opcode < 0 || opcode >= NAMES.length)
+            return "UNKNOWN(" + opcode + ")";
+
+        return NAMES[opcode];
+    }
+
+    private Opcode() {
+
+    }
+}
@@ -0,0 +1,200 @@
+package io.github.wysohn.triggerreactor.core.script.interpreter;
+
+import io.github.wysohn.triggerreactor.core.script.Token;
+import io.github.wysohn.triggerreactor.core.script.Token.Type;
+
+import java.util.Arrays;
+import java.util.EmptyStackException;
+
+/**
+ * Operand stack of the {@link Interpreter}. Integer, decimal, and boolean values are kept unboxed in the
+ * primitive lanes, so arithmetic and comparison do not allocate anything. Everything else is kept as
+ * {@link Token}.
+ * <p>
+ * {@link #pop()} still works for every value; a Token is created only when a primitive value
+ * has to be handed to the code that expects a Token.
+ */
+final class OperandStack {
+    static final byte TOKEN = 0;
+    static final byte INTEGER = 1;
+    static final byte DECIMAL = 2;
+    static final byte BOOLEAN = 3;
+
+    private byte[] tags = new byte[16];
+    private long[] longs = new long[16];
+    private double[] doubles = new double[16];
+    /**
+     * the Token itself if the tag is TOKEN. Otherwise, the Token where the value came from, so we know
+     * the row and column when it has to be converted back to Token.
+     */
+    private Object[] refs = new Object[16];
+    private int size = 0;
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * @param depth 0 for the top of the stack, 1 for the one below it, and so on.
+     * @return the tag of the value. TOKEN if the stack is not deep enough.
+     */
+    byte tag(int depth) {
+        int index = size - 1 - depth;
+        return index < 0 ? TOKEN : tags[index];
+    }
+
+    /**
+     * @return true if the top two values are both INTEGER or DECIMAL
+     */
+    boolean isNumericPair() {
+        return size > 1 && tags[size - 1] != TOKEN && tags[size - 1] != BOOLEAN
+                && tags[size - 2] != TOKEN && tags[size - 2] != BOOLEAN;
+    }
+
+    void push(Token token) {
+        if (token != null) {
+            if (token.type == Type.INTEGER && token.value instanceof Integer) {
+                pushInteger((Integer) token.value, token);
+                return;
+            } else if (token.type == Type.DECIMAL && token.value instanceof Double) {
+                pushDecimal((Double) token.value, token);
+                return;
+            } else if (token.type == Type.BOOLEAN && token.value instanceof Boolean) {
+                pushBoolean((Boolean) token.value, token);
+                return;
+            }
+        }
+
+        ensureCapacity();
+        tags[size] = TOKEN;
+        refs[size] = token;
+        size++;
+    }
+
+    void pushInteger(int value, Token origin) {
+        ensureCapacity();
+        tags[size] = INTEGER;
+        longs[size] = value;
+        refs[size] = origin;
+        size++;
+    }
+
+    void pushDecimal(double value, Token origin) {
+        ensureCapacity();
+        tags[size] = DECIMAL;
+        doubles[size] = value;
+        refs[size] = origin;
+        size++;
+    }
+
+    void pushBoolean(boolean value, Token origin) {
+        ensureCapacity();
+        tags[size] = BOOLEAN;
+        longs[size] = value ? 1L : 0L;
+        refs[size] = origin;
+        size++;
+    }
+
+    /**
+     * Pop the value as Token. If it's a primitive value, it's converted to Token.
+     */
+    Token pop() {
+        if (size == 0)
+            throw new EmptyStackException();
+
+        int index = --size;
+        Token origin = (Token) refs[index];
+        refs[index] = null;
+
+        switch (tags[index]) {
+            case INTEGER:
+                int i = (int) longs[index];
+                if (origin.type == Type.INTEGER && origin.value instanceof Integer && (Integer) origin.value == i)
+                    return origin;
+                return new Token(Type.INTEGER, i, origin);
+            case DECIMAL:
+                double d = doubles[index];
+                if (origin.type == Type.DECIMAL && origin.value instanceof Double
+                        && Double.compare((Double) origin.value, d) == 0)
+                    return origin;
+                return new Token(Type.DECIMAL, d, origin);
+            case BOOLEAN:
+                boolean b = longs[index] != 0L;
+                if (origin.type == Type.BOOLEAN && origin.value instanceof Boolean && (Boolean) origin.value == b)
+                    return origin;
+                return new Token(Type.BOOLEAN, b, origin);
+            default:
+                return origin;
+        }
+    }
+
+    /**
+     * Pop the INTEGER value. Caller must check the tag first.
+     */
+    int popInteger() {
+        int index = --size;
+        refs[index] = null;
+        return (int) longs[index];
+    }
+
+    /**
+     * Pop the INTEGER or DECIMAL value as double. Caller must check the tag first.
+     */
+    double popDecimal() {
+        int index = --size;
+        refs[index] = null;
+        return tags[index] == INTEGER ? longs[index] : doubles[index];
+    }
+
+    /**
+     * Pop the BOOLEAN value. Caller must check the tag first.
+     */
+    boolean popBoolean() {
+        int index = --size;
+        refs[index] = null;
+        return longs[index] != 0L;
+    }
+
+    /**
+     * Get the BOOLEAN value on the top without popping it. Caller must check the tag first.
+     */
+    boolean peekBoolean() {
+        return longs[size - 1] != 0L;
+    }
+
+    /**
+     * Pop the value of primitive lanes, boxed. Caller must check the tag first.
+     */
+    Object popBoxed() {
+        switch (tags[size - 1]) {
+            case INTEGER:
+                return popInteger();
+            case DECIMAL:
+                return popDecimal();
+            case BOOLEAN:
+                return popBoolean();
+            default:
+                return pop().value;
+        }
+    }
+
+    void clear() {
+        Arrays.fill(refs, 0, size, null);
+        size = 0;
+    }
+
+    private void ensureCapacity() {
+        if (size < tags.length)
+            return;
+
+        int capacity = tags.length << 1;
+        tags = Arrays.copyOf(tags, capacity);
+        longs = Arrays.copyOf(longs, capacity);
+        doubles = Arrays.copyOf(doubles, capacity);
+        refs = Arrays.copyOf(refs, capacity);
+    }
+}
@@ -0,0 +1,173 @@
+package io.github.wysohn.triggerreactor.core.script.interpreter;
+
+import io.github.wysohn.triggerreactor.core.script.Token;
+import io.github.wysohn.triggerreactor.core.script.parser.Node;
+import io.github.wysohn.triggerreactor.tools.MemoryUtil;
+import io.github.wysohn.triggerreactor.tools.Registry;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The compiled form of a script. A Program is a flat array of {@link Instruction}s
+ * that the {@link Interpreter} executes with a single dispatch loop instead of walking
+ * the {@link Node} tree.
+ * <p>
+ * Use {@link ScriptCompiler} to create one. A Program doesn't change once compiled, so the same Program can be
+ * shared by any number of Interpreters and Triggers.
+ */
+public class Program {
+    final Instruction[] code;
+    final int[] breakTargets;
+    final int[] continueTargets;
+    /**
+     * names of the local variables. Index is the slot.
+     */
+    final String[] locals;
+    final Map<String, Integer> localIndex;
+    private final int tier;
+    /**
+     * the Program this one was compiled from by {@link Tier2Compiler}; null if this is the original one.
+     * Whoever uses this Program keeps the original one alive as well, so it can be shared again.
+     */
+    private final Program base;
+    /**
+     * what {@link Tier2Compiler} made out of this Program, so it's compiled only once however many Triggers
+     * share this Program.
+     */
+    volatile Program compiled;
+
+    //only weakly referenced by the Registry, so keep them here
+    private Registry.Listener<Executor> executorListener;
+    private Registry.Listener<Placeholder> placeholderListener;
+
+    Program(Instruction[] code, int[] breakTargets, int[] continueTargets, String[] locals) {
+        this(code, breakTargets, continueTargets, locals, 1, null);
+    }
+
+    /**
+     * @param base the Program to compile again
+     * @param code the instructions compiled from the ones of the base
+     */
+    Program(Program base, Instruction[] code) {
+        this(code, base.breakTargets, base.continueTargets, base.locals, base.tier + 1, base);
+    }
+
+    private Program(Instruction[] code, int[] breakTargets, int[] continueTargets, String[] locals, int tier,
+                    Program base) {
+        this.tier = tier;
+        this.base = base;
+        this.code = code;
+        this.breakTargets = breakTargets;
+        this.continueTargets = continueTargets;
+        this.locals = locals;
+
+        Map<String, Integer> localIndex = new HashMap<>();
+        for (int i = 0; i < locals.length; i++)
+            localIndex.put(locals[i], i);
+        this.localIndex = Collections.unmodifiableMap(localIndex);
+    }
+
+    /**
+     * @return number of instructions
+     */
+    public int size() {
+        return code.length;
+    }
+
+    /**
+     * @return number of loops (WHILE and FOR) in this Program
+     */
+    public int getLoopCount() {
+        return breakTargets.length;
+    }
+
+    /**
+     * @return number of local variable slots
+     */
+    public int getLocalCount() {
+        return locals.length;
+    }
+
+    /**
+     * @return 1 if this Program is what {@link ScriptCompiler} produced; 2 if it was compiled again by
+     * {@link Tier2Compiler}.
+     */
+    public int getTier() {
+        return tier;
+    }
+
+    /**
+     * Find the Executors and Placeholders used in this Program in advance, so the Interpreter doesn't have to look
+     * them up while running. If the maps are {@link Registry}s, they are found again whenever the Registry is
+     * modified; other maps are still searched every time.
+     *
+     * @param executors    the executors the Interpreters will use
+     * @param placeholders the placeholders the Interpreters will use
+     */
+    @SuppressWarnings("unchecked")
+    public synchronized void link(Map<String, Executor> executors, Map<String, Placeholder> placeholders) {
+        if (executors instanceof Registry) {
+            Registry<Executor> registry = (Registry<Executor>) executors;
+            if (executorListener != null)
+                registry.removeListener(executorListener);
+            executorListener = changed -> relink(Opcode.EXECUTOR, changed);
+            registry.addListener(executorListener);
+        }
+        if (placeholders instanceof Registry) {
+            Registry<Placeholder> registry = (Registry<Placeholder>) placeholders;
+            if (placeholderListener != null)
+                registry.removeListener(placeholderListener);
+            placeholderListener = changed -> relink(Opcode.PLACEHOLDER, changed);
+            registry.addListener(placeholderListener);
+        }
+
+        relink(Opcode.EXECUTOR, executors);
+        relink(Opcode.PLACEHOLDER, placeholders);
+    }
+
+    @SuppressWarnings("unchecked")
+    private <V> void relink(int opcode, Map<String, V> map) {
+        for (Instruction instruction : code) {
+            if (instruction.opcode == opcode)
+                ((Link<V>) instruction.operand).resolve(map);
+        }
+    }
+
+    /**
+     * @return approximate number of bytes this Program takes. The values used by the
+     * instructions are not counted, as most of them are shared.
+     */
+    public long estimateSize() {
+        long size = MemoryUtil.objectSize(9 * MemoryUtil.REFERENCE)
+                + MemoryUtil.arraySize(code.length, MemoryUtil.REFERENCE)
+                + MemoryUtil.arraySize(breakTargets.length, 4)
+                + MemoryUtil.arraySize(continueTargets.length, 4)
+                + MemoryUtil.arraySize(locals.length, MemoryUtil.REFERENCE);
+
+        Set<Token> tokens = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (Instruction instruction : code) {
+            //opcode, token, operand, arg, loop, seen, node
+            size += MemoryUtil.objectSize(4 + MemoryUtil.REFERENCE * 3 + 4 + 4 + 1);
+            if (tokens.add(instruction.token))
+                size += MemoryUtil.objectSize(MemoryUtil.REFERENCE * 2 + 4 + 4);
+        }
+        return size;
+    }
+
+    public Instruction getInstruction(int index) {
+        return code[index];
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < code.length; i++) {
+            builder.append(i).append(": ").append(code[i]).append('\n');
+        }
+        return builder.toString();
+    }
+}
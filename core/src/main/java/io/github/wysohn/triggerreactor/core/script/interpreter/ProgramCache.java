@@ -0,0 +1,119 @@
+package io.github.wysohn.triggerreactor.core.script.interpreter;
+
+import io.github.wysohn.triggerreactor.core.script.warning.ImportWarning;
+import io.github.wysohn.triggerreactor.core.script.warning.Warning;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Programs shared by the Triggers having the same script. The same script is often copied onto thousands of
+ * blocks, and then only the first of them has to be parsed and compiled; the rest just use the same Program,
+ * and the same script String as well.
+ * <p>
+ * The Programs are weakly referenced, so they are kept only as long as some Trigger uses them.
+ */
+public final class ProgramCache {
+    private static final Map<String, Ref> CACHE = new ConcurrentHashMap<>();
+    private static final ReferenceQueue<Program> QUEUE = new ReferenceQueue<>();
+
+    private ProgramCache() {
+    }
+
+    /**
+     * @param script the script
+     * @return the Program compiled from the same script; null if there is none.
+     */
+    public static Entry get(String script) {
+        expunge();
+
+        Ref ref = CACHE.get(script);
+        if (ref == null)
+            return null;
+
+        Program program = ref.get();
+        if (program == null)
+            return null;
+
+        return new Entry(ref.script, program, ref.warnings);
+    }
+
+    /**
+     * @param script   the script
+     * @param program  the Program compiled from the script
+     * @param warnings the warnings found while parsing and compiling the script
+     */
+    public static void put(String script, Program program, List<Warning> warnings) {
+        expunge();
+
+        //the class may show up later, such as when the plugin having it is loaded, so compile it again next time
+        for (Warning warning : warnings) {
+            if (warning instanceof ImportWarning)
+                return;
+        }
+
+        CACHE.put(script, new Ref(script, program, Collections.unmodifiableList(new ArrayList<>(warnings))));
+    }
+
+    /**
+     * @return number of the scripts cached, including the ones no longer used but not cleaned up yet.
+     */
+    public static int size() {
+        return CACHE.size();
+    }
+
+    private static void expunge() {
+        Reference<? extends Program> ref;
+        while ((ref = QUEUE.poll()) != null) {
+            Ref cleared = (Ref) ref;
+            CACHE.remove(cleared.script, cleared);
+        }
+    }
+
+    public static final class Entry {
+        private final String script;
+        private final Program program;
+        private final List<Warning> warnings;
+
+        private Entry(String script, Program program, List<Warning> warnings) {
+            this.script = script;
+            this.program = program;
+            this.warnings = warnings;
+        }
+
+        /**
+         * @return the script the Program was compiled from; the same String for all the Triggers sharing it.
+         */
+        public String getScript() {
+            return script;
+        }
+
+        public Program getProgram() {
+            return program;
+        }
+
+        /**
+         * @return the warnings found while parsing and compiling the script.
+         */
+        public List<Warning> getWarnings() {
+            return warnings;
+        }
+    }
+
+    private static final class Ref extends WeakReference<Program> {
+        private final String script;
+        private final List<Warning> warnings;
+
+        private Ref(String script, Program program, List<Warning> warnings) {
+            super(program, QUEUE);
+            this.script = script;
+            this.warnings = warnings;
+        }
+    }
+}
@@ -0,0 +1,555 @@
+package io.github.wysohn.triggerreactor.core.script.interpreter;
+
+import io.github.wysohn.triggerreactor.core.script.Token;
+import io.github.wysohn.triggerreactor.core.script.Token.Type;
+import io.github.wysohn.triggerreactor.core.script.parser.Node;
+import io.github.wysohn.triggerreactor.core.script.warning.ImportWarning;
+import io.github.wysohn.triggerreactor.core.script.warning.Warning;
+import io.github.wysohn.triggerreactor.core.script.wrapper.FieldAccessor;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Lowers the tree produced by {@link io.github.wysohn.triggerreactor.core.script.parser.Parser} into
+ * a {@link Program}. Run {@link ScriptOptimizer} on the tree first to get rid of the constant
+ * expressions. Literals are converted to their actual values here anyway. Expressions are emitted
+ * in post-order, exactly the order the tree walking interpreter used to evaluate them, and the
+ * control statements (IF, ELSEIF, WHILE, FOR) become jumps.
+ * #BREAK and #CONTINUE are not special here; every executor remembers its innermost loop so
+ * that whatever executor returns {@link Executor#BREAK} or {@link Executor#CONTINUE} jumps to the right place.
+ * <p>
+ * Each local variable gets a slot, so reading or writing it is just an array access at runtime.
+ * <p>
+ * IMPORTs are resolved here, and the names of the imported classes become the classes themselves, so nothing is
+ * left to do at runtime. The name refers to the class from the IMPORT to the end of the block the IMPORT is in, so
+ * an IMPORT in the body of an IF, a loop, or a SYNC/ASYNC block doesn't affect anything after the block, and the
+ * lines before the IMPORT still see the variable of the same name, even when a loop comes back to them.
+ * The classes that can't be found are reported by {@link #getWarnings()}, and the IMPORT fails when the execution
+ * reaches it, as it did before.
+ * <p>
+ * Fields and array elements are read right away unless they are the target of an assignment; only the targets
+ * become {@link io.github.wysohn.triggerreactor.core.script.wrapper.Accessor}s at runtime.
+ */
+public class ScriptCompiler {
+    private final Node root;
+
+    private final List<Instruction> code = new ArrayList<>();
+    private final List<Integer> breakTargets = new ArrayList<>();
+    private final List<Integer> continueTargets = new ArrayList<>();
+    private final Deque<Integer> loops = new LinkedList<>();
+    private final Map<String, Integer> locals = new LinkedHashMap<>();
+    /**
+     * simple name to the class imported so far in the current block. null if the class couldn't be found.
+     */
+    private final Map<String, Class<?>> imports = new HashMap<>();
+    private final Set<Node> assignTargets = Collections.newSetFromMap(new IdentityHashMap<>());
+    private final List<Warning> warnings = new ArrayList<>();
+    private final ClassLoader classLoader;
+
+    public ScriptCompiler(Node root) {
+        this(root, ScriptCompiler.class.getClassLoader());
+    }
+
+    /**
+     * @param classLoader the ClassLoader to find the IMPORTed classes with
+     */
+    public ScriptCompiler(Node root, ClassLoader classLoader) {
+        this.root = root;
+        this.classLoader = classLoader;
+    }
+
+    /**
+     * @return the problems found while compiling, such as the classes that can't be found.
+     */
+    public List<Warning> getWarnings() {
+        return warnings;
+    }
+
+    public Program compile() {
+        for (Node child : root.getChildren())
+            compile(child);
+
+        Instruction[] array = code.toArray(new Instruction[0]);
+        int[] breaks = new int[breakTargets.size()];
+        int[] continues = new int[continueTargets.size()];
+        for (int i = 0; i < breaks.length; i++) {
+            breaks[i] = breakTargets.get(i);
+            continues[i] = continueTargets.get(i);
+        }
+
+        return new Program(array, breaks, continues, locals.keySet().toArray(new String[0]));
+    }
+
+    /**
+     * @return the imported class; null if it can't be found.
+     */
+    private Class<?> importClass(Token token) {
+        String className = (String) token.value;
+        String name = ClassCache.simpleName(className);
+        try {
+            Class<?> clazz = ClassCache.forName(className, classLoader);
+            imports.put(name, clazz);
+            return clazz;
+        } catch (ClassNotFoundException | LinkageError ex) {
+            warnings.add(new ImportWarning(token.row, className));
+            //the execution stops at this IMPORT, so it doesn't matter what the name refers to after it
+            imports.putIfAbsent(name, null);
+            return null;
+        }
+    }
+
+    private void compileBody(Node body) {
+        compileBody(Collections.singletonList(body));
+    }
+
+    /**
+     * Compile the body of a block. The IMPORTs in the body are forgotten after it.
+     */
+    private void compileBody(List<Node> statements) {
+        Map<String, Class<?>> outer = new HashMap<>(imports);
+        for (Node statement : statements)
+            compile(statement);
+        imports.clear();
+        imports.putAll(outer);
+    }
+
+    private void compile(Node node) {
+        Token token = node.getToken();
+
+        Node.Kind kind = node.getKind();
+        if (kind == Node.Kind.IF || kind == Node.Kind.ELSEIF) {
+            compileIf(node);
+        } else if (kind == Node.Kind.WHILE) {
+            compileWhile(node);
+        } else if (kind == Node.Kind.FOR) {
+            compileFor(node);
+        } else if (token.type == Type.SYNC) {
+            compileBlock(node, Opcode.SYNC);
+        } else if (token.type == Type.ASYNC) {
+            compileBlock(node, Opcode.ASYNC);
+        } else if (token.type == Type.OPERATOR_L && ("&&".equals(token.value) || "||".equals(token.value))) {
+            compileShortCircuit(node);
+        } else if (isConcat(node) && compileConcat(node)) {
+            //compiled as a template
+        } else if (token.type == Type.OPERATOR && "=".equals(token.value) && localName(node.getChildren().get(0)) != null) {
+            compile(node.getChildren().get(1));
+            emit(Opcode.STORE_LOCAL, node, null, slot(localName(node.getChildren().get(0))));
+        } else if (token.type == Type.OPERATOR && "=".equals(token.value)) {
+            markAssignTarget(node.getChildren().get(0));
+            for (Node child : node.getChildren())
+                compile(child);
+            compileNode(node);
+        } else if (localName(node) != null && imports.get(localName(node)) != null) {
+            compileClass(node.getChildren().get(1));
+        } else if (localName(node) != null && !imports.containsKey(localName(node))) {
+            emit(Opcode.LOAD_LOCAL, node, node.getChildren().get(1).getToken(), slot(localName(node)));
+        } else if (isConstructor(node)) {
+            Node call = node.getChildren().get(1);
+            for (Node child : call.getChildren())
+                compile(child);
+            emit(Opcode.NEW, call, imports.get(call.getToken().value), call.getChildren().size());
+        } else if (token.type == Type.ARRAYACCESS && isLocal(node.getChildren().get(0))) {
+            Node array = node.getChildren().get(0);
+            emit(Opcode.LOAD_LOCAL, array, array.getToken(), slot((String) array.getToken().value));
+            compile(node.getChildren().get(1));
+            compileNode(node);
+        } else {
+            for (Node child : node.getChildren())
+                compile(child);
+
+            compileNode(node);
+        }
+    }
+
+    //IF children -- [0] : condition , [1] : true body , [2] : false body(may not exist)
+    private void compileIf(Node node) {
+        compile(node.getChildren().get(0));
+        int branch = emit(Opcode.BRANCH_FALSE, node, null, -1);
+
+        compileBody(node.getChildren().get(1));
+        if (node.getChildren().size() > 2) {
+            int jump = emit(Opcode.JMP, node, null, -1);
+            patch(branch, here());
+
+            compileBody(node.getChildren().get(2));
+            patch(jump, here());
+        } else {
+            patch(branch, here());
+        }
+    }
+
+    //WHILE children -- [0] : condition , [1] : body
+    private void compileWhile(Node node) {
+        int loop = newLoop();
+
+        int condition = here();
+        compile(node.getChildren().get(0));
+        int test = emit(Opcode.WHILE_TEST, node, null, -1);
+
+        loops.push(loop);
+        compileBody(node.getChildren().get(1));
+        loops.pop();
+
+        continueTargets.set(loop, here());
+        emit(Opcode.JMP, node, null, condition);
+
+        patch(test, here());
+        breakTargets.set(loop, here());
+    }
+
+    //FOR children -- [0] : variable , [1] : iterator , [2] : body
+    private void compileFor(Node node) {
+        int loop = newLoop();
+
+        String name = localName(node.getChildren().get(0));
+        if (name != null) {
+            emit(Opcode.FOR_VAR, node, slot(name), loop);
+        } else {
+            markAssignTarget(node.getChildren().get(0));
+            compile(node.getChildren().get(0));
+            emit(Opcode.FOR_VAR, node, null, loop);
+        }
+
+        Node iterNode = node.getChildren().get(1);
+        if (iterNode.getToken().type != Type.ITERATOR) {
+            emit(Opcode.FAIL, node, "Expected <ITERATOR> but found " + iterNode.getToken(), -1);
+            return;
+        }
+
+        int nextOpcode;
+        if (iterNode.getChildren().size() == 1) {
+            compile(iterNode.getChildren().get(0));
+            emit(Opcode.FOR_EACH, iterNode, null, loop);
+            nextOpcode = Opcode.FOR_NEXT;
+        } else if (iterNode.getChildren().size() == 2) {
+            compile(iterNode.getChildren().get(0));
+            compile(iterNode.getChildren().get(1));
+            emit(Opcode.FOR_RANGE, iterNode, null, loop);
+            nextOpcode = Opcode.FOR_RANGE_NEXT;
+        } else {
+            emit(Opcode.FAIL, node, "Number of <ITERATOR> must be 1 or 2!", -1);
+            return;
+        }
+
+        int next = here();
+        emit(nextOpcode, node, null, loop);
+
+        loops.push(loop);
+        compileBody(node.getChildren().get(2));
+        loops.pop();
+
+        emit(Opcode.JMP, node, null, next);
+
+        continueTargets.set(loop, next);
+        breakTargets.set(loop, here());
+        emit(Opcode.FOR_END, node, null, loop);
+    }
+
+    //SYNC and ASYNC blocks. The argument is the end of the block
+    private void compileBlock(Node node, int opcode) {
+        int block = emit(opcode, node, null, -1);
+
+        compileBody(node.getChildren());
+
+        patch(block, here());
+    }
+
+    private void compileShortCircuit(Node node) {
+        boolean and = "&&".equals(node.getToken().value);
+
+        compile(node.getChildren().get(0));
+        int shortCircuit = emit(and ? Opcode.AND_SC : Opcode.OR_SC, node, null, -1);
+
+        for (int i = 1; i < node.getChildren().size(); i++)
+            compile(node.getChildren().get(i));
+        emit(and ? Opcode.AND : Opcode.OR, node, null, 0);
+
+        patch(shortCircuit, here());
+    }
+
+    private static boolean isConcat(Node node) {
+        return node.getToken().type == Type.OPERATOR_A && "+".equals(node.getToken().value)
+                && node.getChildren().size() == 2;
+    }
+
+    private static boolean isConstant(Node node) {
+        return node.getChildren().isEmpty() && node.getToken().type != Type.NULLVALUE
+                && ScriptOptimizer.isConstant(ScriptOptimizer.literal(node.getToken()));
+    }
+
+    /**
+     * Compile the chain of + into a single {@link Opcode#CONCAT}. The chain is left-deep, like ((a + b) + c) + d,
+     * and it's a string concatenation from the first string literal on. Whatever is before that
+     * (a + b, if c is the first string literal) is still an ordinary addition, so it's compiled as a single value.
+     *
+     * @return false if there is no string literal in the chain, so it's not a string concatenation for sure.
+     */
+    private boolean compileConcat(Node node) {
+        //chain.get(i) is the + Node adding operands.get(i + 1)
+        List<Node> chain = new ArrayList<>();
+        for (Node current = node; isConcat(current); current = current.getChildren().get(0))
+            chain.add(0, current);
+
+        List<Node> operands = new ArrayList<>();
+        operands.add(chain.get(0).getChildren().get(0));
+        for (Node plus : chain)
+            operands.add(plus.getChildren().get(1));
+
+        int first = -1;
+        for (int i = 0; i < operands.size(); i++) {
+            Node operand = operands.get(i);
+            if (operand.getChildren().isEmpty() && operand.getToken().type == Type.STRING) {
+                first = i;
+                break;
+            }
+        }
+        if (first < 0)
+            return false;
+
+        List<Node> parts = new ArrayList<>();
+        if (first < 2) {
+            parts.addAll(operands);
+        } else {
+            parts.add(chain.get(first - 2));
+            parts.addAll(operands.subList(first, operands.size()));
+        }
+
+        StringTemplate.Builder builder = new StringTemplate.Builder();
+        for (Node part : parts) {
+            if (isConstant(part)) {
+                builder.constant(ScriptOptimizer.literal(part.getToken()).value);
+            } else {
+                compile(part);
+                builder.value();
+            }
+        }
+
+        StringTemplate template = builder.build();
+        emit(Opcode.CONCAT, node, template, template.getValueCount());
+        return true;
+    }
+
+    private void compileNode(Node node) {
+        Token token = node.getToken();
+
+        switch (token.type) {
+            case BODY:
+                break;
+            case EXECUTOR:
+                emit(Opcode.EXECUTOR, node, new Link<Executor>((String) token.value), node.getChildren().size());
+                break;
+            case PLACEHOLDER:
+                emit(Opcode.PLACEHOLDER, node, new Link<Placeholder>((String) token.value), node.getChildren().size());
+                break;
+            case OPERATOR_A:
+                compileArithmetic(node);
+                break;
+            case UNARYMINUS:
+                emit(Opcode.NEG, node, null, 0);
+                break;
+            case OPERATOR_L:
+                compileLogical(node);
+                break;
+            case OPERATOR:
+                if ("=".equals(token.value)) {
+                    emit(Opcode.ASSIGN, node, null, 0);
+                } else if (".".equals(token.value)) {
+                    Token right = node.getChildren().get(1).getToken();
+                    //each method call and field access gets its own cache
+                    if (right.type == Type.CALL) {
+                        emit(Opcode.DOT, node, new InlineCache((String) right.value), 0);
+                    } else if (right.type == Type.ID && right.value instanceof String) {
+                        emit(Opcode.DOT, node, new FieldAccessor((String) right.value), assignTargets.contains(node) ? 1 : 0);
+                    } else {
+                        emit(Opcode.DOT, node, null, 1);
+                    }
+                }
+                break;
+            case ARRAYACCESS:
+                emit(Opcode.ARRAY_ACCESS, node, null, assignTargets.contains(node) ? 1 : 0);
+                break;
+            case GID:
+            case GID_TEMP:
+                emit(Opcode.GVAR, node, null, 0);
+                break;
+            case CALL:
+                emit(Opcode.CALL, node, null, node.getChildren().size());
+                break;
+            case INTEGER:
+            case DECIMAL:
+            case BOOLEAN:
+                emit(Opcode.PUSH_TOKEN, node, ScriptOptimizer.literal(token), 0);
+                break;
+            case IMPORT:
+                if (importClass(token) == null)
+                    emit(Opcode.FAIL, node, "Cannot find the class " + token.value + " to import.", 0);
+                break;
+            case ID:
+                if (node.getKind() == Node.Kind.IS) {
+                    emit(Opcode.IS, node, null, 0);
+                } else if (imports.get(token.value) != null) {
+                    compileClass(node);
+                } else {
+                    emit(Opcode.PUSH_TOKEN, node, token, 0);
+                }
+                break;
+            case THIS:
+            case STRING:
+            case EPS:
+            case NULLVALUE:
+                emit(Opcode.PUSH_TOKEN, node, token, 0);
+                break;
+            default:
+                emit(Opcode.FAIL, node, "Cannot interpret the unknown node " + token.type.name(), 0);
+                break;
+        }
+    }
+
+    private void compileArithmetic(Node node) {
+        switch ((String) node.getToken().value) {
+            case "+":
+                emit(Opcode.ADD, node, null, 0);
+                break;
+            case "-":
+                emit(Opcode.SUB, node, null, 0);
+                break;
+            case "*":
+                emit(Opcode.MUL, node, null, 0);
+                break;
+            case "/":
+                emit(Opcode.DIV, node, null, 0);
+                break;
+            case "%":
+                emit(Opcode.MOD, node, null, 0);
+                break;
+            default:
+                emit(Opcode.FAIL, node, "Cannot interpret the unknown operator " + node.getToken().value, 0);
+                break;
+        }
+    }
+
+    private void compileLogical(Node node) {
+        switch ((String) node.getToken().value) {
+            case "!":
+                emit(Opcode.NOT, node, null, 0);
+                break;
+            case "<":
+                emit(Opcode.LT, node, null, 0);
+                break;
+            case ">":
+                emit(Opcode.GT, node, null, 0);
+                break;
+            case "<=":
+                emit(Opcode.LE, node, null, 0);
+                break;
+            case ">=":
+                emit(Opcode.GE, node, null, 0);
+                break;
+            case "==":
+                emit(Opcode.EQ, node, null, 0);
+                break;
+            case "!=":
+                emit(Opcode.NE, node, null, 0);
+                break;
+            default:
+                emit(Opcode.FAIL, node, "Cannot interpret the unknown operator " + node.getToken().value, 0);
+                break;
+        }
+    }
+
+    /**
+     * @return name of the variable if the node is a local variable reference, which is .(THIS, ID). null otherwise.
+     */
+    private static String localName(Node node) {
+        if (node.getToken().type != Type.OPERATOR || !".".equals(node.getToken().value)
+                || node.getChildren().size() != 2
+                || node.getChildren().get(0).getToken().type != Type.THIS)
+            return null;
+
+        Node id = node.getChildren().get(1);
+        if (id.getToken().type != Type.ID || !id.getChildren().isEmpty() || !(id.getToken().value instanceof String))
+            return null;
+
+        return (String) id.getToken().value;
+    }
+
+    /**
+     * The ID that is the name of an imported class.
+     */
+    private void compileClass(Node id) {
+        Token token = id.getToken();
+        emit(Opcode.PUSH_TOKEN, id, new Token(Type.CLAZZ, imports.get(token.value), token), 0);
+    }
+
+    /**
+     * @return true if the node is .(THIS, CALL), where the CALL is the constructor of an imported class.
+     */
+    private boolean isConstructor(Node node) {
+        if (node.getToken().type != Type.OPERATOR || !".".equals(node.getToken().value)
+                || node.getChildren().size() != 2
+                || node.getChildren().get(0).getToken().type != Type.THIS)
+            return false;
+
+        Token call = node.getChildren().get(1).getToken();
+        return call.type == Type.CALL && imports.get(call.value) != null;
+    }
+
+    //.(THIS, arr[i]) simply leaves arr[i] on the stack, so arr[i] is the actual target
+    private void markAssignTarget(Node node) {
+        assignTargets.add(node);
+
+        if (node.getToken().type == Type.OPERATOR && ".".equals(node.getToken().value)
+                && node.getChildren().size() == 2
+                && node.getChildren().get(0).getToken().type == Type.THIS)
+            markAssignTarget(node.getChildren().get(1));
+    }
+
+    //array of arr[i] is a bare ID
+    private boolean isLocal(Node node) {
+        return node.getToken().type == Type.ID
+                && node.getChildren().isEmpty()
+                && node.getToken().value instanceof String
+                && !imports.containsKey(node.getToken().value);
+    }
+
+    private int slot(String name) {
+        Integer slot = locals.get(name);
+        if (slot == null) {
+            slot = locals.size();
+            locals.put(name, slot);
+        }
+        return slot;
+    }
+
+    private int newLoop() {
+        breakTargets.add(-1);
+        continueTargets.add(-1);
+        return breakTargets.size() - 1;
+    }
+
+    private int emit(int opcode, Node node, Object operand, int arg) {
+        Instruction instruction = new Instruction(opcode, node.getToken(), operand, arg);
+        if (opcode == Opcode.EXECUTOR && !loops.isEmpty())
+            instruction.loop = loops.peek();
+
+        code.add(instruction);
+        return code.size() - 1;
+    }
+
+    private void patch(int index, int target) {
+        code.get(index).arg = target;
+    }
+
+    private int here() {
+        return code.size();
+    }
+}
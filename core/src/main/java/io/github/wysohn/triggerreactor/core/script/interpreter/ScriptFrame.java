@@ -0,0 +1,26 @@
+package io.github.wysohn.triggerreactor.core.script.interpreter;
+
+/**
+ * A position in the script where an {@link InterpreterException} passed through, like an element of
+ * the stack trace of Java.
+ */
+public final class ScriptFrame {
+    /**
+     * the Executor (#NAME) or Placeholder ($name) being called; null if it was something else.
+     */
+    public final String callee;
+    public final int row;
+    public final int col;
+
+    public ScriptFrame(String callee, int row, int col) {
+        this.callee = callee;
+        this.row = row;
+        this.col = col;
+    }
+
+    @Override
+    public String toString() {
+        String position = "row[" + row + "], col[" + col + "]";
+        return callee == null ? position : callee + " at " + position;
+    }
+}
@@ -0,0 +1,304 @@
+package io.github.wysohn.triggerreactor.core.script.interpreter;
+
+import io.github.wysohn.triggerreactor.core.script.Token;
+import io.github.wysohn.triggerreactor.core.script.Token.Type;
+import io.github.wysohn.triggerreactor.core.script.parser.Node;
+
+import java.util.List;
+
+/**
+ * Optimization pass over the tree produced by {@link io.github.wysohn.triggerreactor.core.script.parser.Parser}.
+ * This is meant to be done once when the Trigger is loaded, not on every execution.
+ * <ul>
+ * <li>INTEGER, DECIMAL, and BOOLEAN literals are converted to Integer, Double, and Boolean so they
+ * don't have to be parsed again every time they are evaluated.</li>
+ * <li>Expressions consist of constants only, like 60 * 20, are folded into a single constant.</li>
+ * <li>IF statements with constant condition are replaced with the branch that will be taken.</li>
+ * <li>{@link Node#getKind()} is resolved and cached for every Node.</li>
+ * </ul>
+ * Folding follows exactly the same rules as the {@link Interpreter}; if the expression would fail at
+ * runtime (like division by zero), it's left as is so the error is still reported at runtime.
+ * The tree is modified in place.
+ */
+public class ScriptOptimizer {
+    private final Node root;
+
+    public ScriptOptimizer(Node root) {
+        this.root = root;
+    }
+
+    /**
+     * @return the root Node, which is optimized.
+     */
+    public Node optimize() {
+        optimizeChildren(root);
+        return root;
+    }
+
+    private void optimizeChildren(Node parent) {
+        List<Node> children = parent.getChildren();
+        for (int i = 0; i < children.size(); i++) {
+            Node optimized = optimize(children.get(i));
+            if (optimized == null) {
+                children.remove(i--);
+            } else {
+                children.set(i, optimized);
+            }
+        }
+    }
+
+    /**
+     * @return the Node to replace the given Node with. null if it has to be removed.
+     */
+    private Node optimize(Node node) {
+        Token token = node.getToken();
+
+        if (token.type == Type.INTEGER || token.type == Type.DECIMAL || token.type == Type.BOOLEAN)
+            return new Node(literal(token));
+
+        optimizeChildren(node);
+
+        switch (node.getKind()) {
+            case IF:
+            case ELSEIF:
+                return optimizeIf(node);
+            case OTHER:
+                break;
+            default:
+                return node;
+        }
+
+        Token folded = null;
+        switch (token.type) {
+            case OPERATOR_A:
+                folded = foldArithmetic(node);
+                break;
+            case UNARYMINUS:
+                folded = foldUnaryMinus(node);
+                break;
+            case OPERATOR_L:
+                folded = foldLogical(node);
+                break;
+            default:
+                break;
+        }
+
+        return folded == null ? node : new Node(folded);
+    }
+
+    //IF children -- [0] : condition , [1] : true body , [2] : false body(may not exist)
+    private Node optimizeIf(Node node) {
+        Token condition = node.getChildren().get(0).getToken();
+        if (!isConstant(condition))
+            return node;
+
+        if (isTrue(condition)) {
+            return node.getChildren().get(1);
+        } else if (node.getChildren().size() > 2) {
+            return node.getChildren().get(2);
+        } else {
+            return null;
+        }
+    }
+
+    private Token foldArithmetic(Node node) {
+        if (node.getChildren().size() != 2)
+            return null;
+
+        Token opToken = node.getToken();
+        Token left = node.getChildren().get(0).getToken();
+        Token right = node.getChildren().get(1).getToken();
+        if (!isConstant(left) || !isConstant(right))
+            return null;
+
+        if ("+".equals(opToken.value) && (left.type == Type.STRING || right.type == Type.STRING)) {
+            return new Token(Type.STRING, String.valueOf(left.value) + right.value, opToken);
+        }
+
+        if (!left.isNumeric() || !right.isNumeric())
+            return null;
+
+        if (left.isInteger() && right.isInteger()) {
+            int l = left.toInteger(), r = right.toInteger();
+            switch ((String) opToken.value) {
+                case "+":
+                    return new Token(Type.INTEGER, l + r, opToken);
+                case "-":
+                    return new Token(Type.INTEGER, l - r, opToken);
+                case "*":
+                    return new Token(Type.INTEGER, l * r, opToken);
+                case "/":
+                    return r == 0 ? null : new Token(Type.INTEGER, l / r, opToken);
+                case "%":
+                    return r == 0 ? null : new Token(Type.INTEGER, l % r, opToken);
+                default:
+                    return null;
+            }
+        } else {
+            double l = left.toDecimal(), r = right.toDecimal();
+            switch ((String) opToken.value) {
+                case "+":
+                    return new Token(Type.DECIMAL, l + r, opToken);
+                case "-":
+                    return new Token(Type.DECIMAL, l - r, opToken);
+                case "*":
+                    return new Token(Type.DECIMAL, l * r, opToken);
+                case "/":
+                    return new Token(Type.DECIMAL, l / r, opToken);
+                case "%":
+                    return new Token(Type.DECIMAL, l % r, opToken);
+                default:
+                    return null;
+            }
+        }
+    }
+
+    private Token foldUnaryMinus(Node node) {
+        if (node.getChildren().size() != 1)
+            return null;
+
+        Token value = node.getChildren().get(0).getToken();
+        if (!isConstant(value) || !value.isNumeric())
+            return null;
+
+        return value.isInteger() ? new Token(Type.INTEGER, -value.toInteger(), value)
+                : new Token(Type.DECIMAL, -value.toDecimal(), value);
+    }
+
+    private Token foldLogical(Node node) {
+        Token opToken = node.getToken();
+
+        if ("!".equals(opToken.value)) {
+            if (node.getChildren().size() != 1)
+                return null;
+
+            Token value = node.getChildren().get(0).getToken();
+            if (!isConstant(value))
+                return null;
+
+            if (value.type == Type.NULLVALUE) {
+                return new Token(Type.BOOLEAN, true, opToken);
+            } else if (value.isBoolean()) {
+                return new Token(Type.BOOLEAN, !value.toBoolean(), opToken);
+            } else if (value.isDecimal()) {
+                return new Token(Type.BOOLEAN, value.toDecimal() == 0.0, opToken);
+            } else if (value.isInteger()) {
+                return new Token(Type.BOOLEAN, value.toInteger() == 0, opToken);
+            } else {
+                return null;
+            }
+        }
+
+        if (node.getChildren().size() != 2)
+            return null;
+
+        Token left = node.getChildren().get(0).getToken();
+        Token right = node.getChildren().get(1).getToken();
+        if (!isConstant(left) || !isConstant(right))
+            return null;
+
+        switch ((String) opToken.value) {
+            case "<":
+            case ">":
+            case "<=":
+            case ">=":
+                if (!left.isNumeric() || !right.isNumeric())
+                    return null;
+
+                double l = left.isInteger() ? left.toInteger() : left.toDecimal();
+                double r = right.isInteger() ? right.toInteger() : right.toDecimal();
+                boolean result;
+                switch ((String) opToken.value) {
+                    case "<":
+                        result = l < r;
+                        break;
+                    case ">":
+                        result = l > r;
+                        break;
+                    case "<=":
+                        result = l <= r;
+                        break;
+                    default:
+                        result = l >= r;
+                        break;
+                }
+                return new Token(Type.BOOLEAN, result, opToken);
+            case "==":
+                if (left.type == Type.NULLVALUE || right.type == Type.NULLVALUE)
+                    return new Token(Type.BOOLEAN, left.value == null && right.value == null, opToken);
+
+                return new Token(Type.BOOLEAN, left.value.equals(right.value), opToken);
+            case "!=":
+                if (left.type == Type.NULLVALUE || right.type == Type.NULLVALUE)
+                    return new Token(Type.BOOLEAN, left.value != null || right.value != null, opToken);
+
+                return new Token(Type.BOOLEAN, !left.value.equals(right.value), opToken);
+            case "&&":
+                if (!left.isBoolean() || !right.isBoolean())
+                    return null;
+
+                return new Token(Type.BOOLEAN, left.toBoolean() && right.toBoolean(), opToken);
+            case "||":
+                if (!left.isBoolean() || !right.isBoolean())
+                    return null;
+
+                return new Token(Type.BOOLEAN, left.toBoolean() || right.toBoolean(), opToken);
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * Same as the condition check of IF statement in {@link Interpreter}
+     */
+    private static boolean isTrue(Token token) {
+        if (token.type == Type.NULLVALUE) {
+            return false;
+        } else if (token.isBoolean()) {
+            return token.toBoolean();
+        } else if (token.isInteger()) {
+            return token.toInteger() != 0;
+        } else if (token.isDecimal()) {
+            return token.toDecimal() != 0.0;
+        } else {
+            return token.value != null;
+        }
+    }
+
+    static boolean isConstant(Token token) {
+        switch (token.type) {
+            case INTEGER:
+            case DECIMAL:
+            case BOOLEAN:
+                return !(token.value instanceof String);
+            case STRING:
+            case NULLVALUE:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Convert the literal Token, which still has the String value from the source code,
+     * to the Token with actual value.
+     *
+     * @param token INTEGER, DECIMAL, or BOOLEAN Token
+     * @return the Token with Integer, Double, or Boolean value. The token itself if it's already converted.
+     */
+    static Token literal(Token token) {
+        if (!(token.value instanceof String))
+            return token;
+
+        switch (token.type) {
+            case INTEGER:
+                return new Token(Type.INTEGER, Integer.parseInt((String) token.value), token);
+            case DECIMAL:
+                return new Token(Type.DECIMAL, Double.parseDouble((String) token.value), token);
+            case BOOLEAN:
+                return new Token(Type.BOOLEAN, Boolean.parseBoolean((String) token.value), token);
+            default:
+                return token;
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package io.github.wysohn.triggerreactor.core.script.interpreter;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Operand of {@link Opcode#CONCAT}. A chain of string concatenations like <code>"Hello " + name + "!"</code>
+ * (which is also what <code>"Hello ${name}!"</code> becomes), where the constant parts are joined in advance and
+ * the other parts are filled with the values on the stack.
+ */
+final class StringTemplate {
+    /**
+     * String for the constant parts; null for the values taken from the stack.
+     */
+    private final String[] parts;
+    private final int values;
+    private final int constantLength;
+
+    private StringTemplate(String[] parts) {
+        this.parts = parts;
+
+        int values = 0;
+        int constantLength = 0;
+        for (String part : parts) {
+            if (part == null) {
+                values++;
+            } else {
+                constantLength += part.length();
+            }
+        }
+        this.values = values;
+        this.constantLength = constantLength;
+    }
+
+    /**
+     * @return number of values this template needs.
+     */
+    int getValueCount() {
+        return values;
+    }
+
+    /**
+     * @param values the values in the order they appear in the template
+     * @return the String built
+     */
+    String build(Object[] values) {
+        StringBuilder builder = new StringBuilder(constantLength + 16 * values.length);
+        int value = 0;
+        for (String part : parts) {
+            if (part == null) {
+                builder.append(values[value++]);
+            } else {
+                builder.append(part);
+            }
+        }
+        return builder.toString();
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder();
+        for (String part : parts)
+            builder.append(part == null ? "{}" : part);
+        return builder.toString();
+    }
+
+    static final class Builder {
+        private final List<String> parts = new ArrayList<>();
+        private boolean lastConstant = false;
+
+        /**
+         * Add the constant part. It's joined with the constant right before, if any.
+         */
+        Builder constant(Object value) {
+            String string = String.valueOf(value);
+            if (lastConstant) {
+                parts.set(parts.size() - 1, parts.get(parts.size() - 1) + string);
+            } else {
+                parts.add(string);
+            }
+            lastConstant = true;
+            return this;
+        }
+
+        /**
+         * Add the part to be filled with a value on the stack.
+         */
+        Builder value() {
+            parts.add(null);
+            lastConstant = false;
+            return this;
+        }
+
+        StringTemplate build() {
+            return new StringTemplate(parts.toArray(new String[0]));
+        }
+    }
+}
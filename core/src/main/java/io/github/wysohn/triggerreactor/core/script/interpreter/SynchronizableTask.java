@@ -17,46 +17,73 @@
 package io.github.wysohn.triggerreactor.core.script.interpreter;
 
 import io.github.wysohn.triggerreactor.core.main.TriggerReactorCore;
+import io.github.wysohn.triggerreactor.tools.HashedWheelTimer;
 
 import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 public abstract class SynchronizableTask {
+    /**
+     * ticks as often as the server does
+     */
+    private static final HashedWheelTimer TIMER = new HashedWheelTimer("TRG Delayed Task Timer",
+            50L, TimeUnit.MILLISECONDS, 512);
+    private static final ExecutorService POOL = Executors.newCachedThreadPool(run -> {
+        Thread thread = new Thread(run, "TRG Delayed Task");
+        thread.setDaemon(true);
+        return thread;
+    });
 
     /**
-     * This will run in separate thread.
+     * The timer shared by the delayed tasks. The tasks given to the timer directly run in the timer thread, so
+     * they must finish quickly; use {@link #runTaskLater(Runnable, long)} for anything else.
+     *
+     * @return the timer
+     */
+    public static HashedWheelTimer getTimer() {
+        return TIMER;
+    }
+
+    /**
+     * This will run in separate thread. The delay is rounded up to the server tick (50ms).
      *
      * @param task
      * @param mills
      */
     public static void runTaskLater(Runnable task, long mills) {
-        new Thread(new Runnable() {
-            @Override
-            public void run() {
-                if (mills > 0) {
-                    try {
-                        Thread.sleep(mills);
-                    } catch (InterruptedException e) {
-                        e.printStackTrace();
-                    }
-                }
-
-                task.run();
-            }
-        }).start();
+        scheduleLater(task, mills);
     }
 
     /**
      * This will run in separate thread.
      *
      * @param task
-     * @param mills
      */
     public static void runTaskLater(Runnable task) {
         runTaskLater(task, 0L);
     }
 
+    /**
+     * Same as {@link #runTaskLater(Runnable, long)}, but the task can be cancelled.
+     *
+     * @param task
+     * @param mills
+     * @return handle to cancel the task
+     */
+    public static HashedWheelTimer.Timeout scheduleLater(Runnable task, long mills) {
+        return TIMER.schedule(() -> POOL.execute(task), mills, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Run the task in the server thread, along with the other tasks queued for the same tick.
+     *
+     * @param call
+     * @return
+     */
     public static <T> Future<T> runSyncTaskForFuture(Callable<T> call) {
-        return TriggerReactorCore.getInstance().callSyncMethod(call);
+        return TriggerReactorCore.getInstance().submitSync(call);
     }
 }
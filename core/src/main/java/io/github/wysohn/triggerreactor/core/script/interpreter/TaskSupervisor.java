@@ -1,6 +1,8 @@
 package io.github.wysohn.triggerreactor.core.script.interpreter;
 
 import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
 
 public interface TaskSupervisor {
@@ -22,4 +24,37 @@ public interface TaskSupervisor {
      * @param run the task to be done on separate thread
      */
     void submitAsync(Runnable run);
+
+    /**
+     * Same as {@link #submitSync(Callable)}, but for the callers who don't want to block the thread until the task
+     * is done. The default implementation waits for {@link #submitSync(Callable)} in a separate thread; override it
+     * if there is a better way.
+     *
+     * @param call the task to be done on server thread
+     * @return future completed when the task is done
+     */
+    default <T> CompletableFuture<T> queueSync(Callable<T> call) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        submitAsync(() -> {
+            try {
+                future.complete(submitSync(call).get());
+            } catch (ExecutionException ex) {
+                future.completeExceptionally(ex.getCause());
+            } catch (Throwable throwable) {
+                future.completeExceptionally(throwable);
+            }
+        });
+        return future;
+    }
+
+    /**
+     * Run the ASYNC block of a script in a separate thread. Unlike {@link #submitAsync(Runnable)}, the implementation
+     * may refuse to run it if too many blocks are already waiting, since scripts can start them in a loop.
+     *
+     * @param run the block
+     * @throws java.util.concurrent.RejectedExecutionException if the block can't be accepted
+     */
+    default void submitAsyncBlock(Runnable run) {
+        submitAsync(run);
+    }
 }
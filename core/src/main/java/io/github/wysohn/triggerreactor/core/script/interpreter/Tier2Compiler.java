@@ -0,0 +1,221 @@
+package io.github.wysohn.triggerreactor.core.script.interpreter;
+
+import io.github.wysohn.triggerreactor.core.script.Token;
+import io.github.wysohn.triggerreactor.core.script.Token.Type;
+import io.github.wysohn.triggerreactor.core.script.interpreter.FusedExpression.Expr;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * Second tier of the execution. Once a {@link Program} has run enough times, the runs of instructions that
+ * only compute numbers and booleans out of literals and local variables, such as <code>i = i + 1</code> or
+ * <code>WHILE count &lt; max</code>, are compiled into {@link FusedExpression}s. The types of the local variables
+ * are taken from what {@link Opcode#LOAD_LOCAL} has seen while the Program was interpreted; a variable that has been
+ * more than one type (or never been read) is not compiled.
+ * <p>
+ * Anything else stays as it is, and the original instructions are kept so that the Interpreter can fall back
+ * to them whenever the speculation turns out wrong. The compiled Program therefore behaves exactly the same as
+ * the original one.
+ */
+public final class Tier2Compiler {
+    /**
+     * number of activations before a Trigger compiles its Program with this compiler.
+     */
+    public static final int THRESHOLD = 1000;
+
+    private final Program program;
+
+    private Tier2Compiler(Program program) {
+        this.program = program;
+    }
+
+    /**
+     * @param program the Program to compile. It should have been interpreted a few times so that the types
+     *                of the variables are known.
+     * @return the new Program. The given Program is returned as is if there was nothing to compile.
+     * Once compiled, the same result is returned from then on.
+     */
+    public static Program compile(Program program) {
+        if (program.getTier() > 1)
+            return program;
+
+        Program compiled = program.compiled;
+        if (compiled != null)
+            return compiled;
+
+        //compiling twice at the same time is harmless; one of them is just thrown away
+        compiled = new Tier2Compiler(program).compile();
+        //nothing to compile yet, but the types may be known later
+        if (compiled != program)
+            program.compiled = compiled;
+        return compiled;
+    }
+
+    private Program compile() {
+        Instruction[] code = program.code.clone();
+
+        int fused = 0;
+        int pc = 0;
+        while (pc < code.length) {
+            int end = fuse(code, pc);
+            if (end > pc) {
+                fused++;
+                pc = end;
+            } else {
+                pc++;
+            }
+        }
+
+        if (fused == 0)
+            return program;
+
+        return new Program(program, code);
+    }
+
+    /**
+     * Try to replace the instructions starting from the given index with a FUSED instruction.
+     *
+     * @return index of the instruction after the replaced ones. -1 if nothing was replaced.
+     */
+    private int fuse(Instruction[] code, int start) {
+        Deque<Expr> stack = new ArrayDeque<>();
+
+        //end of the longest run that leaves exactly one value
+        int candidateEnd = -1;
+        Expr candidate = null;
+
+        int pc = start;
+        for (; pc < code.length; pc++) {
+            if (!step(code[pc], stack))
+                break;
+
+            if (stack.size() == 1) {
+                candidateEnd = pc + 1;
+                candidate = stack.peek();
+            }
+        }
+
+        if (candidate == null)
+            return -1;
+
+        Instruction first = code[start];
+        if (candidateEnd == pc && pc < code.length) {
+            Instruction next = code[pc];
+            if (next.opcode == Opcode.STORE_LOCAL) {
+                code[start] = fused(first, FusedExpression.STORE, candidate, next.arg, pc + 1, next);
+                return pc + 1;
+            } else if (next.opcode == Opcode.BRANCH_FALSE
+                    || (next.opcode == Opcode.WHILE_TEST && candidate.type == OperandStack.BOOLEAN)) {
+                code[start] = fused(first, FusedExpression.BRANCH, candidate, next.arg, pc + 1, next);
+                return pc + 1;
+            }
+        }
+
+        //a single value is not worth it
+        if (candidateEnd - start < 2)
+            return -1;
+
+        code[start] = fused(first, FusedExpression.PUSH, candidate, 0, candidateEnd, code[candidateEnd - 1]);
+        return candidateEnd;
+    }
+
+    private static Instruction fused(Instruction first, int kind, Expr expr, int arg, int end, Instruction last) {
+        FusedExpression fused = new FusedExpression(first, kind, expr, arg, end, last.token);
+        Instruction instruction = new Instruction(Opcode.FUSED, first.token, fused, end);
+        instruction.loop = first.loop;
+        return instruction;
+    }
+
+    /**
+     * Simulate the instruction with the expressions.
+     *
+     * @return false if the instruction can't be compiled.
+     */
+    private boolean step(Instruction inst, Deque<Expr> stack) {
+        switch (inst.opcode) {
+            case Opcode.PUSH_TOKEN:
+                Token token = (Token) inst.operand;
+                if (token.type == Type.INTEGER && token.value instanceof Integer) {
+                    stack.push(new FusedExpression.Constant(OperandStack.INTEGER, token.value));
+                } else if (token.type == Type.DECIMAL && token.value instanceof Double) {
+                    stack.push(new FusedExpression.Constant(OperandStack.DECIMAL, token.value));
+                } else if (token.type == Type.BOOLEAN && token.value instanceof Boolean) {
+                    stack.push(new FusedExpression.Constant(OperandStack.BOOLEAN, token.value));
+                } else {
+                    return false;
+                }
+                return true;
+            case Opcode.LOAD_LOCAL:
+                byte type = speculate(inst.seen);
+                if (type < 0)
+                    return false;
+                stack.push(new FusedExpression.Local(type, inst.arg));
+                return true;
+            case Opcode.ADD:
+            case Opcode.SUB:
+            case Opcode.MUL:
+            case Opcode.DIV:
+            case Opcode.MOD:
+                if (!numericPair(stack))
+                    return false;
+                Expr right = stack.pop();
+                stack.push(new FusedExpression.Arithmetic(inst.opcode, stack.pop(), right));
+                return true;
+            case Opcode.LT:
+            case Opcode.GT:
+            case Opcode.LE:
+            case Opcode.GE:
+                if (!numericPair(stack))
+                    return false;
+                right = stack.pop();
+                stack.push(new FusedExpression.Compare(inst.opcode, stack.pop(), right));
+                return true;
+            case Opcode.EQ:
+            case Opcode.NE:
+                if (stack.size() < 2)
+                    return false;
+                right = stack.pop();
+                stack.push(new FusedExpression.Equals(inst.opcode == Opcode.NE, stack.pop(), right));
+                return true;
+            case Opcode.NEG:
+                if (stack.isEmpty() || stack.peek().type == OperandStack.BOOLEAN)
+                    return false;
+                stack.push(new FusedExpression.Negate(stack.pop()));
+                return true;
+            case Opcode.NOT:
+                if (stack.isEmpty())
+                    return false;
+                stack.push(new FusedExpression.Not(stack.pop()));
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    private static boolean numericPair(Deque<Expr> stack) {
+        if (stack.size() < 2)
+            return false;
+
+        Expr right = stack.pop();
+        boolean numeric = right.type != OperandStack.BOOLEAN && stack.peek().type != OperandStack.BOOLEAN;
+        stack.push(right);
+        return numeric;
+    }
+
+    /**
+     * @return the type to expect, or -1 if the variable had more than one type or unknown.
+     */
+    private static byte speculate(byte seen) {
+        switch (seen) {
+            case Instruction.SEEN_INTEGER:
+                return OperandStack.INTEGER;
+            case Instruction.SEEN_DECIMAL:
+                return OperandStack.DECIMAL;
+            case Instruction.SEEN_BOOLEAN:
+                return OperandStack.BOOLEAN;
+            default:
+                return -1;
+        }
+    }
+}
@@ -16,18 +16,26 @@
  *******************************************************************************/
 package io.github.wysohn.triggerreactor.core.script.lexer;
 
+import io.github.wysohn.triggerreactor.core.script.StringPool;
 import io.github.wysohn.triggerreactor.core.script.Token;
 import io.github.wysohn.triggerreactor.core.script.Token.Type;
 import io.github.wysohn.triggerreactor.core.script.warning.StringInterpolationWarning;
 import io.github.wysohn.triggerreactor.core.script.warning.Warning;
 
-import java.io.*;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 
+/**
+ * Splits the script into {@link Token}s. The script String is scanned in place with a cursor, and the lines of it
+ * are only sliced out when a warning or an error needs them.
+ * <p>
+ * Identifiers and strings are kept in the {@link StringPool}.
+ */
 public class Lexer {
     private static final char[] OPERATORS;
 
@@ -36,9 +44,21 @@ public class Lexer {
         Arrays.sort(OPERATORS);
     }
 
-    private InputStream stream;
-    private PushbackReader reader;
-    private final String[] scriptLines;
+    private final String source;
+    /**
+     * index of the next character to read in the source.
+     */
+    private int pos = 0;
+    /**
+     * index of {@link #c} in the source; -1 if it was pushed back, or the end of stream is reached.
+     */
+    private int cPos = -1;
+    /**
+     * characters pushed back, to be read before the source. The last one is read first.
+     */
+    private char[] pushback = new char[16];
+    private int pushbackSize = 0;
+    private String[] scriptLines;
 
     private boolean eos = false;
     private char c = 0;
@@ -49,22 +69,25 @@ public class Lexer {
     private int row = 1;
     private int col = 1;
 
-    public Lexer(String str, Charset charset) throws IOException {
-        this.stream = new ByteArrayInputStream(str.getBytes(charset));
-        this.scriptLines = str.split("\n");
-        initInputStream();
+    public Lexer(String str) {
+        this.source = str;
+        read();//position to first element
     }
 
-    public Lexer(String str, String charset) throws IOException {
-        this.stream = new ByteArrayInputStream(str.getBytes(charset));
-        this.scriptLines = str.split("\n");
-        initInputStream();
+    /**
+     * The script is already a String, so the charset is not used.
+     */
+    public Lexer(String str, Charset charset) throws IOException {
+        this(str);
     }
 
-    private void initInputStream() throws IOException {
-        InputStreamReader isr = new InputStreamReader(stream, StandardCharsets.UTF_8);
-        reader = new PushbackReader(new BufferedReader(isr), 256);
-        read();//position to first element
+    /**
+     * The script is already a String, so the charset is only checked.
+     */
+    public Lexer(String str, String charset) throws IOException {
+        this(str);
+        if (!Charset.isSupported(charset))
+            throw new UnsupportedEncodingException(charset);
     }
 
     public int getRow() {
@@ -83,35 +106,79 @@ public class Lexer {
         return showWarnings;
     }
 
+    /**
+     * @deprecated splits the whole script. Use {@link #getScriptLine(int)} for a single line.
+     */
+    @Deprecated
     public String[] getScriptLines() {
+        if (scriptLines == null)
+            scriptLines = source.split("\n");
         return scriptLines;
     }
 
+    /**
+     * @param row the row, starting from 1
+     * @return the line of the script at the row, without the line break. Empty if there is no such line.
+     */
+    public String getScriptLine(int row) {
+        int start = 0;
+        for (int i = 1; i < row; i++) {
+            start = source.indexOf('\n', start) + 1;
+            if (start == 0)
+                return "";
+        }
+
+        int end = source.indexOf('\n', start);
+        return source.substring(start, end < 0 ? source.length() : end);
+    }
+
     /**
      * @return false if end of stream is reached.
-     * @throws IOException
      */
-    private boolean read() throws IOException {
-        int read = reader.read();
-        if (read == -1) {
+    private boolean read() {
+        char read;
+        int readPos;
+        if (pushbackSize > 0) {
+            read = pushback[--pushbackSize];
+            readPos = -1;
+        } else if (pos < source.length()) {
+            readPos = pos;
+            read = source.charAt(pos++);
+        } else {
             c = 0;
+            cPos = -1;
             eos = true;
             return false;
+        }
+
+        if (c == '\n') {
+            row++;
+            col = 0;
         } else {
-            if (c == '\n') {
-                row++;
-                col = 0;
-            } else {
-                col++;
-            }
-            c = (char) read;
-            return true;
+            col++;
         }
+        c = read;
+        cPos = readPos;
+        return true;
     }
 
-    private void unread() throws IOException {
+    private void unread() {
         col--;
-        reader.unread(c);
+        pushback(c);
+    }
+
+    private void pushback(char ch) {
+        if (pushbackSize == pushback.length)
+            pushback = Arrays.copyOf(pushback, pushbackSize * 2);
+        pushback[pushbackSize++] = ch;
+    }
+
+    /**
+     * Push back the characters so that they are read in the same order.
+     */
+    private void pushback(CharSequence chars) {
+        for (int i = chars.length() - 1; i >= 0; i--)
+            pushback(chars.charAt(i));
     }
 
     /**
@@ -190,26 +257,26 @@ public class Lexer {
     }
 
     private Token readNumber() throws IOException, LexerException {
-        StringBuilder builder = new StringBuilder();
+        Slice slice = new Slice();
 
         while (Character.isDigit(c)) {
-            builder.append(c);
+            slice.append(c);
             read();
         }
         if (c != '.') {
-            return new Token(Type.INTEGER, builder.toString(), row, col);
+            return new Token(Type.INTEGER, slice.toString(), row, col);
         } else {
-            builder.append('.');
+            slice.append('.');
             read();
             if (!Character.isDigit(c))
-                throw new LexerException("Invalid number [" + builder.toString() + "]", this);
+                throw new LexerException("Invalid number [" + slice + "]", this);
         }
         while (Character.isDigit(c)) {
-            builder.append(c);
+            slice.append(c);
             read();
         }
 
-        return new Token(Type.DECIMAL, builder.toString(), row, col);
+        return new Token(Type.DECIMAL, slice.toString(), row, col);
     }
 
     private Token readString() throws IOException, LexerException {
@@ -275,10 +342,10 @@ public class Lexer {
                     }
 
                     //push placeholder back into stream
-                    reader.unread(placeholder_builder.toString().toCharArray());
+                    pushback(placeholder_builder);
                     read();
 
-                    return new Token(Type.STRING, builder.toString(), row, col);
+                    return new Token(Type.STRING, StringPool.intern(builder.toString()), row, col);
                 } else {
                     builder.append(c);
                 }
@@ -289,9 +356,9 @@ public class Lexer {
             throw new LexerException("End of stream is reached before finding '\"'", this);
         read();
         if (warn)
-            warnings.add(new StringInterpolationWarning(row, scriptLines[row - 1]));
+            warnings.add(new StringInterpolationWarning(row, getScriptLine(row)));
 
-        return new Token(Type.STRING, builder.toString(), row, col);
+        return new Token(Type.STRING, StringPool.intern(builder.toString()), row, col);
     }
 
     private Token readMultilineString() throws IOException, LexerException {
@@ -305,7 +372,7 @@ public class Lexer {
             throw new LexerException("End of stream reached before finding '`'", this);
 
         read();
-        return new Token(Type.STRING, builder.toString(), row, col);
+        return new Token(Type.STRING, StringPool.intern(builder.toString()), row, col);
     }
 
     private void readEscapeChar(StringBuilder builder) throws LexerException {
@@ -376,22 +443,22 @@ public class Lexer {
     }
 
     private Token readId() throws IOException, LexerException {
-        StringBuilder builder = new StringBuilder();
+        Slice slice = new Slice();
 
         //first character cannot be digit, etc
         if (isIdCharacter(c)) {
-            builder.append(c);
+            slice.append(c);
             read();
         } else {
             throw new LexerException("Cannot use " + c + " as a first character", this);
         }
 
         while (isIdCharacter(c) || Character.isDigit(c)) {
-            builder.append(c);
+            slice.append(c);
             read();
         }
 
-        String id = builder.toString();
+        String id = StringPool.intern(slice.toString());
         if (id.equalsIgnoreCase("IMPORT")) {
             skipWhiteSpaces();
 
@@ -419,7 +486,7 @@ public class Lexer {
 
             return new Token(Type.IMPORT, classNameBuilder.toString(), row, col);
         } else {
-            return new Token(Type.ID, builder.toString(), row, col);
+            return new Token(Type.ID, id, row, col);
         }
     }
 
@@ -444,6 +511,38 @@ public class Lexer {
         showWarnings = w;
     }
 
+    /**
+     * The characters of a token being read. As long as they come straight from the source, they are just
+     * the range of the source, and nothing is copied until the token is made.
+     */
+    private final class Slice {
+        private final int start = cPos;
+        private int length = 0;
+        private StringBuilder builder;
+
+        /**
+         * @param ch the current character, {@link #c}
+         */
+        private void append(char ch) {
+            if (builder == null && start >= 0 && cPos == start + length && source.charAt(cPos) == ch) {
+                length++;
+                return;
+            }
+
+            if (builder == null) {
+                builder = new StringBuilder();
+                if (start >= 0)
+                    builder.append(source, start, start + length);
+            }
+            builder.append(ch);
+        }
+
+        @Override
+        public String toString() {
+            return builder == null ? source.substring(start, start + length) : builder.toString();
+        }
+    }
+
     public static void main(String[] ar) throws IOException, LexerException {
         Charset charset = StandardCharsets.UTF_8;
         String text = "";
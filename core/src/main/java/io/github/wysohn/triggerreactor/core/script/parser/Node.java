@@ -24,6 +24,7 @@ import java.util.List;
 public class Node {
     private final Token token;
     private final List<Node> children = new ArrayList<>();
+    private Kind kind;
 
     public Node(Token token) {
         super();
@@ -38,6 +39,47 @@ public class Node {
         return children;
     }
 
+    /**
+     * Get the kind of this Node. Keywords like IF or WHILE are ordinary ID Tokens, so the kind is
+     * resolved by comparing the Token value only once and then cached here.
+     *
+     * @return the kind of this Node
+     */
+    public Kind getKind() {
+        if (kind == null)
+            kind = Kind.resolve(this);
+        return kind;
+    }
+
+    public enum Kind {
+        IF, ELSEIF, WHILE, FOR, IS,
+        /**
+         * anything else. Should be handled by the type of the Token.
+         */
+        OTHER,
+        ;
+
+        private static Kind resolve(Node node) {
+            if (node.token.type != Token.Type.ID || !(node.token.value instanceof String))
+                return OTHER;
+
+            switch ((String) node.token.value) {
+                case "IF":
+                    return IF;
+                case "ELSEIF":
+                    return ELSEIF;
+                case "WHILE":
+                    return WHILE;
+                case "FOR":
+                    return FOR;
+                case "IS":
+                    return node.children.size() == 2 ? IS : OTHER;
+                default:
+                    return OTHER;
+            }
+        }
+    }
+
     @Override
     public String toString() {
         String str = token.toString();
@@ -67,7 +67,7 @@ public class Parser {
 
                 if (deprecationSupervisors.stream()
                         .anyMatch(deprecationSupervisor -> deprecationSupervisor.isDeprecated(type, value))) {
-                    this.warnings.add(new DeprecationWarning(row, value, lexer.getScriptLines()[row - 1]));
+                    this.warnings.add(new DeprecationWarning(row, value, lexer.getScriptLine(row)));
                 }
             }
         } catch (LexerException lex) {
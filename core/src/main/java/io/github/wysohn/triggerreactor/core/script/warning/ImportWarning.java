@@ -0,0 +1,22 @@
+package io.github.wysohn.triggerreactor.core.script.warning;
+
+public class ImportWarning extends Warning {
+    private int row;
+    private String className;
+
+    /**
+     * @param row       the row of the IMPORT
+     * @param className the class that could not be found
+     */
+    public ImportWarning(int row, String className) {
+        this.row = row;
+        this.className = className;
+    }
+
+    @Override
+    public String[] getMessageLines() {
+        return new String[]{"Unknown class imported at line " + row + ": ",
+                className,
+                "the script will fail when it reaches this line"};
+    }
+}
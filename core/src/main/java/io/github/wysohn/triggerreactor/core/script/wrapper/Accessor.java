@@ -16,22 +16,35 @@
  *******************************************************************************/
 package io.github.wysohn.triggerreactor.core.script.wrapper;
 
-import io.github.wysohn.triggerreactor.tools.ReflectionUtil;
-
 import java.lang.reflect.Array;
 
+/**
+ * Field of an object or element of an array, which can be read or assigned later.
+ */
 public class Accessor {
     public final Object targetParent;
     public final Object target;
 
+    private final FieldAccessor field;
+
     public Accessor(Object targetParent, String targetName) {
+        this(targetParent, new FieldAccessor(targetName));
+    }
+
+    /**
+     * @param targetParent the object which has the field
+     * @param field        the field accessor, which may be shared by many Accessors.
+     */
+    public Accessor(Object targetParent, FieldAccessor field) {
         this.targetParent = targetParent;
-        this.target = targetName;
+        this.target = field.getName();
+        this.field = field;
     }
 
     public Accessor(Object array, Integer index) {
         this.targetParent = array;
         this.target = index;
+        this.field = null;
     }
 
     public Object getTargetParent() {
@@ -39,30 +52,72 @@ public class Accessor {
     }
 
     public Object evaluateTarget() throws NoSuchFieldException, IllegalArgumentException {
-        if (targetParent.getClass().isArray()) {
-            if (target instanceof Integer) {
-                try {
-                    return Array.get(targetParent, (Integer) target);
-                } catch (ArrayIndexOutOfBoundsException e) {
-                    throw new IllegalArgumentException(target + " is out of bound for array! Size: " + Array.getLength(targetParent));
-                }
-            } else if (target instanceof String && ((String) target).equals("length")) {
-                return Array.getLength(targetParent);
-            } else {
-                throw new IllegalArgumentException(target.getClass() + " is not a valid type for array operation.");
-            }
-        } else if (targetParent instanceof Class) {
-            return ReflectionUtil.getField((Class<?>) targetParent, (Object) null, (String) target);
+        if (targetParent.getClass().isArray() && target instanceof Integer) {
+            return getElement(targetParent, (Integer) target);
+        } else if (field != null) {
+            return field.get(targetParent);
         } else {
-            return ReflectionUtil.getField(targetParent, (String) target);
+            throw new IllegalArgumentException(target.getClass() + " is not a valid type for array operation.");
         }
     }
 
     public void setTargetValue(Object value) throws NoSuchFieldException, IllegalArgumentException {
         if (targetParent.getClass().isArray()) {
-            Array.set(targetParent, (Integer) target, value);
+            setElement(targetParent, (Integer) target, value);
+        } else {
+            field.set(targetParent, value);
+        }
+    }
+
+    /**
+     * Same as {@link Array#get(Object, int)}, but the common array types are handled without reflection.
+     *
+     * @throws IllegalArgumentException if index is out of bound.
+     */
+    public static Object getElement(Object array, int index) {
+        try {
+            if (array instanceof Object[]) {
+                return ((Object[]) array)[index];
+            } else if (array instanceof int[]) {
+                return ((int[]) array)[index];
+            } else if (array instanceof double[]) {
+                return ((double[]) array)[index];
+            } else if (array instanceof long[]) {
+                return ((long[]) array)[index];
+            } else if (array instanceof byte[]) {
+                return ((byte[]) array)[index];
+            } else if (array instanceof boolean[]) {
+                return ((boolean[]) array)[index];
+            } else {
+                return Array.get(array, index);
+            }
+        } catch (ArrayIndexOutOfBoundsException e) {
+            throw new IllegalArgumentException(index + " is out of bound for array! Size: " + Array.getLength(array));
+        }
+    }
+
+    /**
+     * Same as {@link Array#set(Object, int, Object)}, but the common array types are handled without reflection
+     * if no conversion is needed.
+     */
+    public static void setElement(Object array, int index, Object value) {
+        if (array instanceof Object[]) {
+            Object[] objects = (Object[]) array;
+            if (value != null && !objects.getClass().getComponentType().isInstance(value))
+                throw new IllegalArgumentException("array element type mismatch");
+            objects[index] = value;
+        } else if (array instanceof int[] && value instanceof Integer) {
+            ((int[]) array)[index] = (Integer) value;
+        } else if (array instanceof double[] && value instanceof Double) {
+            ((double[]) array)[index] = (Double) value;
+        } else if (array instanceof long[] && value instanceof Long) {
+            ((long[]) array)[index] = (Long) value;
+        } else if (array instanceof byte[] && value instanceof Byte) {
+            ((byte[]) array)[index] = (Byte) value;
+        } else if (array instanceof boolean[] && value instanceof Boolean) {
+            ((boolean[]) array)[index] = (Boolean) value;
         } else {
-            ReflectionUtil.setField(targetParent, (String) target, value);
+            Array.set(array, index, value);
         }
     }
 
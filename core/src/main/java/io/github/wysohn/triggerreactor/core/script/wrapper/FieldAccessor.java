@@ -0,0 +1,159 @@
+package io.github.wysohn.triggerreactor.core.script.wrapper;
+
+import io.github.wysohn.triggerreactor.tools.MemberCache;
+import io.github.wysohn.triggerreactor.tools.ReflectionUtil;
+import org.apache.commons.lang3.ClassUtils;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Array;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+
+/**
+ * Reads and writes a field with the given name, such as player.health, using the getter/setter {@link MethodHandle}s.
+ * <p>
+ * The handles are resolved once per (class, field) and shared by everyone. On top of that, each instance remembers
+ * the last class it was used with, so a field access in the script which always sees the same class doesn't have to
+ * look up anything at all. The field is searched the same way {@link ReflectionUtil#getField(Object, String)} does.
+ */
+public final class FieldAccessor {
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+    private static final MethodType GETTER_TYPE = MethodType.methodType(Object.class, Object.class);
+    private static final MethodType SETTER_TYPE = MethodType.methodType(void.class, Object.class, Object.class);
+    private static final MemberCache HANDLES = new MemberCache();
+
+    private final String name;
+    private volatile Handles last;
+
+    public FieldAccessor(String name) {
+        this.name = name;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @param parent the instance. If it's a Class, the static field of the class is used instead.
+     * @return value of the field. For arrays, 'length' is the only field available.
+     */
+    public Object get(Object parent) throws NoSuchFieldException, IllegalArgumentException {
+        if (parent.getClass().isArray()) {
+            if (name.equals("length"))
+                return Array.getLength(parent);
+            throw new IllegalArgumentException(name.getClass() + " is not a valid type for array operation.");
+        }
+
+        Class<?> clazz = parent instanceof Class ? (Class<?>) parent : parent.getClass();
+        Handles handles = handles(clazz);
+        if (handles.getter == null)
+            return parent instanceof Class
+                    ? ReflectionUtil.getField(clazz, null, name)
+                    : ReflectionUtil.getField(parent, name);
+
+        try {
+            return (Object) handles.getter.invokeExact(parent);
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable throwable) {
+            throw new IllegalArgumentException(throwable);
+        }
+    }
+
+    /**
+     * @param parent the instance
+     * @param value  the new value. Converted the same way as {@link Field#set(Object, Object)}.
+     */
+    public void set(Object parent, Object value) throws NoSuchFieldException, IllegalArgumentException {
+        Handles handles = handles(parent.getClass());
+        if (handles.setter == null || !handles.accepts(value)) {
+            //let reflection do the widening conversion or produce the error
+            ReflectionUtil.setField(parent, name, value);
+            return;
+        }
+
+        try {
+            handles.setter.invokeExact(parent, value);
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable throwable) {
+            throw new IllegalArgumentException(throwable);
+        }
+    }
+
+    private Handles handles(Class<?> clazz) throws NoSuchFieldException {
+        Handles handles = last;
+        if (handles != null && handles.owner == clazz)
+            return handles;
+
+        handles = HANDLES.get(clazz, name, () -> resolve(clazz, name));
+        if (handles == null)
+            throw new NoSuchFieldException(name);
+
+        last = handles;
+        return handles;
+    }
+
+    private static Handles resolve(Class<?> clazz, String name) {
+        Field field;
+        try {
+            field = clazz.getDeclaredField(name);
+            field.setAccessible(true);
+        } catch (NoSuchFieldException e) {
+            return null;
+        }
+
+        boolean isStatic = Modifier.isStatic(field.getModifiers());
+
+        MethodHandle getter;
+        try {
+            getter = LOOKUP.unreflectGetter(field);
+            if (isStatic)
+                getter = MethodHandles.dropArguments(getter, 0, Object.class);
+            getter = getter.asType(GETTER_TYPE);
+        } catch (IllegalAccessException | RuntimeException e) {
+            getter = null;
+        }
+
+        MethodHandle setter;
+        try {
+            setter = LOOKUP.unreflectSetter(field);
+            if (isStatic)
+                setter = MethodHandles.dropArguments(setter, 0, Object.class);
+            setter = setter.asType(SETTER_TYPE);
+        } catch (IllegalAccessException | RuntimeException e) {
+            //final fields
+            setter = null;
+        }
+
+        return new Handles(clazz, field.getType(), getter, setter);
+    }
+
+    private static final class Handles {
+        private final Class<?> owner;
+        /**
+         * type of the field. Wrapper type if it's primitive.
+         */
+        private final Class<?> valueType;
+        private final boolean primitive;
+        private final MethodHandle getter;
+        private final MethodHandle setter;
+
+        private Handles(Class<?> owner, Class<?> fieldType, MethodHandle getter, MethodHandle setter) {
+            this.owner = owner;
+            this.primitive = fieldType.isPrimitive();
+            this.valueType = primitive ? ClassUtils.primitiveToWrapper(fieldType) : fieldType;
+            this.getter = getter;
+            this.setter = setter;
+        }
+
+        /**
+         * @return true if the value can be set without any conversion.
+         */
+        private boolean accepts(Object value) {
+            return value == null ? !primitive : valueType.isInstance(value);
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package io.github.wysohn.triggerreactor.tools;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs the tasks with a fixed number of threads, and refuses new tasks once too many of them are waiting, so a
+ * script starting tasks in a loop can't pile up threads or memory without limit.
+ * <p>
+ * Both limits can be changed while running.
+ */
+public final class BoundedExecutor implements Executor {
+    private final ThreadPoolExecutor pool;
+    private final AtomicInteger queued = new AtomicInteger();
+    private final AtomicInteger peakQueued = new AtomicInteger();
+    private final AtomicLong rejected = new AtomicLong();
+
+    private volatile int capacity;
+
+    /**
+     * @param name     prefix of the thread names
+     * @param threads  number of threads
+     * @param capacity number of tasks that can wait for a thread
+     */
+    public BoundedExecutor(String name, int threads, int capacity) {
+        AtomicInteger count = new AtomicInteger();
+        this.pool = new ThreadPoolExecutor(threads, threads, 60L, TimeUnit.SECONDS, new LinkedBlockingQueue<>(),
+                run -> {
+                    Thread thread = new Thread(run, name + " #" + count.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        this.pool.allowCoreThreadTimeOut(true);
+        setLimits(threads, capacity);
+    }
+
+    /**
+     * @param threads  number of threads
+     * @param capacity number of tasks that can wait for a thread
+     */
+    public void setLimits(int threads, int capacity) {
+        if (threads <= 0)
+            throw new IllegalArgumentException("threads must be positive: " + threads);
+        if (capacity < 0)
+            throw new IllegalArgumentException("capacity can't be negative: " + capacity);
+
+        if (threads > pool.getMaximumPoolSize()) {
+            pool.setMaximumPoolSize(threads);
+            pool.setCorePoolSize(threads);
+        } else {
+            pool.setCorePoolSize(threads);
+            pool.setMaximumPoolSize(threads);
+        }
+        this.capacity = capacity;
+    }
+
+    /**
+     * @throws RejectedExecutionException if there are already as many tasks waiting as the capacity, or
+     *                                    this executor is shut down.
+     */
+    @Override
+    public void execute(Runnable command) {
+        int waiting = queued.incrementAndGet();
+        if (waiting > capacity + pool.getMaximumPoolSize()) {
+            queued.decrementAndGet();
+            rejected.incrementAndGet();
+            throw new RejectedExecutionException(waiting - 1 + " tasks are already waiting.");
+        }
+        peakQueued.accumulateAndGet(waiting, Math::max);
+
+        try {
+            pool.execute(() -> {
+                queued.decrementAndGet();
+                command.run();
+            });
+        } catch (RejectedExecutionException ex) {
+            queued.decrementAndGet();
+            rejected.incrementAndGet();
+            throw ex;
+        }
+    }
+
+    /**
+     * @return number of the tasks waiting for a thread, or about to start.
+     */
+    public int getQueued() {
+        return queued.get();
+    }
+
+    /**
+     * @return the highest number of waiting tasks so far.
+     */
+    public int getPeakQueued() {
+        return peakQueued.get();
+    }
+
+    /**
+     * @return number of the threads running a task right now.
+     */
+    public int getActive() {
+        return pool.getActiveCount();
+    }
+
+    /**
+     * @return number of the tasks finished so far. Approximate.
+     */
+    public long getCompleted() {
+        return pool.getCompletedTaskCount();
+    }
+
+    /**
+     * @return number of the tasks refused so far.
+     */
+    public long getRejected() {
+        return rejected.get();
+    }
+
+    public void shutdown() {
+        pool.shutdown();
+    }
+
+    @Override
+    public String toString() {
+        return "active: " + getActive() + "/" + pool.getMaximumPoolSize()
+                + ", queued: " + getQueued() + "/" + capacity
+                + " (peak " + getPeakQueued() + ")"
+                + ", completed: " + getCompleted()
+                + ", rejected: " + getRejected();
+    }
+}
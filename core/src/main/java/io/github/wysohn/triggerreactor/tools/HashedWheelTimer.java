@@ -0,0 +1,312 @@
+package io.github.wysohn.triggerreactor.tools;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs the tasks after the given delay using a single thread.
+ * <p>
+ * The time is divided into ticks, and the tasks are put into the slot of the wheel for the tick when they are due,
+ * so adding or cancelling a task is O(1) regardless of how many tasks are waiting. The thread wakes up once per tick
+ * and runs only the tasks in the current slot. The tasks therefore run at the end of the tick they are due, never
+ * earlier.
+ * <p>
+ * The tasks run in the timer thread, so they should finish quickly. Hand anything else over to another thread.
+ */
+public final class HashedWheelTimer {
+    private final String name;
+    private final long tickNanos;
+    private final Bucket[] wheel;
+    private final int mask;
+
+    private final Queue<Timeout> added = new ConcurrentLinkedQueue<>();
+    private final Queue<Timeout> cancelled = new ConcurrentLinkedQueue<>();
+
+    private final AtomicInteger state = new AtomicInteger(INIT);
+    private static final int INIT = 0;
+    private static final int STARTED = 1;
+    private static final int STOPPED = 2;
+
+    private final AtomicLong pending = new AtomicLong();
+    private final AtomicLong expired = new AtomicLong();
+    private final AtomicLong overdue = new AtomicLong();
+
+    private volatile long startTime;
+    private Thread thread;
+    /**
+     * number of ticks passed. Only accessed by the timer thread.
+     */
+    private long tick;
+
+    /**
+     * @param name      name of the thread
+     * @param tick      duration of a tick
+     * @param unit      unit of the tick
+     * @param wheelSize number of slots. Rounded up to the power of two.
+     */
+    public HashedWheelTimer(String name, long tick, TimeUnit unit, int wheelSize) {
+        if (tick <= 0)
+            throw new IllegalArgumentException("tick must be positive: " + tick);
+        if (wheelSize <= 0 || wheelSize > (1 << 30))
+            throw new IllegalArgumentException("wheelSize out of range: " + wheelSize);
+
+        this.name = name;
+        this.tickNanos = unit.toNanos(tick);
+
+        int size = Integer.highestOneBit(wheelSize);
+        if (size < wheelSize)
+            size <<= 1;
+        this.wheel = new Bucket[size];
+        for (int i = 0; i < size; i++)
+            wheel[i] = new Bucket();
+        this.mask = size - 1;
+    }
+
+    /**
+     * Run the task after the delay. The thread of this timer starts with the first task.
+     *
+     * @param task  the task
+     * @param delay the delay. Zero or negative delay runs the task at the next tick.
+     * @param unit  unit of the delay
+     * @return handle of the task, which can be used to cancel it.
+     */
+    public Timeout schedule(Runnable task, long delay, TimeUnit unit) {
+        if (task == null)
+            throw new NullPointerException("task");
+
+        start();
+        if (state.get() == STOPPED)
+            throw new IllegalStateException(name + " is already stopped.");
+
+        long deadline = System.nanoTime() + unit.toNanos(Math.max(0L, delay)) - startTime;
+        Timeout timeout = new Timeout(this, task, deadline);
+        pending.incrementAndGet();
+        added.add(timeout);
+        return timeout;
+    }
+
+    /**
+     * Stop the thread. The tasks not run yet are discarded.
+     */
+    public void stop() {
+        if (state.getAndSet(STOPPED) == STARTED)
+            thread.interrupt();
+    }
+
+    /**
+     * @return number of the tasks which are waiting to be run.
+     */
+    public long getPending() {
+        return pending.get();
+    }
+
+    /**
+     * @return number of the tasks run so far.
+     */
+    public long getExpired() {
+        return expired.get();
+    }
+
+    /**
+     * @return number of the tasks which ran more than a tick later than they were supposed to. Increases when
+     * the timer thread can't keep up, usually because a task took too long.
+     */
+    public long getOverdue() {
+        return overdue.get();
+    }
+
+    private void start() {
+        if (state.get() != INIT)
+            return;
+
+        synchronized (this) {
+            if (state.get() != INIT)
+                return;
+
+            startTime = System.nanoTime();
+            thread = new Thread(this::work, name);
+            thread.setDaemon(true);
+            state.set(STARTED);
+            thread.start();
+        }
+    }
+
+    private void work() {
+        while (state.get() == STARTED) {
+            long deadline = waitForNextTick();
+            if (deadline < 0)
+                break;
+
+            removeCancelled();
+            transferAdded();
+            wheel[(int) (tick & mask)].expire(deadline);
+            tick++;
+        }
+    }
+
+    /**
+     * @return time of the current tick relative to the start time; -1 if stopped while sleeping.
+     */
+    private long waitForNextTick() {
+        long deadline = tickNanos * (tick + 1);
+        while (true) {
+            long current = System.nanoTime() - startTime;
+            long sleepMillis = (deadline - current + 999_999) / 1_000_000;
+            if (sleepMillis <= 0)
+                return current;
+
+            try {
+                Thread.sleep(sleepMillis);
+            } catch (InterruptedException e) {
+                if (state.get() == STOPPED)
+                    return -1;
+            }
+        }
+    }
+
+    private void transferAdded() {
+        Timeout timeout;
+        while ((timeout = added.poll()) != null) {
+            if (timeout.state.get() == Timeout.CANCELLED)
+                continue;
+
+            long calculated = (timeout.deadline + tickNanos - 1) / tickNanos;
+            timeout.remainingRounds = (calculated - tick) / wheel.length;
+
+            //already late; run it in this tick
+            long ticks = Math.max(calculated, tick);
+            wheel[(int) (ticks & mask)].add(timeout);
+        }
+    }
+
+    private void removeCancelled() {
+        Timeout timeout;
+        while ((timeout = cancelled.poll()) != null) {
+            if (timeout.bucket != null)
+                timeout.bucket.remove(timeout);
+        }
+    }
+
+    /**
+     * Handle of the task scheduled.
+     */
+    public static final class Timeout {
+        private static final int WAITING = 0;
+        private static final int CANCELLED = 1;
+        private static final int EXPIRED = 2;
+
+        private final HashedWheelTimer timer;
+        private final Runnable task;
+        /**
+         * nanoseconds since the start time of the timer.
+         */
+        private final long deadline;
+        private final AtomicInteger state = new AtomicInteger(WAITING);
+
+        //the fields below are only accessed by the timer thread
+        private long remainingRounds;
+        private Bucket bucket;
+        private Timeout prev;
+        private Timeout next;
+
+        private Timeout(HashedWheelTimer timer, Runnable task, long deadline) {
+            this.timer = timer;
+            this.task = task;
+            this.deadline = deadline;
+        }
+
+        /**
+         * Cancel the task.
+         *
+         * @return true if cancelled; false if it already ran or was cancelled.
+         */
+        public boolean cancel() {
+            if (!state.compareAndSet(WAITING, CANCELLED))
+                return false;
+
+            timer.pending.decrementAndGet();
+            timer.cancelled.add(this);
+            return true;
+        }
+
+        public boolean isCancelled() {
+            return state.get() == CANCELLED;
+        }
+
+        public boolean isExpired() {
+            return state.get() == EXPIRED;
+        }
+
+        private void expire(long now) {
+            if (!state.compareAndSet(WAITING, EXPIRED))
+                return;
+
+            timer.pending.decrementAndGet();
+            timer.expired.incrementAndGet();
+            if (now - deadline > timer.tickNanos)
+                timer.overdue.incrementAndGet();
+
+            try {
+                task.run();
+            } catch (Throwable throwable) {
+                throwable.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * Doubly linked list of the Timeouts, so any of them can be removed in O(1).
+     */
+    private static final class Bucket {
+        private Timeout head;
+        private Timeout tail;
+
+        private void add(Timeout timeout) {
+            timeout.bucket = this;
+            if (head == null) {
+                head = tail = timeout;
+            } else {
+                tail.next = timeout;
+                timeout.prev = tail;
+                tail = timeout;
+            }
+        }
+
+        private void expire(long deadline) {
+            Timeout timeout = head;
+            while (timeout != null) {
+                Timeout next = timeout.next;
+                if (timeout.remainingRounds <= 0) {
+                    remove(timeout);
+                    timeout.expire(deadline);
+                } else if (timeout.isCancelled()) {
+                    remove(timeout);
+                } else {
+                    timeout.remainingRounds--;
+                }
+                timeout = next;
+            }
+        }
+
+        private void remove(Timeout timeout) {
+            if (timeout.bucket != this)
+                return;
+
+            if (timeout.prev != null)
+                timeout.prev.next = timeout.next;
+            if (timeout.next != null)
+                timeout.next.prev = timeout.prev;
+            if (timeout == head)
+                head = timeout.next;
+            if (timeout == tail)
+                tail = timeout.prev;
+
+            timeout.prev = null;
+            timeout.next = null;
+            timeout.bucket = null;
+        }
+    }
+}
@@ -0,0 +1,152 @@
+package io.github.wysohn.triggerreactor.tools;
+
+import java.lang.ref.WeakReference;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Concurrent cache of reflectively resolved members (methods, constructors, fields), keyed by
+ * (class, member name, argument types).
+ * <p>
+ * Entries are stored with {@link ClassValue}, so they are gone along with the class itself; unloading
+ * a plugin does not leave its classes behind in here. Argument types are also referenced weakly unless they are
+ * from the bootstrap class loader. Failed resolutions are remembered too, so looking for a member that does not exist
+ * does not scan the class every time.
+ */
+public final class MemberCache {
+    private static final Object NOT_FOUND = new Object();
+    /**
+     * marker for null argument; void can never be the class of an argument.
+     */
+    private static final Class<?> NULL_TYPE = void.class;
+    private static final Object[] NO_ARGS = new Object[0];
+
+    private final ClassValue<Map<Signature, Object>> members = new ClassValue<Map<Signature, Object>>() {
+        @Override
+        protected Map<Signature, Object> computeValue(Class<?> type) {
+            return new ConcurrentHashMap<>();
+        }
+    };
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    /**
+     * Get the member from the cache, or resolve it if not cached yet.
+     *
+     * @param clazz    the class which owns the member
+     * @param name     name of the member
+     * @param args     the arguments. Only their classes are used as the key.
+     * @param resolver resolves the member. Returns null if not found.
+     * @return the member; null if resolver couldn't find one.
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T get(Class<?> clazz, String name, Object[] args, Supplier<T> resolver) {
+        Map<Signature, Object> map = members.get(clazz);
+
+        Signature probe = new Signature(name, args);
+        Object member = map.get(probe);
+        if (member != null) {
+            hits.increment();
+            return member == NOT_FOUND ? null : (T) member;
+        }
+
+        misses.increment();
+        T resolved = resolver.get();
+        map.put(probe.weak(), resolved == null ? NOT_FOUND : resolved);
+        return resolved;
+    }
+
+    /**
+     * Same as {@link #get(Class, String, Object[], Supplier)} but for members without arguments like fields.
+     */
+    public <T> T get(Class<?> clazz, String name, Supplier<T> resolver) {
+        return get(clazz, name, NO_ARGS, resolver);
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public void resetCounters() {
+        hits.reset();
+        misses.reset();
+    }
+
+    private static final class Signature {
+        private final String name;
+        /**
+         * either Class or WeakReference of Class
+         */
+        private final Object[] types;
+        private final int hash;
+
+        private Signature(String name, Object[] args) {
+            this.name = name;
+            this.types = new Object[args.length];
+
+            int hash = name.hashCode();
+            for (int i = 0; i < args.length; i++) {
+                Class<?> type = args[i] == null ? NULL_TYPE : args[i].getClass();
+                types[i] = type;
+                hash = 31 * hash + System.identityHashCode(type);
+            }
+            this.hash = hash;
+        }
+
+        private Signature(String name, Object[] types, int hash) {
+            this.name = name;
+            this.types = types;
+            this.hash = hash;
+        }
+
+        /**
+         * @return copy of this Signature which doesn't keep the classes alive.
+         */
+        private Signature weak() {
+            Object[] weakTypes = new Object[types.length];
+            for (int i = 0; i < types.length; i++) {
+                Class<?> type = (Class<?>) types[i];
+                weakTypes[i] = type.getClassLoader() == null ? type : new WeakReference<Class<?>>(type);
+            }
+            return new Signature(name, weakTypes, hash);
+        }
+
+        private Class<?> type(int index) {
+            Object type = types[index];
+            return type instanceof WeakReference ? (Class<?>) ((WeakReference<?>) type).get() : (Class<?>) type;
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj)
+                return true;
+            if (!(obj instanceof Signature))
+                return false;
+
+            Signature other = (Signature) obj;
+            if (hash != other.hash || types.length != other.types.length || !name.equals(other.name))
+                return false;
+
+            for (int i = 0; i < types.length; i++) {
+                Class<?> type = type(i);
+                //collected class never matches again
+                if (type == null || type != other.type(i))
+                    return false;
+            }
+
+            return true;
+        }
+    }
+}
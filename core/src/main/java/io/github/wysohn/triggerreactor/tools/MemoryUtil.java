@@ -0,0 +1,44 @@
+package io.github.wysohn.triggerreactor.tools;
+
+/**
+ * Rough sizes of objects on the heap, assuming a 64 bit JVM with compressed references, which is what the
+ * servers run on almost always. Only meant to compare which triggers take more memory than the others.
+ */
+public final class MemoryUtil {
+    public static final int HEADER = 12;
+    public static final int REFERENCE = 4;
+
+    private MemoryUtil() {
+    }
+
+    /**
+     * @param fieldBytes sum of the sizes of the fields
+     * @return size of an object having such fields.
+     */
+    public static long objectSize(long fieldBytes) {
+        return align(HEADER + fieldBytes);
+    }
+
+    /**
+     * @param length      length of the array
+     * @param elementSize size of each element; {@link #REFERENCE} for the arrays of objects.
+     * @return size of the array itself, not counting the objects in it.
+     */
+    public static long arraySize(int length, int elementSize) {
+        return align(HEADER + 4 + (long) length * elementSize);
+    }
+
+    /**
+     * @return size of the String, including its characters.
+     */
+    public static long stringSize(String str) {
+        if (str == null)
+            return 0;
+
+        return objectSize(REFERENCE + 4 + 4) + arraySize(str.length(), 2);
+    }
+
+    private static long align(long size) {
+        return (size + 7) & ~7L;
+    }
+}
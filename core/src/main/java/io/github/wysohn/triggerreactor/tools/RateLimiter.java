@@ -0,0 +1,57 @@
+package io.github.wysohn.triggerreactor.tools;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Allows only a limited number of events in each period of time, and counts the ones denied.
+ */
+public final class RateLimiter {
+    private final int permits;
+    private final long periodNanos;
+
+    private long periodStart;
+    private int used;
+    private long denied;
+
+    /**
+     * @param permits number of events allowed in each period
+     * @param period  length of the period
+     * @param unit    unit of the period
+     */
+    public RateLimiter(int permits, long period, TimeUnit unit) {
+        if (permits <= 0)
+            throw new IllegalArgumentException("permits must be positive: " + permits);
+
+        this.permits = permits;
+        this.periodNanos = unit.toNanos(period);
+        this.periodStart = System.nanoTime() - periodNanos;
+    }
+
+    /**
+     * @return true if the event is allowed; false if too many in the current period.
+     */
+    public synchronized boolean tryAcquire() {
+        long now = System.nanoTime();
+        if (now - periodStart >= periodNanos) {
+            periodStart = now;
+            used = 0;
+        }
+
+        if (used < permits) {
+            used++;
+            return true;
+        }
+
+        denied++;
+        return false;
+    }
+
+    /**
+     * @return number of the events denied since the last call of this method.
+     */
+    public synchronized long takeDenied() {
+        long denied = this.denied;
+        this.denied = 0L;
+        return denied;
+    }
+}
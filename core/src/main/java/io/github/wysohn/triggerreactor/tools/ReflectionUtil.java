@@ -29,11 +29,56 @@ import java.util.zip.ZipException;
 import java.util.zip.ZipFile;
 
 public class ReflectionUtil {
+    private static final MemberCache METHODS = new MemberCache();
+    private static final MemberCache CONSTRUCTORS = new MemberCache();
+    private static final MemberCache NEW_INSTANCE_TARGETS = new MemberCache();
+    private static final MemberCache FIELDS = new MemberCache();
+
+    /**
+     * @return number of times members were found in the resolution cache.
+     */
+    public static long getCacheHits() {
+        return METHODS.getHits() + CONSTRUCTORS.getHits() + NEW_INSTANCE_TARGETS.getHits() + FIELDS.getHits();
+    }
+
+    /**
+     * @return number of times members had to be searched since they were not in the resolution cache.
+     */
+    public static long getCacheMisses() {
+        return METHODS.getMisses() + CONSTRUCTORS.getMisses() + NEW_INSTANCE_TARGETS.getMisses() + FIELDS.getMisses();
+    }
+
+    public static void resetCacheCounters() {
+        METHODS.resetCounters();
+        CONSTRUCTORS.resetCounters();
+        NEW_INSTANCE_TARGETS.resetCounters();
+        FIELDS.resetCounters();
+    }
+
+    /**
+     * Get the declared field of the class, which is already accessible. Cached.
+     */
+    private static Field findField(Class<?> clazz, String fieldName) throws NoSuchFieldException {
+        Field found = FIELDS.get(clazz, fieldName, () -> {
+            try {
+                Field field = clazz.getDeclaredField(fieldName);
+                field.setAccessible(true);
+                return field;
+            } catch (NoSuchFieldException e) {
+                return null;
+            }
+        });
+
+        if (found == null)
+            throw new NoSuchFieldException(fieldName);
+
+        return found;
+    }
+
     public static void setField(Object obj, String fieldName, Object value) throws NoSuchFieldException, IllegalArgumentException {
         Class<?> clazz = obj.getClass();
 
-        Field field = clazz.getDeclaredField(fieldName);
-        field.setAccessible(true);
+        Field field = findField(clazz, fieldName);
 
         try {
             field.set(obj, value);
@@ -88,8 +133,7 @@ public class ReflectionUtil {
     public static Object getField(Object obj, String fieldName) throws NoSuchFieldException, IllegalArgumentException {
         Class<?> clazz = obj.getClass();
 
-        Field field = clazz.getDeclaredField(fieldName);
-        field.setAccessible(true);
+        Field field = findField(clazz, fieldName);
 
         try {
             return field.get(obj);
@@ -101,8 +145,7 @@ public class ReflectionUtil {
     }
 
     public static Object getField(Class<?> clazz, Object obj, String fieldName) throws NoSuchFieldException, IllegalArgumentException {
-        Field field = clazz.getDeclaredField(fieldName);
-        field.setAccessible(true);
+        Field field = findField(clazz, fieldName);
 
         try {
             return field.get(obj);
@@ -113,102 +156,142 @@ public class ReflectionUtil {
         return null;
     }
 
-    @SuppressWarnings({"unchecked"})
-    public static Object invokeMethod(Class<?> clazz, Object obj, String methodName, Object... args)
-            throws NoSuchMethodException, IllegalArgumentException, InvocationTargetException, IllegalAccessException {
-        try {
-            List<Method> validMethods = new ArrayList<>();
+    /**
+     * Find the most specific public method of the class that can be invoked with the given arguments.
+     * This is the same method {@link #invokeMethod(Class, Object, String, Object...)} would invoke.
+     * The result is cached for the same class, method name, and argument types.
+     *
+     * @param clazz      the class to search
+     * @param methodName name of the method
+     * @param args       the arguments
+     * @return the method found; null if nothing matches.
+     */
+    public static Method findMethod(Class<?> clazz, String methodName, Object... args) {
+        return METHODS.get(clazz, methodName, args, () -> selectExecutable(clazz.getMethods(), methodName, args));
+    }
+
+    /**
+     * Find the most specific public constructor of the class that can be invoked with the given arguments, using
+     * the same rule as {@link #findMethod(Class, String, Object...)}. The result is cached.
+     *
+     * @param clazz the class to search
+     * @param args  the arguments
+     * @return the constructor found; null if nothing matches.
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> Constructor<T> findConstructor(Class<T> clazz, Object... args) {
+        return CONSTRUCTORS.get(clazz, "<init>", args,
+                () -> (Constructor<T>) selectExecutable(clazz.getConstructors(), null, args));
+    }
+
+    /**
+     * @param name name of the method. null for constructors.
+     */
+    private static <T extends Executable> T selectExecutable(T[] candidates, String name, Object[] args) {
+        List<T> validMethods = new ArrayList<>();
 
-            for (Method method : clazz.getMethods()) {
-                Class<?>[] parameterTypes = null;
+        for (T method : candidates) {
+            Class<?>[] parameterTypes = null;
 
-                if (!method.getName().equals(methodName)) {
+            if (name != null && !method.getName().equals(name)) {
+                continue;
+            }
+
+            parameterTypes = method.getParameterTypes();
+            if (method.isVarArgs()) {
+                if (method.isVarArgs() && (parameterTypes.length - args.length >= 2)) {
+                    parameterTypes = null;
                     continue;
                 }
-
-                parameterTypes = method.getParameterTypes();
-                if (method.isVarArgs()) {
-                    if (method.isVarArgs() && (parameterTypes.length - args.length >= 2)) {
-                        parameterTypes = null;
-                        continue;
-                    }
-                } else {
-                    if (parameterTypes.length != args.length) {
-                        parameterTypes = null;
-                        continue;
-                    }
+            } else {
+                if (parameterTypes.length != args.length) {
+                    parameterTypes = null;
+                    continue;
                 }
+            }
 
-                if (method.isVarArgs()) {
-                    boolean matches = false;
+            if (method.isVarArgs()) {
+                boolean matches = false;
 
-                    // check non vararg part
-                    for (int i = 0; i < parameterTypes.length - 1; i++) {
-                        matches = checkMatch(parameterTypes[i], args[i]);
-                        if (!matches)
-                            break;
-                    }
+                // check non vararg part
+                for (int i = 0; i < parameterTypes.length - 1; i++) {
+                    matches = checkMatch(parameterTypes[i], args[i]);
+                    if (!matches)
+                        break;
+                }
 
-                    // check rest
-                    for (int i = parameterTypes.length - 1; i < args.length; i++) {
-                        Class<?> arrayType = parameterTypes[parameterTypes.length - 1].getComponentType();
+                // check rest
+                for (int i = parameterTypes.length - 1; i < args.length; i++) {
+                    Class<?> arrayType = parameterTypes[parameterTypes.length - 1].getComponentType();
 
-                        matches = checkMatch(arrayType, args[i]);
-                        if (!matches)
-                            break;
-                    }
+                    matches = checkMatch(arrayType, args[i]);
+                    if (!matches)
+                        break;
+                }
 
-                    if (matches) {
-                        validMethods.add(method);
-                    }
-                } else {
-                    boolean matches = true;
+                if (matches) {
+                    validMethods.add(method);
+                }
+            } else {
+                boolean matches = true;
 
-                    for (int i = 0; i < parameterTypes.length; i++) {
-                        matches = checkMatch(parameterTypes[i], args[i]);
-                        if (!matches)
-                            break;
-                    }
+                for (int i = 0; i < parameterTypes.length; i++) {
+                    matches = checkMatch(parameterTypes[i], args[i]);
+                    if (!matches)
+                        break;
+                }
 
-                    if (matches) {
-                        validMethods.add(method);
-                    }
+                if (matches) {
+                    validMethods.add(method);
                 }
             }
+        }
 
-            if (!validMethods.isEmpty()) {
-                Method method = validMethods.get(0);
-                for (int i = 1; i < validMethods.size(); i++) {
-                    Method targetMethod = validMethods.get(i);
+        if (validMethods.isEmpty())
+            return null;
 
-                    Class<?>[] params = method.getParameterTypes();
-                    Class<?>[] otherParams = targetMethod.getParameterTypes();
+        T method = validMethods.get(0);
+        for (int i = 1; i < validMethods.size(); i++) {
+            T targetMethod = validMethods.get(i);
 
-                    if (method.isVarArgs() && targetMethod.isVarArgs()) {
-                        for (int j = 0; j < params.length; j++) {
-                            if (params[j].isAssignableFrom(otherParams[j])) {
-                                method = targetMethod;
-                                break;
-                            }
-                        }
-                    } else if (method.isVarArgs()) {
-                        //usually, non-vararg is more specific method. So we use that
+            Class<?>[] params = method.getParameterTypes();
+            Class<?>[] otherParams = targetMethod.getParameterTypes();
+
+            if (method.isVarArgs() && targetMethod.isVarArgs()) {
+                for (int j = 0; j < params.length; j++) {
+                    if (params[j].isAssignableFrom(otherParams[j])) {
                         method = targetMethod;
-                    } else if (targetMethod.isVarArgs()) {
-                        //do nothing
-                    } else {
-                        for (int j = 0; j < params.length; j++) {
-                            if (otherParams[j].isEnum()) { // enum will be handled later
-                                method = targetMethod;
-                                break;
-                            } else if (ClassUtils.isAssignable(otherParams[j], params[j], true)) { //narrow down to find the most specific method
-                                method = targetMethod;
-                                break;
-                            }
-                        }
+                        break;
                     }
                 }
+            } else if (method.isVarArgs()) {
+                //usually, non-vararg is more specific method. So we use that
+                method = targetMethod;
+            } else if (targetMethod.isVarArgs()) {
+                //do nothing
+            } else {
+                for (int j = 0; j < params.length; j++) {
+                    if (otherParams[j].isEnum()) { // enum will be handled later
+                        method = targetMethod;
+                        break;
+                    } else if (ClassUtils.isAssignable(otherParams[j], params[j], true)) { //narrow down to find the most specific method
+                        method = targetMethod;
+                        break;
+                    }
+                }
+            }
+        }
+
+        return method;
+    }
+
+    @SuppressWarnings({"unchecked"})
+    public static Object invokeMethod(Class<?> clazz, Object obj, String methodName, Object... args)
+            throws NoSuchMethodException, IllegalArgumentException, InvocationTargetException, IllegalAccessException {
+        try {
+            Method method = findMethod(clazz, methodName, args);
 
+            if (method != null) {
                 method.setAccessible(true);
 
                 for (int i = 0; i < args.length; i++) {
@@ -445,70 +528,12 @@ public class ReflectionUtil {
         if (args.length < 1) {
             return clazz.newInstance();
         } else {
-            Class<?>[] paramTypes = new Class[args.length];
-            for (int i = 0; i < args.length; i++) {
-                paramTypes[i] = args[i] == null ? null : args[i].getClass();
-            }
-
-            List<Constructor<?>> possibleTarget = new ArrayList<>();
-            out:
-            for (Constructor<?> con : clazz.getConstructors()) {
-                if (con.isVarArgs()) {
-                    for (int i = 0; i < paramTypes.length; i++) {
-                        Class<?> paramType = getParamType(con, i);
-
-                        if (!checkMatch(paramType, args[i]))
-                            continue out;
-                    }
-
-                    possibleTarget.add(con);
-                } else {
-                    if (con.getParameterCount() != paramTypes.length)
-                        continue;
-
-                    for (int i = 0; i < paramTypes.length; i++) {
-                        Class<?> paramType = paramTypes[i];
-
-                        if (!checkMatch(paramType, args[i]))
-                            continue out;
-                    }
-
-                    possibleTarget.add(con);
-                }
-            }
-
-            if (possibleTarget.isEmpty())
+            Object[] originalArgs = args;
+            Constructor<?> target = NEW_INSTANCE_TARGETS.get(clazz, "<init>", args,
+                    () -> selectConstructor(clazz, originalArgs));
+            if (target == null)
                 return null;
 
-            Constructor<?> target = possibleTarget.get(0);
-            if (possibleTarget.size() > 1) {
-                for (Constructor<?> con : possibleTarget.subList(1, possibleTarget.size())) {
-                    if (con.isVarArgs()) {
-                        for (int i = 0; i < paramTypes.length; i++) {
-                            Class<?> paramsOther = getParamType(con, i);
-                            Class<?> params = getParamType(target, i);
-
-                            if (ClassUtils.isAssignable(paramsOther, params, true)) {
-                                target = con;
-                            }
-                        }
-                    } else {
-                        if (con.getParameterCount() != paramTypes.length)
-                            continue;
-
-                        for (int i = 0; i < paramTypes.length; i++) {
-                            Class<?> paramsOther = getParamType(con, i);
-                            Class<?> params = getParamType(target, i);
-
-                            if (ClassUtils.isAssignable(paramsOther, params, true)) {
-                                target = con;
-                            }
-                        }
-                        break;
-                    }
-                }
-            }
-
             if (target.isVarArgs()) {
                 Class<?>[] parameterTypes = target.getParameterTypes();
 
@@ -538,6 +563,74 @@ public class ReflectionUtil {
         }
     }
 
+    private static Constructor<?> selectConstructor(Class<?> clazz, Object[] args) {
+        Class<?>[] paramTypes = new Class[args.length];
+        for (int i = 0; i < args.length; i++) {
+            paramTypes[i] = args[i] == null ? null : args[i].getClass();
+        }
+
+        List<Constructor<?>> possibleTarget = new ArrayList<>();
+        out:
+        for (Constructor<?> con : clazz.getConstructors()) {
+            if (con.isVarArgs()) {
+                for (int i = 0; i < paramTypes.length; i++) {
+                    Class<?> paramType = getParamType(con, i);
+
+                    if (!checkMatch(paramType, args[i]))
+                        continue out;
+                }
+
+                possibleTarget.add(con);
+            } else {
+                if (con.getParameterCount() != paramTypes.length)
+                    continue;
+
+                for (int i = 0; i < paramTypes.length; i++) {
+                    Class<?> paramType = paramTypes[i];
+
+                    if (!checkMatch(paramType, args[i]))
+                        continue out;
+                }
+
+                possibleTarget.add(con);
+            }
+        }
+
+        if (possibleTarget.isEmpty())
+            return null;
+
+        Constructor<?> target = possibleTarget.get(0);
+        if (possibleTarget.size() > 1) {
+            for (Constructor<?> con : possibleTarget.subList(1, possibleTarget.size())) {
+                if (con.isVarArgs()) {
+                    for (int i = 0; i < paramTypes.length; i++) {
+                        Class<?> paramsOther = getParamType(con, i);
+                        Class<?> params = getParamType(target, i);
+
+                        if (ClassUtils.isAssignable(paramsOther, params, true)) {
+                            target = con;
+                        }
+                    }
+                } else {
+                    if (con.getParameterCount() != paramTypes.length)
+                        continue;
+
+                    for (int i = 0; i < paramTypes.length; i++) {
+                        Class<?> paramsOther = getParamType(con, i);
+                        Class<?> params = getParamType(target, i);
+
+                        if (ClassUtils.isAssignable(paramsOther, params, true)) {
+                            target = con;
+                        }
+                    }
+                    break;
+                }
+            }
+        }
+
+        return target;
+    }
+
     private static Class<?> getParamType(Executable exec, int index) {
         Class<?>[] paramTypes = exec.getParameterTypes();
 
@@ -0,0 +1,188 @@
+package io.github.wysohn.triggerreactor.tools;
+
+import java.lang.ref.WeakReference;
+import java.util.AbstractMap;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Map of named things, such as Executors and Placeholders, which are looked up by the scripts.
+ * <p>
+ * Keys are case insensitive like {@link CaseInsensitiveStringMap}, but the lookup is a single hash lookup instead of
+ * scanning all the keys. Every modification increases the {@link #getVersion() version} and notifies the
+ * {@link Listener}s, so whoever remembers the result of a lookup can tell when it has to look it up again.
+ * <p>
+ * This is safe to read from multiple threads while it's being modified.
+ *
+ * @param <V> type of the value
+ */
+public class Registry<V> extends AbstractMap<String, V> {
+    private final Map<String, V> values = new ConcurrentHashMap<>();
+    /**
+     * upper case key -> value
+     */
+    private final Map<String, V> index = new ConcurrentHashMap<>();
+    private final CopyOnWriteArrayList<WeakReference<Listener<V>>> listeners = new CopyOnWriteArrayList<>();
+
+    private volatile long version = 0L;
+
+    /**
+     * @return a number which changes every time this Registry is modified.
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Add the listener to be notified after each modification. Only a weak reference is kept, so the caller must
+     * keep the listener as long as it wants to be notified.
+     */
+    public void addListener(Listener<V> listener) {
+        listeners.add(new WeakReference<>(listener));
+    }
+
+    public void removeListener(Listener<V> listener) {
+        listeners.removeIf(ref -> {
+            Listener<V> l = ref.get();
+            return l == null || l == listener;
+        });
+    }
+
+    @Override
+    public V get(Object key) {
+        if (!(key instanceof String))
+            return null;
+
+        V value = values.get(key);
+        if (value != null)
+            return value;
+
+        return index.get(normalize((String) key));
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return get(key) != null;
+    }
+
+    @Override
+    public V put(String key, V value) {
+        V previous;
+        synchronized (this) {
+            previous = removeIgnoreCase(key);
+            values.put(key, value);
+            index.put(normalize(key), value);
+            version++;
+        }
+        fireChanged();
+        return previous;
+    }
+
+    @Override
+    public void putAll(Map<? extends String, ? extends V> map) {
+        if (map.isEmpty())
+            return;
+
+        synchronized (this) {
+            for (Entry<? extends String, ? extends V> entry : map.entrySet()) {
+                removeIgnoreCase(entry.getKey());
+                values.put(entry.getKey(), entry.getValue());
+                index.put(normalize(entry.getKey()), entry.getValue());
+            }
+            version++;
+        }
+        fireChanged();
+    }
+
+    @Override
+    public V remove(Object key) {
+        if (!(key instanceof String))
+            return null;
+
+        V previous;
+        synchronized (this) {
+            previous = removeIgnoreCase((String) key);
+            if (previous == null)
+                return null;
+            version++;
+        }
+        fireChanged();
+        return previous;
+    }
+
+    @Override
+    public void clear() {
+        synchronized (this) {
+            values.clear();
+            index.clear();
+            version++;
+        }
+        fireChanged();
+    }
+
+    /**
+     * Replace everything in this Registry with the given entries. Unlike {@link #clear()} followed by
+     * {@link #putAll(Map)}, nobody can see the Registry being empty in the middle, and the listeners are notified
+     * only once.
+     */
+    public void replaceWith(Map<String, ? extends V> map) {
+        synchronized (this) {
+            values.keySet().retainAll(map.keySet());
+            values.putAll(map);
+
+            index.clear();
+            for (Entry<String, ? extends V> entry : map.entrySet())
+                index.put(normalize(entry.getKey()), entry.getValue());
+            version++;
+        }
+        fireChanged();
+    }
+
+    @Override
+    public Set<Entry<String, V>> entrySet() {
+        return Collections.unmodifiableMap(values).entrySet();
+    }
+
+    @Override
+    public int size() {
+        return values.size();
+    }
+
+    private V removeIgnoreCase(String key) {
+        V previous = index.remove(normalize(key));
+        if (previous != null)
+            values.keySet().removeIf(key::equalsIgnoreCase);
+        return previous;
+    }
+
+    private void fireChanged() {
+        Iterator<WeakReference<Listener<V>>> iter = listeners.iterator();
+        while (iter.hasNext()) {
+            WeakReference<Listener<V>> ref = iter.next();
+            Listener<V> listener = ref.get();
+            if (listener == null) {
+                listeners.remove(ref);
+            } else {
+                listener.onChange(this);
+            }
+        }
+    }
+
+    private static String normalize(String key) {
+        return key.toUpperCase(Locale.ROOT);
+    }
+
+    public interface Listener<V> {
+        /**
+         * Called after the Registry is modified.
+         *
+         * @param registry the Registry modified
+         */
+        void onChange(Registry<V> registry);
+    }
+}
@@ -0,0 +1,93 @@
+package io.github.wysohn.triggerreactor.tools;
+
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+/**
+ * Queue of the tasks to be done in the server thread.
+ * <p>
+ * Instead of scheduling each task separately, the tasks are collected here and run together in a single
+ * scheduled task at the next tick, no matter how many of them there are. The time spent in a tick is limited by
+ * the budget, and whatever is left continues at the tick after.
+ */
+public final class TickQueue {
+    private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+    private final Consumer<Runnable> scheduler;
+
+    private volatile long budgetNanos;
+
+    /**
+     * @param scheduler runs the given Runnable in the server thread at the next tick
+     * @param budget    time allowed to run the tasks in a tick. At least one task runs each tick regardless.
+     * @param unit      unit of the budget
+     */
+    public TickQueue(Consumer<Runnable> scheduler, long budget, TimeUnit unit) {
+        this.scheduler = scheduler;
+        setBudget(budget, unit);
+    }
+
+    public void setBudget(long budget, TimeUnit unit) {
+        this.budgetNanos = unit.toNanos(budget);
+    }
+
+    /**
+     * @return number of the tasks waiting.
+     */
+    public int size() {
+        return tasks.size();
+    }
+
+    /**
+     * @param call the task
+     * @return the Future completed in the server thread when the task is done. Attach the continuation to it
+     * rather than waiting for it, so the thread can do something else in the meantime.
+     */
+    public <T> CompletableFuture<T> submit(Callable<T> call) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        tasks.add(() -> {
+            try {
+                future.complete(call.call());
+            } catch (Throwable throwable) {
+                future.completeExceptionally(throwable);
+            }
+        });
+        scheduleDrain();
+        return future;
+    }
+
+    /**
+     * Run the tasks until the queue is empty or the budget is used up. Must be called in the server thread.
+     *
+     * @return number of the tasks done.
+     */
+    public int drain() {
+        //tasks added from now on need another drain unless this one picks them up
+        scheduled.set(false);
+
+        long deadline = System.nanoTime() + budgetNanos;
+        int count = 0;
+        Runnable task;
+        while ((task = tasks.poll()) != null) {
+            task.run();
+            count++;
+
+            if (System.nanoTime() - deadline >= 0)
+                break;
+        }
+
+        if (!tasks.isEmpty())
+            scheduleDrain();
+        return count;
+    }
+
+    private void scheduleDrain() {
+        if (scheduled.compareAndSet(false, true))
+            scheduler.accept(this::drain);
+    }
+}
@@ -0,0 +1,72 @@
+package io.github.wysohn.triggerreactor.core.manager.trigger;
+
+import io.github.wysohn.triggerreactor.core.script.Token;
+import io.github.wysohn.triggerreactor.core.script.lexer.Lexer;
+import io.github.wysohn.triggerreactor.core.script.parser.Node;
+import io.github.wysohn.triggerreactor.core.script.parser.Parser;
+import io.github.wysohn.triggerreactor.core.script.warning.Warning;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+public class TestScriptCache {
+    private static void assertTree(Node expected, Node actual) {
+        Token e = expected.getToken();
+        Token a = actual.getToken();
+        Assert.assertEquals(e.type, a.type);
+        Assert.assertEquals(e.value, a.value);
+        Assert.assertEquals(e.row, a.row);
+        Assert.assertEquals(e.col, a.col);
+
+        Assert.assertEquals(expected.getChildren().size(), actual.getChildren().size());
+        for (int i = 0; i < expected.getChildren().size(); i++)
+            assertTree(expected.getChildren().get(i), actual.getChildren().get(i));
+    }
+
+    @Test
+    public void testRoundTrip() throws Exception {
+        File folder = Files.createTempDirectory("trg-cache").toFile();
+        String script = "x = 1 + 2.5;\n"
+                + "IF x > 3 && !false\n"
+                + "    #MESSAGE \"x is \" + x + `\nmulti`\n"
+                + "ENDIF\n"
+                + "y = null;\n"
+                //longer than writeUTF() can take
+                + "z = \"" + new String(new char[70000]).replace('\0', 'a') + "\";";
+
+        Parser parser = new Parser(new Lexer(script));
+        Node root = parser.parse(true);
+        Warning warning = new Warning() {
+            @Override
+            public String[] getMessageLines() {
+                return new String[]{"first", "second"};
+            }
+        };
+
+        ScriptCache cache = new ScriptCache(folder, "1.0");
+        Assert.assertNull(cache.get(script));
+        cache.put(script, root, Arrays.asList(warning));
+
+        ScriptCache.Entry entry = cache.get(script);
+        Assert.assertNotNull(entry);
+        assertTree(root, entry.getRoot());
+        Assert.assertEquals(1, entry.getWarnings().size());
+        Assert.assertTrue(warning.equals(entry.getWarnings().get(0)));
+
+        //different script, or different version
+        Assert.assertNull(cache.get(script + " "));
+        Assert.assertNull(new ScriptCache(folder, "1.1").get(script));
+
+        //broken file is just a miss
+        for (File file : folder.listFiles()) {
+            try (FileOutputStream out = new FileOutputStream(file)) {
+                out.write(new byte[]{1, 2, 3});
+            }
+        }
+        Assert.assertNull(cache.get(script));
+    }
+}
@@ -24,7 +24,10 @@ import io.github.wysohn.triggerreactor.core.script.lexer.LexerException;
 import io.github.wysohn.triggerreactor.core.script.parser.Node;
 import io.github.wysohn.triggerreactor.core.script.parser.Parser;
 import io.github.wysohn.triggerreactor.core.script.parser.ParserException;
+import io.github.wysohn.triggerreactor.core.script.warning.ImportWarning;
 import io.github.wysohn.triggerreactor.core.script.wrapper.SelfReference;
+import io.github.wysohn.triggerreactor.tools.ReflectionUtil;
+import io.github.wysohn.triggerreactor.tools.Registry;
 import io.github.wysohn.triggerreactor.tools.timings.Timings;
 import org.junit.Assert;
 import org.junit.Test;
@@ -38,6 +41,7 @@ import java.nio.charset.StandardCharsets;
 import java.util.*;
 import java.util.Map.Entry;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class TestInterpreter {
     @Test
@@ -2085,6 +2089,769 @@ public class TestInterpreter {
         Assert.assertTrue(set.contains("test"));
     }
 
+    @Test
+    public void testLocalVariablesMapView() throws Exception {
+        Charset charset = StandardCharsets.UTF_8;
+        String text = ""
+                + "count = 0;"
+                + "FOR i = 0:5;"
+                + "    count = count + i;"
+                + "ENDFOR;"
+                + "#CHANGE;"
+                + "result = changed + count;"
+                + "removed = null;";
+        Lexer lexer = new Lexer(text, charset);
+        Parser parser = new Parser(lexer);
+        Node root = parser.parse();
+        Map<String, Executor> executorMap = new HashMap<>();
+        executorMap.put("CHANGE", new Executor() {
+
+            @Override
+            protected Integer execute(Timings.Timing timing, boolean sync, Map<String, Object> vars, Object context,
+                                      Object... args) throws Exception {
+                Assert.assertEquals(10, vars.get("count"));
+                Assert.assertEquals(4, vars.get("i"));
+                Assert.assertEquals("untouched", vars.get("other"));
+
+                vars.put("changed", 100);
+                vars.remove("removed");
+                return null;
+            }
+
+        });
+
+        Map<String, Object> vars = new HashMap<>();
+        vars.put("other", "untouched");
+        vars.put("removed", "value");
+
+        Interpreter interpreter = new Interpreter(root);
+        interpreter.setExecutorMap(executorMap);
+        interpreter.setVars(vars);
+
+        interpreter.startWithContext(null);
+
+        Assert.assertEquals(110, vars.get("result"));
+        Assert.assertEquals(110, interpreter.getVars().get("result"));
+        Assert.assertEquals("untouched", vars.get("other"));
+        Assert.assertTrue(vars.containsKey("removed"));
+        Assert.assertNull(vars.get("removed"));
+    }
+
+    @Test
+    public void testInlineCache() throws Exception {
+        Charset charset = StandardCharsets.UTF_8;
+        String text = ""
+                + "IMPORT java.lang.String;"
+                + "FOR obj = objs;"
+                + "    #TEST obj.getTest();"
+                + "ENDFOR;"
+                + "FOR i = 0:3;"
+                + "    #FORMAT String.join(\"-\", \"a\" + i, \"b\");"
+                + "ENDFOR;"
+                + "FOR name = names;"
+                + "    #ENUM test.testEnumMethod(name);"
+                + "ENDFOR;";
+        Lexer lexer = new Lexer(text, charset);
+        Parser parser = new Parser(lexer);
+        Node root = parser.parse();
+
+        List<Object> tests = new ArrayList<>();
+        List<Object> formats = new ArrayList<>();
+        List<Object> enums = new ArrayList<>();
+        Map<String, Executor> executorMap = new HashMap<>();
+        executorMap.put("TEST", new Executor() {
+            @Override
+            protected Integer execute(Timings.Timing timing, boolean sync, Map<String, Object> vars, Object context,
+                                      Object... args) throws Exception {
+                tests.add(args[0]);
+                return null;
+            }
+        });
+        executorMap.put("FORMAT", new Executor() {
+            @Override
+            protected Integer execute(Timings.Timing timing, boolean sync, Map<String, Object> vars, Object context,
+                                      Object... args) throws Exception {
+                formats.add(args[0]);
+                return null;
+            }
+        });
+        executorMap.put("ENUM", new Executor() {
+            @Override
+            protected Integer execute(Timings.Timing timing, boolean sync, Map<String, Object> vars, Object context,
+                                      Object... args) throws Exception {
+                enums.add(args[0]);
+                return null;
+            }
+        });
+
+        TheTest theTest = new TheTest();
+        InTest inTest = new InTest();
+
+        Interpreter interpreter = new Interpreter(root);
+        interpreter.setExecutorMap(executorMap);
+        interpreter.getVars().put("objs", Arrays.asList(theTest, inTest, theTest, inTest));
+        interpreter.getVars().put("names", Arrays.asList("IMTEST", "other", "IMTEST"));
+        interpreter.getVars().put("test", theTest);
+
+        interpreter.startWithContext(null);
+
+        Assert.assertEquals(Arrays.asList(theTest.in, inTest.in, theTest.in, inTest.in), tests);
+        Assert.assertEquals(Arrays.asList("a0-b", "a1-b", "a2-b"), formats);
+
+        Object expected = ReflectionUtil.invokeMethod(new TheTest(), "testEnumMethod", "IMTEST");
+        Assert.assertEquals(Arrays.asList(expected, "other", expected), enums);
+    }
+
+    @Test
+    public void testFieldAccessor() throws Exception {
+        Charset charset = StandardCharsets.UTF_8;
+        String text = ""
+                + "IMPORT " + TheTest.class.getName() + ";"
+                + "FOR obj = objs;"
+                + "    obj.health = obj.health + 1;"
+                + "ENDFOR;"
+                + "test.in.health = 3;"
+                + "nums[1] = nums[0] * 2;"
+                + "#TEST TheTest.staticField, nums[1], nums.length, bytes[0], test.in.in.health;";
+        Lexer lexer = new Lexer(text, charset);
+        Parser parser = new Parser(lexer);
+        Node root = parser.parse();
+
+        List<Object> result = new ArrayList<>();
+        Map<String, Executor> executorMap = new HashMap<>();
+        executorMap.put("TEST", new Executor() {
+            @Override
+            protected Integer execute(Timings.Timing timing, boolean sync, Map<String, Object> vars, Object context,
+                                      Object... args) throws Exception {
+                result.addAll(Arrays.asList(args));
+                return null;
+            }
+        });
+
+        InTest inTest1 = new InTest();
+        InTest2 inTest2 = new InTest2();
+        TheTest theTest = new TheTest();
+        int[] nums = new int[]{21, 0};
+        byte[] bytes = new byte[]{7};
+
+        Interpreter interpreter = new Interpreter(root);
+        interpreter.setExecutorMap(executorMap);
+        interpreter.getVars().put("objs", Arrays.asList(inTest1, inTest2, inTest1));
+        interpreter.getVars().put("test", theTest);
+        interpreter.getVars().put("nums", nums);
+        interpreter.getVars().put("bytes", bytes);
+
+        interpreter.startWithContext(null);
+
+        Assert.assertEquals(2.82, inTest1.health, 0.0001);
+        Assert.assertEquals(6.23, inTest2.health, 0.0001);
+        //Integer widened to double
+        Assert.assertEquals(3.0, theTest.in.health, 0.0);
+        Assert.assertEquals(42, nums[1]);
+        Assert.assertEquals(Arrays.asList("staticField", 42, 2, (byte) 7, 5.23), result);
+    }
+
+    @Test
+    public void testSharedExecutorMap() throws Exception {
+        Charset charset = StandardCharsets.UTF_8;
+        String text = ""
+                + "FOR i = 0:3;"
+                + "    #test i;"
+                + "    IF i == 1;"
+                + "        #STOP;"
+                + "    ENDIF;"
+                + "ENDFOR;";
+        Lexer lexer = new Lexer(text, charset);
+        Parser parser = new Parser(lexer);
+        Program program = new ScriptCompiler(parser.parse()).compile();
+
+        List<Object> result = new ArrayList<>();
+        Map<String, Executor> executorMap = new HashMap<>();
+
+        Interpreter first = new Interpreter(program);
+        first.setExecutorMap(executorMap);
+
+        //not copied, so the executors added later are visible as well
+        executorMap.put("TEST", new Executor() {
+            @Override
+            protected Integer execute(Timings.Timing timing, boolean sync, Map<String, Object> vars, Object context,
+                                      Object... args) throws Exception {
+                result.add(args[0]);
+                return null;
+            }
+        });
+        first.startWithContext(null);
+
+        //the frame used above is reused
+        Interpreter second = new Interpreter(program);
+        second.setExecutorMap(executorMap);
+        second.startWithContext(null);
+
+        Assert.assertEquals(Arrays.asList(0, 1, 0, 1), result);
+        Assert.assertTrue(second.getExecutorMap().containsKey("stop"));
+        Assert.assertFalse(executorMap.containsKey("STOP"));
+    }
+
+    @Test
+    public void testLinkedExecutor() throws Exception {
+        Charset charset = StandardCharsets.UTF_8;
+        String text = "#Test $Value;";
+        Lexer lexer = new Lexer(text, charset);
+        Parser parser = new Parser(lexer);
+        Program program = new ScriptCompiler(parser.parse()).compile();
+
+        List<Object> result = new ArrayList<>();
+        Registry<Executor> executors = new Registry<>();
+        Registry<Placeholder> placeholders = new Registry<>();
+        executors.put("TEST", new Executor() {
+            @Override
+            protected Integer execute(Timings.Timing timing, boolean sync, Map<String, Object> vars, Object context,
+                                      Object... args) throws Exception {
+                result.add(args[0]);
+                return null;
+            }
+        });
+        placeholders.put("value", new Placeholder() {
+            @Override
+            public Object parse(Timings.Timing timing, Object context, Map<String, Object> vars,
+                                Object... args) throws Exception {
+                return "first";
+            }
+        });
+        program.link(executors, placeholders);
+
+        Interpreter interpreter = new Interpreter(program);
+        interpreter.setExecutorMap(executors);
+        interpreter.setPlaceholderMap(placeholders);
+        interpreter.startWithContext(null);
+
+        //reloaded
+        Map<String, Placeholder> reloaded = new HashMap<>();
+        reloaded.put("value", new Placeholder() {
+            @Override
+            public Object parse(Timings.Timing timing, Object context, Map<String, Object> vars,
+                                Object... args) throws Exception {
+                return "second";
+            }
+        });
+        placeholders.replaceWith(reloaded);
+
+        interpreter = new Interpreter(program);
+        interpreter.setExecutorMap(executors);
+        interpreter.setPlaceholderMap(placeholders);
+        interpreter.startWithContext(null);
+
+        Assert.assertEquals(Arrays.asList("first", "second"), result);
+    }
+
+    @Test
+    public void testWaitSuspends() throws Exception {
+        Charset charset = StandardCharsets.UTF_8;
+        String text = ""
+                + "i = 0;"
+                + "WHILE i < 3;"
+                + "    #TEST i;"
+                + "    #WAIT 0.5;"
+                + "    i = i + 1;"
+                + "ENDWHILE;"
+                + "#TEST \"done\";";
+        Lexer lexer = new Lexer(text, charset);
+        Parser parser = new Parser(lexer);
+        Node root = parser.parse();
+
+        List<Object> result = new ArrayList<>();
+        Map<String, Executor> executorMap = new HashMap<>();
+        executorMap.put("TEST", new Executor() {
+            @Override
+            protected Integer execute(Timings.Timing timing, boolean sync, Map<String, Object> vars, Object context,
+                                      Object... args) throws Exception {
+                result.add(args[0]);
+                return null;
+            }
+        });
+
+        List<Runnable> scheduled = new ArrayList<>();
+        List<Long> delays = new ArrayList<>();
+
+        Interpreter interpreter = new Interpreter(root);
+        interpreter.setExecutorMap(executorMap);
+        interpreter.setWaitScheduler((resume, delay) -> {
+            scheduled.add(resume);
+            delays.add(delay);
+        });
+        interpreter.startWithContext(null);
+
+        //returned without blocking the thread
+        Assert.assertEquals(Arrays.asList(0), result);
+        Assert.assertTrue(interpreter.isWaitFlag());
+        Assert.assertEquals(0, interpreter.getVars().get("i"));
+
+        while (!scheduled.isEmpty())
+            scheduled.remove(0).run();
+
+        Assert.assertFalse(interpreter.isWaitFlag());
+        Assert.assertEquals(Arrays.asList(0, 1, 2, "done"), result);
+        Assert.assertEquals(Arrays.asList(500L, 500L, 500L), delays);
+        Assert.assertEquals(3, interpreter.getVars().get("i"));
+    }
+
+    @Test
+    public void testForSpecialized() throws Exception {
+        Charset charset = StandardCharsets.UTF_8;
+        String text = ""
+                + "FOR i = 0:3;"
+                + "    #TEST i;"
+                + "ENDFOR;"
+                + "FOR arr = arrays;"
+                + "    FOR e = arr;"
+                + "        #TEST e;"
+                + "    ENDFOR;"
+                + "ENDFOR;"
+                + "FOR e = list;"
+                + "    #TEST e;"
+                + "ENDFOR;"
+                + "FOR e = linked;"
+                + "    #TEST e;"
+                + "ENDFOR;";
+        Lexer lexer = new Lexer(text, charset);
+        Parser parser = new Parser(lexer);
+        Node root = parser.parse();
+
+        List<Object> result = new ArrayList<>();
+        Map<String, Executor> executorMap = new HashMap<>();
+        executorMap.put("TEST", new Executor() {
+            @Override
+            protected Integer execute(Timings.Timing timing, boolean sync, Map<String, Object> vars, Object context,
+                                      Object... args) throws Exception {
+                result.add(args[0]);
+                return null;
+            }
+        });
+
+        Interpreter interpreter = new Interpreter(root);
+        interpreter.setExecutorMap(executorMap);
+        interpreter.getVars().put("arrays", Arrays.asList(
+                new Object[]{"a", null}, new int[]{1}, new double[]{0.5}, new long[]{7L}));
+        interpreter.getVars().put("list", new ArrayList<>(Arrays.asList("x", "y")));
+        interpreter.getVars().put("linked", new LinkedList<>(Arrays.asList("z")));
+        interpreter.startWithContext(null);
+
+        Assert.assertEquals(Arrays.asList(0, 1, 2, "a", null, 1, 0.5, 7L, "x", "y", "z"), result);
+    }
+
+    @Test
+    public void testConcatTemplate() throws Exception {
+        Charset charset = StandardCharsets.UTF_8;
+        String text = ""
+                + "#TEST \"Hello \" + name + \"!\";"
+                + "#TEST 1 + x + \"a\" + 2 + 3.5 + x + true;"
+                + "#TEST x + \"b\" + nothing;"
+                + "#TEST (\"c\" + x) + (x + \"d\");";
+        Lexer lexer = new Lexer(text, charset);
+        Parser parser = new Parser(lexer);
+        Node root = new ScriptOptimizer(parser.parse()).optimize();
+
+        List<Object> result = new ArrayList<>();
+        Map<String, Executor> executorMap = new HashMap<>();
+        executorMap.put("TEST", new Executor() {
+            @Override
+            protected Integer execute(Timings.Timing timing, boolean sync, Map<String, Object> vars, Object context,
+                                      Object... args) throws Exception {
+                result.add(args[0]);
+                return null;
+            }
+        });
+
+        Interpreter interpreter = new Interpreter(root);
+        interpreter.setExecutorMap(executorMap);
+        interpreter.getVars().put("name", "wysohn");
+        interpreter.getVars().put("x", 2);
+        interpreter.startWithContext(null);
+
+        Assert.assertEquals(Arrays.asList("Hello wysohn!", "3a23.52true", "2bnull", "c22d"), result);
+    }
+
+    @Test
+    public void testSyncContinuation() throws Exception {
+        Charset charset = StandardCharsets.UTF_8;
+        String text = ""
+                + "#TEST 1;"
+                + "FOR i = 0:3;"
+                + "    SYNC;"
+                + "        #TEST \"sync\" + i;"
+                + "        IF i == 1;"
+                + "            #BREAK;"
+                + "        ENDIF;"
+                + "    ENDSYNC;"
+                + "ENDFOR;"
+                + "#TEST 2;";
+        Lexer lexer = new Lexer(text, charset);
+        Parser parser = new Parser(lexer);
+        Node root = parser.parse();
+
+        List<Object> result = new ArrayList<>();
+        Map<String, Executor> executorMap = new HashMap<>();
+        executorMap.put("TEST", new Executor() {
+            @Override
+            protected Integer execute(Timings.Timing timing, boolean sync, Map<String, Object> vars, Object context,
+                                      Object... args) throws Exception {
+                result.add(args[0]);
+                return null;
+            }
+        });
+
+        List<Runnable> queued = new ArrayList<>();
+        Interpreter interpreter = new Interpreter(root);
+        interpreter.setExecutorMap(executorMap);
+        interpreter.setWaitScheduler((resume, delay) -> Assert.fail());
+        interpreter.setTaskSupervisor(new TaskSupervisor() {
+            @Override
+            public <T> Future<T> submitSync(Callable<T> call) {
+                throw new AssertionError("blocked the thread");
+            }
+
+            @Override
+            public void submitAsync(Runnable run) {
+                run.run();
+            }
+
+            @Override
+            public <T> CompletableFuture<T> queueSync(Callable<T> call) {
+                CompletableFuture<T> future = new CompletableFuture<>();
+                queued.add(() -> {
+                    try {
+                        future.complete(call.call());
+                    } catch (Exception ex) {
+                        future.completeExceptionally(ex);
+                    }
+                });
+                return future;
+            }
+        });
+        interpreter.startWithContext(null);
+
+        //returned without waiting for the SYNC block
+        Assert.assertEquals(Arrays.asList(1), result);
+
+        int visits = 0;
+        while (!queued.isEmpty()) {
+            queued.remove(0).run();
+            visits++;
+        }
+
+        Assert.assertEquals(2, visits);
+        Assert.assertEquals(Arrays.asList(1, "sync0", "sync1", 2), result);
+    }
+
+    @Test
+    public void testImportAtLoad() throws Exception {
+        Charset charset = StandardCharsets.UTF_8;
+        String text = ""
+                + "IMPORT java.util.ArrayList;\n"
+                + "list = ArrayList();\n"
+                + "list.add(1);\n"
+                + "IF list.size() > 1\n"
+                + "    IMPORT no.such.Clazz;\n"
+                + "ENDIF\n";
+        Lexer lexer = new Lexer(text, charset);
+        Parser parser = new Parser(lexer);
+        Node root = parser.parse();
+
+        ScriptCompiler compiler = new ScriptCompiler(root);
+        Program program = compiler.compile();
+        Assert.assertEquals(1, compiler.getWarnings().size());
+        Assert.assertTrue(compiler.getWarnings().get(0) instanceof ImportWarning);
+
+        //the unknown class is not reached
+        Interpreter interpreter = new Interpreter(program);
+        interpreter.startWithContext(null);
+        Assert.assertEquals(Arrays.asList(1), interpreter.getVars().get("list"));
+    }
+
+    @Test
+    public void testImportScope() throws Exception {
+        Charset charset = StandardCharsets.UTF_8;
+        String text = ""
+                + "ArrayList = 3;\n"
+                + "before = ArrayList;\n"
+                + "IF false\n"
+                + "    IMPORT java.util.HashMap;\n"
+                + "ENDIF\n"
+                + "HashMap = 4;\n"
+                + "IMPORT java.util.ArrayList;\n"
+                + "after = ArrayList();\n";
+        Lexer lexer = new Lexer(text, charset);
+        Parser parser = new Parser(lexer);
+        Node root = parser.parse();
+
+        Interpreter interpreter = new Interpreter(new ScriptCompiler(root).compile());
+        interpreter.startWithContext(null);
+
+        //the name is the variable before the IMPORT, and the IMPORT in the IF doesn't reach outside of it
+        Assert.assertEquals(3, interpreter.getVars().get("before"));
+        Assert.assertEquals(4, interpreter.getVars().get("HashMap"));
+        Assert.assertEquals(new ArrayList<>(), interpreter.getVars().get("after"));
+    }
+
+    @Test
+    public void testAsyncCapture() throws Exception {
+        Charset charset = StandardCharsets.UTF_8;
+        String text = ""
+                + "x = 1;"
+                + "ASYNC;"
+                + "    x = x + 1;"
+                + "ENDASYNC;"
+                + "x = x + 10;";
+
+        for (Interpreter.Capture capture : Interpreter.Capture.values()) {
+            Lexer lexer = new Lexer(text, charset);
+            Parser parser = new Parser(lexer);
+            Node root = parser.parse();
+
+            List<Runnable> blocks = new ArrayList<>();
+            Interpreter interpreter = new Interpreter(root);
+            interpreter.setCapture(capture);
+            interpreter.setTaskSupervisor(new TaskSupervisor() {
+                @Override
+                public <T> Future<T> submitSync(Callable<T> call) {
+                    throw new AssertionError();
+                }
+
+                @Override
+                public void submitAsync(Runnable run) {
+                    blocks.add(run);
+                }
+            });
+            interpreter.startWithContext(null);
+
+            Assert.assertFalse(interpreter.getAsyncBlocks().isDone());
+            Assert.assertEquals(1, blocks.size());
+            blocks.get(0).run();
+            Assert.assertTrue(interpreter.getAsyncBlocks().isDone());
+
+            if (capture == Interpreter.Capture.SHARED) {
+                Assert.assertEquals(12, interpreter.getVars().get("x"));
+            } else {
+                Assert.assertEquals(11, interpreter.getVars().get("x"));
+            }
+        }
+    }
+
+    @Test
+    public void testAwait() throws Exception {
+        Charset charset = StandardCharsets.UTF_8;
+        String text = ""
+                + "x = 0;"
+                + "FOR i = 0:4;"
+                + "    ASYNC;"
+                + "        #WORK;"
+                + "    ENDASYNC;"
+                + "ENDFOR;"
+                + "#AWAIT;"
+                + "x = done.get();";
+        Lexer lexer = new Lexer(text, charset);
+        Parser parser = new Parser(lexer);
+        Node root = parser.parse();
+
+        AtomicInteger done = new AtomicInteger();
+        Map<String, Executor> executorMap = new HashMap<>();
+        executorMap.put("WORK", new Executor() {
+            @Override
+            protected Integer execute(Timings.Timing timing, boolean sync, Map<String, Object> vars, Object context,
+                                      Object... args) throws Exception {
+                Thread.sleep(50L);
+                done.incrementAndGet();
+                return null;
+            }
+        });
+
+        Interpreter interpreter = new Interpreter(root);
+        interpreter.setExecutorMap(executorMap);
+        interpreter.getVars().put("done", done);
+        interpreter.setTaskSupervisor(new TaskSupervisor() {
+            @Override
+            public <T> Future<T> submitSync(Callable<T> call) {
+                throw new AssertionError();
+            }
+
+            @Override
+            public void submitAsync(Runnable run) {
+                new Thread(run).start();
+            }
+        });
+        interpreter.startWithContext(null);
+
+        Assert.assertEquals(4, interpreter.getVars().get("x"));
+    }
+
+    @Test
+    public void testScriptStack() throws Exception {
+        Charset charset = StandardCharsets.UTF_8;
+        String text = ""
+                + "x = 1\n"
+                + "SYNC\n"
+                + "    #FAIL x\n"
+                + "ENDSYNC\n";
+        Lexer lexer = new Lexer(text, charset);
+        Parser parser = new Parser(lexer);
+        Node root = parser.parse();
+
+        Map<String, Executor> executorMap = new HashMap<>();
+        executorMap.put("FAIL", new Executor() {
+            @Override
+            protected Integer execute(Timings.Timing timing, boolean sync, Map<String, Object> vars, Object context,
+                                      Object... args) throws Exception {
+                throw new IllegalStateException("failed with " + args[0]);
+            }
+        });
+
+        Interpreter interpreter = new Interpreter(root);
+        interpreter.setExecutorMap(executorMap);
+        interpreter.setTaskSupervisor(new TaskSupervisor() {
+            @Override
+            public <T> Future<T> submitSync(Callable<T> call) {
+                FutureTask<T> task = new FutureTask<>(call);
+                task.run();
+                return task;
+            }
+
+            @Override
+            public void submitAsync(Runnable run) {
+                run.run();
+            }
+        });
+
+        try {
+            interpreter.startWithContext(null);
+            Assert.fail();
+        } catch (InterpreterException ex) {
+            Assert.assertEquals(0, ex.getStackTrace().length);
+            Assert.assertEquals("failed with 1", ex.getCause().getMessage());
+
+            List<ScriptFrame> stack = ex.getScriptStack();
+            Assert.assertEquals(2, stack.size());
+            Assert.assertEquals("#FAIL", stack.get(0).callee);
+            Assert.assertEquals(3, stack.get(0).row);
+            Assert.assertNull(stack.get(1).callee);
+            Assert.assertEquals(2, stack.get(1).row);
+            Assert.assertTrue(ex.getMessage(), ex.getMessage().endsWith(" at " + stack.get(0)));
+        }
+    }
+
+    @Test
+    public void testBudgetAbort() throws Exception {
+        Charset charset = StandardCharsets.UTF_8;
+        String text = ""
+                + "i = 0;"
+                + "WHILE true;"
+                + "    i = i + 1;"
+                + "ENDWHILE;";
+        Lexer lexer = new Lexer(text, charset);
+        Parser parser = new Parser(lexer);
+        Node root = parser.parse();
+
+        Interpreter interpreter = new Interpreter(root);
+        interpreter.setSync(true);
+        interpreter.setBudget(new ExecutionBudget(1000, ExecutionBudget.Policy.ABORT));
+        try {
+            interpreter.startWithContext(null);
+            Assert.fail();
+        } catch (InterpreterException ex) {
+            //stopped somewhere in the loop
+            int i = (Integer) interpreter.getVars().get("i");
+            Assert.assertTrue(i > 100 && i < 1000);
+        }
+    }
+
+    @Test
+    public void testBudgetYield() throws Exception {
+        Charset charset = StandardCharsets.UTF_8;
+        String text = ""
+                + "sum = 0;"
+                + "FOR i = 0:1000;"
+                + "    sum = sum + i;"
+                + "ENDFOR;"
+                + "#TEST sum;";
+        Lexer lexer = new Lexer(text, charset);
+        Parser parser = new Parser(lexer);
+        Node root = parser.parse();
+
+        List<Object> result = new ArrayList<>();
+        Map<String, Executor> executorMap = new HashMap<>();
+        executorMap.put("TEST", new Executor() {
+            @Override
+            protected Integer execute(Timings.Timing timing, boolean sync, Map<String, Object> vars, Object context,
+                                      Object... args) throws Exception {
+                result.add(args[0]);
+                return null;
+            }
+        });
+
+        List<Runnable> scheduled = new ArrayList<>();
+        List<Long> delays = new ArrayList<>();
+
+        Interpreter interpreter = new Interpreter(root);
+        interpreter.setExecutorMap(executorMap);
+        interpreter.setBudget(new ExecutionBudget(1000, ExecutionBudget.Policy.YIELD));
+        interpreter.setWaitScheduler((resume, delay) -> {
+            scheduled.add(resume);
+            delays.add(delay);
+        });
+        interpreter.startWithContext(null);
+
+        Assert.assertTrue(result.isEmpty());
+
+        int yields = 0;
+        while (!scheduled.isEmpty()) {
+            scheduled.remove(0).run();
+            yields++;
+        }
+
+        Assert.assertEquals(Arrays.asList(499500), result);
+        Assert.assertTrue(yields > 1);
+        Assert.assertEquals(0L, (long) delays.get(0));
+    }
+
+    @Test
+    public void testLineProfiler() throws Exception {
+        Charset charset = StandardCharsets.UTF_8;
+        String text = ""
+                + "sum = 0\n"
+                + "FOR i = 0:10\n"
+                + "    sum = sum + i\n"
+                + "ENDFOR\n"
+                + "#TEST sum\n";
+        Lexer lexer = new Lexer(text, charset);
+        Parser parser = new Parser(lexer);
+        Node root = parser.parse();
+
+        Map<String, Executor> executorMap = new HashMap<>();
+        executorMap.put("TEST", new Executor() {
+            @Override
+            protected Integer execute(Timings.Timing timing, boolean sync, Map<String, Object> vars, Object context,
+                                      Object... args) throws Exception {
+                Thread.sleep(20L);
+                return null;
+            }
+        });
+
+        LineProfiler profiler = new LineProfiler(5);
+        Interpreter interpreter = new Interpreter(root);
+        interpreter.setExecutorMap(executorMap);
+        interpreter.setProfiler(profiler);
+        interpreter.startWithContext(null);
+
+        Map<Integer, LineProfiler.Line> lines = new HashMap<>();
+        for (LineProfiler.Line line : profiler.getHotLines(10))
+            lines.put(line.row, line);
+
+        Assert.assertEquals(5, profiler.getHotLines(10).get(0).row);
+        Assert.assertEquals(1, lines.get(1).hits);
+        Assert.assertEquals(10, lines.get(3).hits);
+        Assert.assertTrue(lines.get(5).nanos >= 20_000_000L);
+        Assert.assertEquals(2, profiler.getHotLines(2).size());
+    }
+
     public static class TheTest {
         public static String staticField = "staticField";
 
@@ -0,0 +1,64 @@
+package io.github.wysohn.triggerreactor.core.script.interpreter;
+
+import io.github.wysohn.triggerreactor.core.script.lexer.Lexer;
+import io.github.wysohn.triggerreactor.core.script.parser.Parser;
+import io.github.wysohn.triggerreactor.core.script.warning.Warning;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class TestProgramCache {
+    @Test
+    public void testShared() throws Exception {
+        String script = "#MESSAGE \"shared \" + x";
+        Program program = new ScriptCompiler(new Parser(new Lexer(script)).parse()).compile();
+        Warning warning = new Warning() {
+            @Override
+            public String[] getMessageLines() {
+                return new String[]{"warning"};
+            }
+        };
+        List<Warning> warnings = new ArrayList<>(Arrays.asList(warning));
+
+        Assert.assertNull(ProgramCache.get(script));
+        ProgramCache.put(script, program, warnings);
+        warnings.clear();
+
+        //another copy of the same script
+        ProgramCache.Entry entry = ProgramCache.get(new String(script.toCharArray()));
+        Assert.assertNotNull(entry);
+        Assert.assertSame(program, entry.getProgram());
+        Assert.assertSame(script, entry.getScript());
+        Assert.assertEquals(1, entry.getWarnings().size());
+
+        Assert.assertNull(ProgramCache.get(script + " "));
+    }
+
+    @Test
+    public void testImportFailed() throws Exception {
+        String script = "IMPORT no.such.Clazz\n#MESSAGE Clazz";
+        ScriptCompiler compiler = new ScriptCompiler(new Parser(new Lexer(script)).parse());
+        Program program = compiler.compile();
+        Assert.assertEquals(1, compiler.getWarnings().size());
+
+        ProgramCache.put(script, program, compiler.getWarnings());
+        Assert.assertNull(ProgramCache.get(script));
+    }
+
+    @Test
+    public void testReleased() throws Exception {
+        String script = "#MESSAGE \"released\"";
+        ProgramCache.put(script, new ScriptCompiler(new Parser(new Lexer(script)).parse()).compile(),
+                new ArrayList<>());
+
+        //no Trigger uses it, so it goes away with the next GC
+        for (int i = 0; i < 50 && ProgramCache.get(script) != null; i++) {
+            System.gc();
+            Thread.sleep(10L);
+        }
+        Assert.assertNull(ProgramCache.get(script));
+    }
+}
@@ -0,0 +1,100 @@
+package io.github.wysohn.triggerreactor.core.script.interpreter;
+
+import io.github.wysohn.triggerreactor.core.script.Token.Type;
+import io.github.wysohn.triggerreactor.core.script.lexer.Lexer;
+import io.github.wysohn.triggerreactor.core.script.parser.Node;
+import io.github.wysohn.triggerreactor.core.script.parser.Parser;
+import io.github.wysohn.triggerreactor.tools.timings.Timings;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class TestScriptOptimizer {
+    private static Node optimize(String text) throws Exception {
+        Lexer lexer = new Lexer(text, StandardCharsets.UTF_8);
+        Parser parser = new Parser(lexer);
+
+        return new ScriptOptimizer(parser.parse()).optimize();
+    }
+
+    @Test
+    public void testLiteral() throws Exception {
+        Node root = optimize("a = 3; b = 2.5; c = true;");
+
+        Assert.assertEquals(3, root.getChildren().get(0).getChildren().get(1).getToken().value);
+        Assert.assertEquals(2.5, root.getChildren().get(1).getChildren().get(1).getToken().value);
+        Assert.assertEquals(true, root.getChildren().get(2).getChildren().get(1).getToken().value);
+    }
+
+    @Test
+    public void testFolding() throws Exception {
+        Node root = optimize("a = 60 * 20; b = -(1 + 0.5); c = \"tick\" + 20; d = 3 > 2 && !false; e = 1 / 0;");
+
+        Node a = root.getChildren().get(0).getChildren().get(1);
+        Assert.assertEquals(Type.INTEGER, a.getToken().type);
+        Assert.assertEquals(1200, a.getToken().value);
+
+        Node b = root.getChildren().get(1).getChildren().get(1);
+        Assert.assertEquals(Type.DECIMAL, b.getToken().type);
+        Assert.assertEquals(-1.5, b.getToken().value);
+
+        Node c = root.getChildren().get(2).getChildren().get(1);
+        Assert.assertEquals(Type.STRING, c.getToken().type);
+        Assert.assertEquals("tick20", c.getToken().value);
+
+        Node d = root.getChildren().get(3).getChildren().get(1);
+        Assert.assertEquals(Type.BOOLEAN, d.getToken().type);
+        Assert.assertEquals(true, d.getToken().value);
+
+        //must be left for the runtime error
+        Node e = root.getChildren().get(4).getChildren().get(1);
+        Assert.assertEquals(Type.OPERATOR_A, e.getToken().type);
+    }
+
+    @Test
+    public void testDeadIf() throws Exception {
+        Node root = optimize(""
+                + "IF 1 > 2\n"
+                + "    #TEST \"never\"\n"
+                + "ENDIF\n"
+                + "IF false\n"
+                + "    #TEST \"never\"\n"
+                + "ELSEIF 2 == 2\n"
+                + "    #TEST \"elseif\"\n"
+                + "ELSE\n"
+                + "    #TEST \"never\"\n"
+                + "ENDIF\n"
+                + "IF x\n"
+                + "    #TEST \"x\"\n"
+                + "ENDIF\n");
+
+        Assert.assertEquals(2, root.getChildren().size());
+        Assert.assertEquals(Type.BODY, root.getChildren().get(0).getToken().type);
+        Assert.assertEquals(Node.Kind.IF, root.getChildren().get(1).getKind());
+
+        List<Object> result = new ArrayList<>();
+        Map<String, Executor> executorMap = new HashMap<>();
+        executorMap.put("TEST", new Executor() {
+            @Override
+            protected Integer execute(Timings.Timing timing, boolean sync, Map<String, Object> vars, Object context,
+                                      Object... args) throws Exception {
+                result.add(args[0]);
+                return null;
+            }
+        });
+
+        Interpreter interpreter = new Interpreter(root);
+        interpreter.setExecutorMap(executorMap);
+        interpreter.getVars().put("x", true);
+        interpreter.startWithContext(null);
+
+        Assert.assertEquals(2, result.size());
+        Assert.assertEquals("elseif", result.get(0));
+        Assert.assertEquals("x", result.get(1));
+    }
+}
@@ -0,0 +1,177 @@
+package io.github.wysohn.triggerreactor.core.script.interpreter;
+
+import io.github.wysohn.triggerreactor.core.script.lexer.Lexer;
+import io.github.wysohn.triggerreactor.core.script.parser.Node;
+import io.github.wysohn.triggerreactor.core.script.parser.Parser;
+import io.github.wysohn.triggerreactor.tools.timings.Timings;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class TestTier2Compiler {
+    private static Program compile(String text) throws Exception {
+        Lexer lexer = new Lexer(text, StandardCharsets.UTF_8);
+        Parser parser = new Parser(lexer);
+        Node root = new ScriptOptimizer(parser.parse()).optimize();
+
+        return new ScriptCompiler(root).compile();
+    }
+
+    private static List<Object> run(Program program, Map<String, Object> vars) throws Exception {
+        List<Object> result = new ArrayList<>();
+        Map<String, Executor> executorMap = new HashMap<>();
+        executorMap.put("TEST", new Executor() {
+            @Override
+            protected Integer execute(Timings.Timing timing, boolean sync, Map<String, Object> vars, Object context,
+                                      Object... args) throws Exception {
+                result.add(args[0]);
+                return null;
+            }
+        });
+
+        Interpreter interpreter = new Interpreter(program);
+        interpreter.setExecutorMap(executorMap);
+        interpreter.getVars().putAll(vars);
+        interpreter.startWithContext(null);
+        return result;
+    }
+
+    private static int countNodes(Program program, Map<String, Object> vars) throws Exception {
+        int[] count = new int[1];
+        Interpreter interpreter = new Interpreter(program);
+        interpreter.setExecutorMap(new HashMap<>());
+        interpreter.getVars().putAll(vars);
+        interpreter.startWithContextAndInterrupter(null, new Interpreter.ProcessInterrupter() {
+            @Override
+            public boolean onNodeProcess(Node node) {
+                count[0]++;
+                return false;
+            }
+
+            @Override
+            public boolean onCommand(Object context, String command, Object[] args) {
+                return false;
+            }
+
+            @Override
+            public Object onPlaceholder(Object context, String placeholder, Object[] args) {
+                return null;
+            }
+        }, Timings.LIMBO);
+        Assert.assertEquals(vars.get("expected"), interpreter.getVars().get("sum"));
+        return count[0];
+    }
+
+    private static int countFused(Program program) {
+        int count = 0;
+        for (int i = 0; i < program.size(); i++) {
+            if (program.getInstruction(i).getOpcode() == Opcode.FUSED)
+                count++;
+        }
+        return count;
+    }
+
+    @Test
+    public void testLoop() throws Exception {
+        Program program = compile(""
+                + "sum = 0\n"
+                + "i = 0\n"
+                + "WHILE i < max\n"
+                + "    IF i % 2 == 0 && !(i > 50)\n"
+                + "        sum = sum + i * 1.5\n"
+                + "    ENDIF\n"
+                + "    i = i + 1\n"
+                + "ENDWHILE\n"
+                + "#TEST sum\n");
+
+        Map<String, Object> vars = new HashMap<>();
+        vars.put("max", 100);
+        List<Object> expected = run(program, vars);
+
+        Program tier2 = Tier2Compiler.compile(program);
+        Assert.assertEquals(2, tier2.getTier());
+        Assert.assertTrue(countFused(tier2) > 0);
+        Assert.assertSame(tier2, Tier2Compiler.compile(tier2));
+        Assert.assertSame(tier2, Tier2Compiler.compile(program));
+
+        Assert.assertEquals(expected, run(tier2, vars));
+    }
+
+    @Test
+    public void testInterrupter() throws Exception {
+        Program program = compile(""
+                + "sum = 0\n"
+                + "i = 0\n"
+                + "WHILE i < 100\n"
+                + "    sum = sum + i * 2\n"
+                + "    i = i + 1\n"
+                + "ENDWHILE\n");
+
+        Map<String, Object> vars = vars("expected", 9900);
+        int nodes = countNodes(program, vars);
+
+        Program tier2 = Tier2Compiler.compile(program);
+        Assert.assertTrue(countFused(tier2) > 0);
+        //the fused instructions are used even with an interrupter, which sees each fused range only once
+        Assert.assertTrue(countNodes(tier2, vars) < nodes);
+    }
+
+    @Test
+    public void testNotProfiled() throws Exception {
+        Program program = compile("x = a + 1\n#TEST x\n");
+
+        //never executed, so the type of 'a' is unknown
+        Assert.assertSame(program, Tier2Compiler.compile(program));
+    }
+
+    @Test
+    public void testDeoptimize() throws Exception {
+        Program program = compile("x = a + 1\n#TEST x\n");
+
+        Map<String, Object> vars = new HashMap<>();
+        vars.put("a", 1);
+        run(program, vars);
+
+        Program tier2 = Tier2Compiler.compile(program);
+        Assert.assertEquals(1, countFused(tier2));
+
+        Assert.assertEquals(3, run(tier2, vars("a", 2)).get(0));
+        Assert.assertEquals(2.5, run(tier2, vars("a", 1.5)).get(0));
+        Assert.assertEquals("s1", run(tier2, vars("a", "s")).get(0));
+    }
+
+    @Test
+    public void testSameError() throws Exception {
+        Program program = compile("x = a / b\n");
+        run(program, vars("a", 1, "b", 1));
+
+        String expected = null;
+        try {
+            run(program, vars("a", 1, "b", 0));
+            Assert.fail();
+        } catch (InterpreterException ex) {
+            expected = ex.getMessage();
+        }
+
+        Program tier2 = Tier2Compiler.compile(program);
+        Assert.assertEquals(1, countFused(tier2));
+        try {
+            run(tier2, vars("a", 1, "b", 0));
+            Assert.fail();
+        } catch (InterpreterException ex) {
+            Assert.assertEquals(expected, ex.getMessage());
+        }
+    }
+
+    private static Map<String, Object> vars(Object... pairs) {
+        Map<String, Object> vars = new HashMap<>();
+        for (int i = 0; i < pairs.length; i += 2)
+            vars.put((String) pairs[i], pairs[i + 1]);
+        return vars;
+    }
+}
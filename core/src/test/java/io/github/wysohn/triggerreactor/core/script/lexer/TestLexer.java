@@ -26,6 +26,7 @@ import java.nio.charset.StandardCharsets;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 
 public class TestLexer {
 
@@ -370,4 +371,18 @@ public class TestLexer {
         lexer = new Lexer(text, charset);
         assertEquals(new Token(Type.IMPORT, "net.md_5.bungee.api.chat.ComponentBuilder"), lexer.getToken());
     }
+
+    @Test
+    public void testInternedId() throws Exception {
+        Lexer first = new Lexer("player.health = 1;");
+        Lexer second = new Lexer("x = player\n#MESSAGE \"hi\"");
+
+        Token player = first.getToken();
+        second.getToken();
+        second.getToken();
+        assertSame(player.value, second.getToken().value);
+
+        assertEquals("#MESSAGE \"hi\"", second.getScriptLine(2));
+        assertEquals("", second.getScriptLine(3));
+    }
 }
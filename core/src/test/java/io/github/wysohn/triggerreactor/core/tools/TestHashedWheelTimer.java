@@ -0,0 +1,69 @@
+package io.github.wysohn.triggerreactor.core.tools;
+
+import io.github.wysohn.triggerreactor.tools.HashedWheelTimer;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class TestHashedWheelTimer {
+    @Test
+    public void testOrder() throws Exception {
+        HashedWheelTimer timer = new HashedWheelTimer("test", 10, TimeUnit.MILLISECONDS, 4);
+        List<Integer> result = new CopyOnWriteArrayList<>();
+        CountDownLatch latch = new CountDownLatch(3);
+
+        long start = System.nanoTime();
+        //longer than a round of the wheel
+        timer.schedule(() -> {
+            result.add(3);
+            latch.countDown();
+        }, 100, TimeUnit.MILLISECONDS);
+        timer.schedule(() -> {
+            result.add(1);
+            latch.countDown();
+        }, 0, TimeUnit.MILLISECONDS);
+        timer.schedule(() -> {
+            result.add(2);
+            latch.countDown();
+        }, 30, TimeUnit.MILLISECONDS);
+
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(100));
+        assertEquals(3, result.size());
+        assertEquals(1, (int) result.get(0));
+        assertEquals(2, (int) result.get(1));
+        assertEquals(3, (int) result.get(2));
+        assertEquals(0, timer.getPending());
+        assertEquals(3, timer.getExpired());
+
+        timer.stop();
+    }
+
+    @Test
+    public void testCancel() throws Exception {
+        HashedWheelTimer timer = new HashedWheelTimer("test", 10, TimeUnit.MILLISECONDS, 8);
+        CountDownLatch latch = new CountDownLatch(1);
+
+        HashedWheelTimer.Timeout cancelled = timer.schedule(() -> fail("should be cancelled"),
+                50, TimeUnit.MILLISECONDS);
+        HashedWheelTimer.Timeout timeout = timer.schedule(latch::countDown, 100, TimeUnit.MILLISECONDS);
+        assertEquals(2, timer.getPending());
+
+        assertTrue(cancelled.cancel());
+        assertFalse(cancelled.cancel());
+        assertTrue(cancelled.isCancelled());
+        assertEquals(1, timer.getPending());
+
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+        assertTrue(timeout.isExpired());
+        assertFalse(timeout.cancel());
+        assertEquals(1, timer.getExpired());
+
+        timer.stop();
+    }
+}
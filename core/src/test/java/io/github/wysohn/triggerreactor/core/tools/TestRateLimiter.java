@@ -0,0 +1,25 @@
+package io.github.wysohn.triggerreactor.core.tools;
+
+import io.github.wysohn.triggerreactor.tools.RateLimiter;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class TestRateLimiter {
+    @Test
+    public void testLimit() throws Exception {
+        RateLimiter limiter = new RateLimiter(2, 50, TimeUnit.MILLISECONDS);
+
+        assertTrue(limiter.tryAcquire());
+        assertTrue(limiter.tryAcquire());
+        assertFalse(limiter.tryAcquire());
+        assertFalse(limiter.tryAcquire());
+        assertEquals(2L, limiter.takeDenied());
+        assertEquals(0L, limiter.takeDenied());
+
+        Thread.sleep(60L);
+        assertTrue(limiter.tryAcquire());
+    }
+}
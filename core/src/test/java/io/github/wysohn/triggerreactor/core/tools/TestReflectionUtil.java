@@ -0,0 +1,64 @@
+package io.github.wysohn.triggerreactor.core.tools;
+
+import io.github.wysohn.triggerreactor.core.manager.trigger.share.ExampleClass;
+import io.github.wysohn.triggerreactor.tools.ReflectionUtil;
+import org.junit.Test;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+public class TestReflectionUtil {
+    @Test
+    public void testFindMethodCached() throws Exception {
+        long hits = ReflectionUtil.getCacheHits();
+        long misses = ReflectionUtil.getCacheMisses();
+
+        Method method = ReflectionUtil.findMethod(ExampleClass.class, "add", "Trigger", "Reactor");
+        assertEquals(misses + 1, ReflectionUtil.getCacheMisses());
+
+        assertSame(method, ReflectionUtil.findMethod(ExampleClass.class, "add", "a", "b"));
+        assertEquals(hits + 1, ReflectionUtil.getCacheHits());
+        assertEquals(misses + 1, ReflectionUtil.getCacheMisses());
+
+        //different argument types are different entries
+        assertNull(ReflectionUtil.findMethod(ExampleClass.class, "add", 1, 2));
+        assertEquals(misses + 2, ReflectionUtil.getCacheMisses());
+        assertNull(ReflectionUtil.findMethod(ExampleClass.class, "add", 3, 4));
+        assertEquals(hits + 2, ReflectionUtil.getCacheHits());
+    }
+
+    @Test
+    public void testFindConstructor() throws Exception {
+        Constructor<ExampleClass> con = ReflectionUtil.findConstructor(ExampleClass.class, 1);
+        assertEquals(0, con.newInstance(1).marker);
+
+        con = ReflectionUtil.findConstructor(ExampleClass.class, 1.1);
+        assertEquals(2, con.newInstance(1.1).marker);
+
+        assertSame(con, ReflectionUtil.findConstructor(ExampleClass.class, 2.2));
+    }
+
+    @Test
+    public void testFieldCached() throws Exception {
+        ExampleClass example = new ExampleClass(1);
+
+        ReflectionUtil.setField(example, "marker", 5);
+        assertEquals(5, ReflectionUtil.getField(example, "marker"));
+
+        long misses = ReflectionUtil.getCacheMisses();
+        for (int i = 0; i < 2; i++) {
+            try {
+                ReflectionUtil.getField(example, "notExist");
+                fail();
+            } catch (NoSuchFieldException ex) {
+                //expected
+            }
+        }
+        assertEquals(misses + 1, ReflectionUtil.getCacheMisses());
+    }
+}
@@ -0,0 +1,56 @@
+package io.github.wysohn.triggerreactor.core.tools;
+
+import io.github.wysohn.triggerreactor.tools.Registry;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class TestRegistry {
+    @Test
+    public void testCaseInsensitive() {
+        Registry<Integer> registry = new Registry<>();
+
+        assertNull(registry.put("merp", 3));
+        assertEquals(new Integer(3), registry.put("MERP", 4));
+        assertEquals(1, registry.size());
+        assertTrue(registry.containsKey("MeRp"));
+        assertFalse(registry.containsKey("derp"));
+        assertEquals(new Integer(4), registry.get("merp"));
+        assertEquals(new Integer(4), registry.remove("Merp"));
+        assertTrue(registry.isEmpty());
+    }
+
+    @Test
+    public void testVersion() {
+        Registry<Integer> registry = new Registry<>();
+        AtomicInteger notified = new AtomicInteger();
+        Registry.Listener<Integer> listener = changed -> notified.incrementAndGet();
+        registry.addListener(listener);
+
+        long version = registry.getVersion();
+        registry.put("a", 1);
+        assertNotEquals(version, registry.getVersion());
+        assertEquals(1, notified.get());
+
+        Map<String, Integer> reloaded = new HashMap<>();
+        reloaded.put("A", 2);
+        reloaded.put("b", 3);
+        registry.replaceWith(reloaded);
+        assertEquals(2, notified.get());
+        assertEquals(2, registry.size());
+        assertEquals(new Integer(2), registry.get("a"));
+
+        //nothing removed
+        version = registry.getVersion();
+        registry.remove("c");
+        assertEquals(version, registry.getVersion());
+
+        registry.removeListener(listener);
+        registry.clear();
+        assertEquals(2, notified.get());
+    }
+}
@@ -0,0 +1,52 @@
+package io.github.wysohn.triggerreactor.core.tools;
+
+import io.github.wysohn.triggerreactor.tools.TickQueue;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class TestTickQueue {
+    @Test
+    public void testBatch() throws Exception {
+        List<Runnable> ticks = new ArrayList<>();
+        TickQueue queue = new TickQueue(ticks::add, 1, TimeUnit.SECONDS);
+
+        List<Integer> result = new ArrayList<>();
+        CompletableFuture<Integer> first = queue.submit(() -> 1);
+        queue.submit(() -> 2).thenAccept(result::add);
+        queue.submit(() -> {
+            throw new IllegalStateException();
+        });
+
+        //scheduled only once for all of them
+        assertEquals(1, ticks.size());
+        assertFalse(first.isDone());
+
+        ticks.remove(0).run();
+        assertEquals(1, (int) first.get());
+        assertEquals(1, result.size());
+        assertEquals(0, queue.size());
+        assertTrue(ticks.isEmpty());
+    }
+
+    @Test
+    public void testBudget() throws Exception {
+        List<Runnable> ticks = new ArrayList<>();
+        TickQueue queue = new TickQueue(ticks::add, 0, TimeUnit.MILLISECONDS);
+
+        queue.submit(() -> 1);
+        queue.submit(() -> 2);
+
+        //one task per tick as there is no time to spare
+        assertEquals(1, queue.drain());
+        assertEquals(1, queue.size());
+        assertEquals(2, ticks.size());
+        assertEquals(1, queue.drain());
+        assertEquals(0, queue.size());
+    }
+}
@@ -15,6 +15,7 @@ import javax.script.ScriptException;
 import java.io.File;
 import java.io.FileFilter;
 import java.io.IOException;
+import java.util.HashMap;
 import java.util.Map;
 import java.util.concurrent.Callable;
 
@@ -43,10 +44,10 @@ public class ExecutorManager extends AbstractExecutorManager implements SpongeSc
             }
         };
 
-        jsExecutors.clear();
+        Map<String, Executor> executors = new HashMap<>();
         for (File file : executorFolder.listFiles(filter)) {
             try {
-                reloadExecutors(file, filter);
+                reloadExecutors(executors, file, filter);
             } catch (ScriptException | IOException e) {
                 e.printStackTrace();
                 plugin.getLogger().warning("Could not load executor " + file.getName());
@@ -55,7 +56,7 @@ public class ExecutorManager extends AbstractExecutorManager implements SpongeSc
         }
 
         //manually add CMDOP after reload is done
-        this.jsExecutors.put("CMDOP", new Executor() {
+        executors.put("CMDOP", new Executor() {
 
             @Override
             protected Integer execute(Timings.Timing timing, boolean sync, Map<String, Object> variables, Object e,
@@ -68,7 +69,7 @@ public class ExecutorManager extends AbstractExecutorManager implements SpongeSc
                     if (plugin.isServerThread()) {
                         new DispatchCommand((Player) player, String.valueOf(args[0])).call();
                     } else {
-                        plugin.callSyncMethod(new DispatchCommand((Player) player, String.valueOf(args[0]))).get();
+                        plugin.submitSync(new DispatchCommand((Player) player, String.valueOf(args[0]))).get();
                     }
                 }
 
@@ -76,6 +77,8 @@ public class ExecutorManager extends AbstractExecutorManager implements SpongeSc
             }
 
         });
+
+        jsExecutors.replaceWith(executors);
     }
 
     @Override
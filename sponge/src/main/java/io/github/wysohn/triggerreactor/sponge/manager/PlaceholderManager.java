@@ -2,6 +2,7 @@ package io.github.wysohn.triggerreactor.sponge.manager;
 
 import io.github.wysohn.triggerreactor.core.main.TriggerReactorCore;
 import io.github.wysohn.triggerreactor.core.manager.AbstractPlaceholderManager;
+import io.github.wysohn.triggerreactor.core.script.interpreter.Placeholder;
 import io.github.wysohn.triggerreactor.tools.JarUtil;
 import io.github.wysohn.triggerreactor.tools.JarUtil.CopyOption;
 
@@ -10,6 +11,8 @@ import javax.script.ScriptException;
 import java.io.File;
 import java.io.FileFilter;
 import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
 
 public class PlaceholderManager extends AbstractPlaceholderManager implements SpongeScriptEngineInitializer {
     private static final String JAR_FOLDER_LOCATION = "Placeholder";
@@ -36,16 +39,18 @@ public class PlaceholderManager extends AbstractPlaceholderManager implements Sp
             }
         };
 
-        jsPlaceholders.clear();
+        Map<String, Placeholder> placeholders = new HashMap<>();
         for (File file : placeholderFolder.listFiles(filter)) {
             try {
-                reloadPlaceholders(file, filter);
+                reloadPlaceholders(placeholders, file, filter);
             } catch (ScriptException | IOException e) {
                 e.printStackTrace();
                 plugin.getLogger().warning("Could not load placeholder " + file.getName());
                 continue;
             }
         }
+
+        jsPlaceholders.replaceWith(placeholders);
     }
 
     @Override
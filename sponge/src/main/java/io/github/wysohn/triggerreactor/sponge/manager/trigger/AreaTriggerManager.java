@@ -61,7 +61,7 @@ public class AreaTriggerManager extends AbstractAreaTriggerManager implements Sp
                         for (Entity e : w.getEntities()) {
                             UUID uuid = e.getUniqueId();
 
-                            Future<Boolean> future = plugin.callSyncMethod(new Callable<Boolean>() {
+                            Future<Boolean> future = plugin.submitSync(new Callable<Boolean>() {
 
                                 @Override
                                 public Boolean call() throws Exception {
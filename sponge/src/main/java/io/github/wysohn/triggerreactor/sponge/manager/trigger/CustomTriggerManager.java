@@ -35,7 +35,6 @@ import org.spongepowered.api.event.network.ClientConnectionEvent;
 import java.io.File;
 import java.io.IOException;
 import java.util.*;
-import java.util.Map.Entry;
 
 public class CustomTriggerManager extends AbstractCustomTriggerManager implements SpongeConfigurationFileIO {
     static final Map<String, Class<? extends Event>> EVENTS = new TreeMap<String, Class<? extends Event>>(String.CASE_INSENSITIVE_ORDER);
@@ -71,15 +70,6 @@ public class CustomTriggerManager extends AbstractCustomTriggerManager implement
         }
     }
 
-    @Override
-    public void reload() {
-        for (Entry<EventHook, EventListener> entry : registeredListeners.entrySet()) {
-            Sponge.getEventManager().unregisterListeners(entry.getValue());
-        }
-        registeredListeners.clear();
-        super.reload();
-    }
-
     private static final String basePackageName = "org.spongepowered.api.event";
 
     public Collection<String> getAbbreviations() {